@@ -0,0 +1,53 @@
+package com.stefanini.portal.capacitaciones.controller;
+
+import com.stefanini.portal.capacitaciones.dto.AnaliticaAreaDTO;
+import com.stefanini.portal.capacitaciones.dto.AnaliticaProgramaDTO;
+import com.stefanini.portal.capacitaciones.service.AnaliticaProgresoService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analitica")
+@Tag(name = "Analítica", description = "API de indicadores de progreso de toda la organización")
+@CrossOrigin(origins = "*")
+public class AnaliticaController {
+    
+    @Autowired
+    private AnaliticaProgresoService analiticaProgresoService;
+    
+    @GetMapping("/programas")
+    @Operation(summary = "Tasa de finalización, progreso promedio y tiempo hasta completar por programa")
+    public ResponseEntity<List<AnaliticaProgramaDTO>> getAnaliticaProgramas() {
+        try {
+            return ResponseEntity.ok(analiticaProgresoService.obtenerPorPrograma());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/areas")
+    @Operation(summary = "Indicadores de progreso agregados por área de conocimiento")
+    public ResponseEntity<List<AnaliticaAreaDTO>> getAnaliticaAreas() {
+        try {
+            return ResponseEntity.ok(analiticaProgresoService.obtenerPorArea());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @PostMapping("/recalcular")
+    @Operation(summary = "Recalcular desde cero los indicadores en memoria")
+    public ResponseEntity<Map<String, Object>> recalcular() {
+        try {
+            return ResponseEntity.ok(analiticaProgresoService.recalcular());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.stefanini.portal.capacitaciones.controller;
+
+import com.stefanini.portal.capacitaciones.dto.PosicionClasificacionDTO;
+import com.stefanini.portal.capacitaciones.service.ClasificacionesService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/clasificaciones")
+@Tag(name = "Clasificaciones", description = "API de clasificaciones de usuarios por programa, área e insignias")
+@CrossOrigin(origins = "*")
+public class ClasificacionController {
+    
+    private static final int LIMITE_MAXIMO = 100;
+    
+    @Autowired
+    private ClasificacionesService clasificacionesService;
+    
+    @GetMapping("/programas/{programaId}")
+    @Operation(summary = "Primeros puestos de un programa según lecciones completadas")
+    public ResponseEntity<List<PosicionClasificacionDTO>> getPrimerosPrograma(@PathVariable Integer programaId,
+                                                                              @RequestParam(defaultValue = "10") Integer limite) {
+        try {
+            return ResponseEntity.ok(clasificacionesService.obtenerPrimerosPrograma(programaId, acotar(limite)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/programas/{programaId}/usuario/{usuarioId}")
+    @Operation(summary = "Posición de un usuario en la clasificación de un programa")
+    public ResponseEntity<PosicionClasificacionDTO> getPosicionPrograma(@PathVariable Integer programaId,
+                                                                        @PathVariable UUID usuarioId) {
+        try {
+            return ResponseEntity.ok(clasificacionesService.obtenerPosicionPrograma(programaId, usuarioId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/area")
+    @Operation(summary = "Primeros puestos de un área de conocimiento según lecciones completadas")
+    public ResponseEntity<List<PosicionClasificacionDTO>> getPrimerosArea(@RequestParam String area,
+                                                                          @RequestParam(defaultValue = "10") Integer limite) {
+        try {
+            return ResponseEntity.ok(clasificacionesService.obtenerPrimerosArea(area, acotar(limite)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/area/usuario/{usuarioId}")
+    @Operation(summary = "Posición de un usuario en la clasificación de un área de conocimiento")
+    public ResponseEntity<PosicionClasificacionDTO> getPosicionArea(@RequestParam String area,
+                                                                    @PathVariable UUID usuarioId) {
+        try {
+            return ResponseEntity.ok(clasificacionesService.obtenerPosicionArea(area, usuarioId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/insignias")
+    @Operation(summary = "Primeros puestos según insignias obtenidas")
+    public ResponseEntity<List<PosicionClasificacionDTO>> getPrimerosInsignias(@RequestParam(defaultValue = "10") Integer limite) {
+        try {
+            return ResponseEntity.ok(clasificacionesService.obtenerPrimerosInsignias(acotar(limite)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/insignias/usuario/{usuarioId}")
+    @Operation(summary = "Posición de un usuario en la clasificación de insignias")
+    public ResponseEntity<PosicionClasificacionDTO> getPosicionInsignias(@PathVariable UUID usuarioId) {
+        try {
+            return ResponseEntity.ok(clasificacionesService.obtenerPosicionInsignias(usuarioId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @PostMapping("/reconstruir")
+    @Operation(summary = "Reconstruir las clasificaciones desde la base de datos")
+    public ResponseEntity<Map<String, Object>> reconstruir() {
+        try {
+            return ResponseEntity.ok(clasificacionesService.reconstruir());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    private static int acotar(Integer limite) {
+        if (limite == null || limite < 1) {
+            throw new IllegalArgumentException("El límite debe ser mayor que cero");
+        }
+        return Math.min(limite, LIMITE_MAXIMO);
+    }
+}
@@ -1,24 +1,42 @@
 package com.stefanini.portal.capacitaciones.controller;
 
+import com.stefanini.portal.capacitaciones.dto.SubidaArchivoDTO;
 import com.stefanini.portal.capacitaciones.entity.Material;
 import com.stefanini.portal.capacitaciones.service.FileStorageService;
+import com.stefanini.portal.capacitaciones.service.SubidasReanudablesService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/archivos")
@@ -28,6 +46,9 @@ public class FileUploadController {
     @Autowired
     private FileStorageService fileStorageService;
     
+    @Autowired
+    private SubidasReanudablesService subidasReanudablesService;
+    
     @PostMapping("/subir")
     public ResponseEntity<?> subirArchivo(
             @RequestParam("archivo") MultipartFile archivo,
@@ -60,45 +81,90 @@ public class FileUploadController {
         }
     }
     
-    @GetMapping("/{id}/descargar")
-    public ResponseEntity<Resource> descargarArchivo(@PathVariable Integer id) {
+    // Subida reanudable: crear la sesión con el nombre y el tamaño total del archivo
+    @PostMapping("/subidas")
+    public ResponseEntity<?> crearSubida(@RequestBody Map<String, Object> request) {
         try {
-            Optional<Material> materialOpt = fileStorageService.obtenerMaterialPorId(id);
-            
-            if (!materialOpt.isPresent()) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            Material material = materialOpt.get();
-            if (!material.getActivo()) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            Path rutaArchivo = fileStorageService.obtenerRutaArchivo(id);
-            if (rutaArchivo == null || !fileStorageService.archivoExiste(id)) {
-                return ResponseEntity.notFound().build();
-            }
+            Object tamaño = request.get("tamano_bytes");
+            SubidaArchivoDTO subida = subidasReanudablesService.crearSubida(
+                    (String) request.get("nombre_original"),
+                    tamaño != null ? Long.valueOf(tamaño.toString()) : null,
+                    (String) request.get("descripcion"),
+                    (String) request.get("sha256"));
+            return ResponseEntity.status(HttpStatus.CREATED).body(subida);
+        } catch (Exception e) {
+            return errorSubida(e);
+        }
+    }
+    
+    // Fragmento en bruto (application/octet-stream) a partir del desplazamiento dado; admite envíos en paralelo
+    @PutMapping("/subidas/{id}")
+    public ResponseEntity<?> escribirFragmento(@PathVariable UUID id,
+                                               @RequestParam long desplazamiento,
+                                               @RequestHeader(HttpHeaders.CONTENT_LENGTH) long longitud,
+                                               InputStream cuerpo) {
+        try {
+            return ResponseEntity.ok(subidasReanudablesService.escribirFragmento(id, desplazamiento, longitud, cuerpo));
+        } catch (Exception e) {
+            return errorSubida(e);
+        }
+    }
+    
+    // Bytes confirmados (desde dónde reanudar) y rangos recibidos
+    @GetMapping("/subidas/{id}")
+    public ResponseEntity<SubidaArchivoDTO> obtenerSubida(@PathVariable UUID id) {
+        return subidasReanudablesService.obtenerSubida(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    @PostMapping("/subidas/{id}/finalizar")
+    public ResponseEntity<?> finalizarSubida(@PathVariable UUID id) {
+        try {
+            Material material = subidasReanudablesService.finalizarSubida(id);
             
-            Resource resource = new UrlResource(rutaArchivo.toUri());
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", "Archivo subido exitosamente");
+            response.put("material", material);
+            response.put("urlAcceso", material.getUrlAcceso());
             
-            if (!resource.exists()) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (Exception e) {
+            return errorSubida(e);
+        }
+    }
+    
+    @DeleteMapping("/subidas/{id}")
+    public ResponseEntity<?> cancelarSubida(@PathVariable UUID id) {
+        try {
+            if (!subidasReanudablesService.cancelarSubida(id)) {
                 return ResponseEntity.notFound().build();
             }
             
-            // Determinar tipo de contenido
-            String contentType = determinarTipoContenido(material.getExtension());
-            
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, 
-                            "attachment; filename=\"" + material.getNombreOriginal() + "\"")
-                    .body(resource);
-                    
-        } catch (MalformedURLException e) {
-            return ResponseEntity.badRequest().build();
+            Map<String, String> response = new HashMap<>();
+            response.put("mensaje", "Subida cancelada");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return errorSubida(e);
         }
     }
     
+    // Descarga con soporte de rangos (RFC 7233): un rango, varios (multipart/byteranges) e If-Range
+    @GetMapping("/{id}/descargar")
+    public ResponseEntity<StreamingResponseBody> descargarArchivo(@PathVariable Integer id,
+                                                                  @RequestHeader HttpHeaders cabeceras,
+                                                                  WebRequest request) {
+        return servirArchivo(id, cabeceras, request, false);
+    }
+    
+    // Variante en línea para reproducir video o mostrar PDF en el navegador; permite saltar a cualquier punto
+    @GetMapping("/{id}/ver")
+    public ResponseEntity<StreamingResponseBody> verArchivo(@PathVariable Integer id,
+                                                            @RequestHeader HttpHeaders cabeceras,
+                                                            WebRequest request) {
+        return servirArchivo(id, cabeceras, request, true);
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<?> obtenerInformacionArchivo(@PathVariable Integer id) {
         Optional<Material> material = fileStorageService.obtenerMaterialPorId(id);
@@ -212,6 +278,182 @@ public class FileUploadController {
     }
     
     // Métodos auxiliares
+    // 404 sesión inexistente, 409 sesión finalizada o en curso de finalizar, 400 validación
+    private ResponseEntity<?> errorSubida(Exception e) {
+        Map<String, String> error = new HashMap<>();
+        if (e instanceof NoSuchElementException) {
+            return ResponseEntity.notFound().build();
+        } else if (e instanceof IllegalStateException) {
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } else if (e instanceof IllegalArgumentException) {
+            error.put("error", "Error de validación: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+        }
+        error.put("error", "Error interno del servidor: " + e.getMessage());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+    }
+    
+    private ResponseEntity<StreamingResponseBody> servirArchivo(Integer id, HttpHeaders cabeceras, WebRequest request,
+                                                                boolean enLinea) {
+        Optional<Material> materialOpt = fileStorageService.obtenerMaterialPorId(id);
+        if (materialOpt.isEmpty() || !materialOpt.get().getActivo()) {
+            return ResponseEntity.notFound().build();
+        }
+        Material material = materialOpt.get();
+        Path rutaArchivo = Paths.get(material.getRutaArchivo());
+        
+        long longitud;
+        long ultimaModificacion;
+        try {
+            longitud = Files.size(rutaArchivo);
+            // Las fechas HTTP tienen resolución de segundos
+            ultimaModificacion = Files.getLastModifiedTime(rutaArchivo).toMillis() / 1000 * 1000;
+        } catch (IOException e) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        // ETag fuerte: If-Range solo admite comparación fuerte
+        String etag = "\"" + id + "-" + longitud + "-" + ultimaModificacion + "\"";
+        if (request.checkNotModified(etag, ultimaModificacion)) {
+            return null;
+        }
+        
+        MediaType tipoContenido = MediaType.parseMediaType(determinarTipoContenido(material.getExtension()));
+        // En línea solo video y PDF; el resto se descarga siempre como adjunto
+        boolean mostrarEnLinea = enLinea && ("video".equals(tipoContenido.getType())
+                || MediaType.APPLICATION_PDF.equalsTypeAndSubtype(tipoContenido));
+        
+        // ETag y Last-Modified ya los agregó checkNotModified
+        HttpHeaders respuesta = new HttpHeaders();
+        respuesta.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        respuesta.set(HttpHeaders.CONTENT_DISPOSITION,
+                (mostrarEnLinea ? "inline" : "attachment") + "; filename=\"" + material.getNombreOriginal() + "\"");
+        
+        List<long[]> rangos = rangosSolicitados(cabeceras, etag, ultimaModificacion, longitud);
+        if (rangos == null) {
+            respuesta.setContentType(tipoContenido);
+            respuesta.setContentLength(longitud);
+            return ResponseEntity.ok().headers(respuesta)
+                    .body(salida -> copiarRangos(rutaArchivo, List.of(new long[] {0, longitud - 1}), salida, null));
+        }
+        if (rangos.isEmpty()) {
+            respuesta.set(HttpHeaders.CONTENT_RANGE, "bytes */" + longitud);
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(respuesta).build();
+        }
+        
+        if (rangos.size() == 1) {
+            long[] rango = rangos.get(0);
+            respuesta.setContentType(tipoContenido);
+            respuesta.setContentLength(rango[1] - rango[0] + 1);
+            respuesta.set(HttpHeaders.CONTENT_RANGE, "bytes " + rango[0] + "-" + rango[1] + "/" + longitud);
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(respuesta)
+                    .body(salida -> copiarRangos(rutaArchivo, rangos, salida, null));
+        }
+        
+        // Varios rangos: cada parte lleva su propia cabecera y el total se conoce antes de escribir
+        String separador = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> encabezados = new ArrayList<>();
+        long total = ("\r\n--" + separador + "--\r\n").length();
+        for (long[] rango : rangos) {
+            byte[] encabezado = ("\r\n--" + separador + "\r\n" +
+                    HttpHeaders.CONTENT_TYPE + ": " + tipoContenido + "\r\n" +
+                    HttpHeaders.CONTENT_RANGE + ": bytes " + rango[0] + "-" + rango[1] + "/" + longitud + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            encabezados.add(encabezado);
+            total += encabezado.length + rango[1] - rango[0] + 1;
+        }
+        byte[] cierre = ("\r\n--" + separador + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        respuesta.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + separador));
+        respuesta.setContentLength(total);
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(respuesta)
+                .body(salida -> {
+                    copiarRangos(rutaArchivo, rangos, salida, encabezados);
+                    salida.write(cierre);
+                });
+    }
+    
+    // Rangos a servir, ordenados y sin solapes; null si corresponde la respuesta completa (sin Range,
+    // Range mal formado o If-Range que no coincide) y vacío si ninguno es satisfacible
+    private List<long[]> rangosSolicitados(HttpHeaders cabeceras, String etag, long ultimaModificacion, long longitud) {
+        String valorRango = cabeceras.getFirst(HttpHeaders.RANGE);
+        if (valorRango == null || !coincideIfRange(cabeceras.getFirst(HttpHeaders.IF_RANGE), etag, ultimaModificacion)) {
+            return null;
+        }
+        
+        List<HttpRange> solicitados;
+        try {
+            solicitados = HttpRange.parseRanges(valorRango);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        
+        List<long[]> rangos = new ArrayList<>();
+        for (HttpRange rango : solicitados) {
+            try {
+                long inicio = rango.getRangeStart(longitud);
+                long fin = rango.getRangeEnd(longitud);
+                if (inicio < longitud && inicio <= fin) {
+                    rangos.add(new long[] {inicio, fin});
+                }
+            } catch (IllegalArgumentException e) {
+                // Rango fuera del archivo: se ignora
+            }
+        }
+        
+        // Unir solapados o contiguos: evita servir los mismos bytes varias veces
+        rangos.sort(Comparator.comparingLong(rango -> rango[0]));
+        List<long[]> unidos = new ArrayList<>();
+        for (long[] rango : rangos) {
+            long[] ultimo = unidos.isEmpty() ? null : unidos.get(unidos.size() - 1);
+            if (ultimo != null && rango[0] <= ultimo[1] + 1) {
+                ultimo[1] = Math.max(ultimo[1], rango[1]);
+            } else {
+                unidos.add(rango);
+            }
+        }
+        return unidos;
+    }
+    
+    // If-Range: ETag fuerte idéntico o fecha exactamente igual a la última modificación
+    private boolean coincideIfRange(String ifRange, String etag, long ultimaModificacion) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()
+                    == ultimaModificacion;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+    
+    // Copia los rangos directamente desde el canal del archivo, con lecturas posicionales
+    private void copiarRangos(Path rutaArchivo, List<long[]> rangos, OutputStream salida, List<byte[]> encabezados)
+            throws IOException {
+        WritableByteChannel destino = Channels.newChannel(salida);
+        try (FileChannel canal = FileChannel.open(rutaArchivo, StandardOpenOption.READ)) {
+            for (int i = 0; i < rangos.size(); i++) {
+                if (encabezados != null) {
+                    salida.write(encabezados.get(i));
+                }
+                long posicion = rangos.get(i)[0];
+                long restantes = rangos.get(i)[1] - posicion + 1;
+                while (restantes > 0) {
+                    long copiados = canal.transferTo(posicion, restantes, destino);
+                    if (copiados <= 0) {
+                        throw new IOException("El archivo cambió durante la descarga");
+                    }
+                    posicion += copiados;
+                    restantes -= copiados;
+                }
+            }
+        }
+    }
+    
     private String determinarTipoContenido(String extension) {
         switch (extension.toLowerCase()) {
             case "pdf":
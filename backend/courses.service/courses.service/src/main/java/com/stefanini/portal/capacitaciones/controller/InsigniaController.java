@@ -2,13 +2,16 @@ package com.stefanini.portal.capacitaciones.controller;
 
 import com.stefanini.portal.capacitaciones.dto.InsigniaDTO;
 import com.stefanini.portal.capacitaciones.dto.InsigniaOtorgadaDTO;
+import com.stefanini.portal.capacitaciones.dto.ReglaInsigniaDTO;
 import com.stefanini.portal.capacitaciones.service.InsigniaService;
+import com.stefanini.portal.capacitaciones.service.ReglasInsigniasService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -22,6 +25,9 @@ public class InsigniaController {
     @Autowired
     private InsigniaService insigniaService;
     
+    @Autowired
+    private ReglasInsigniasService reglasInsigniasService;
+    
     @GetMapping
     @Operation(summary = "Obtener todas las insignias disponibles")
     public ResponseEntity<List<InsigniaDTO>> getAllInsignias() {
@@ -68,5 +74,70 @@ public class InsigniaController {
             return ResponseEntity.badRequest().build();
         }
     }
+    
+    @PostMapping("/{insigniaId}/otorgar-cohorte")
+    @Operation(summary = "Otorgar una insignia a una cohorte: lista usuario_ids o quienes completaron programa_id")
+    public ResponseEntity<Map<String, Object>> otorgarInsigniaCohorte(@PathVariable Long insigniaId,
+                                                                      @RequestBody Map<String, Object> request) {
+        try {
+            int otorgadas;
+            if (request.get("programa_id") != null) {
+                Integer programaId = Integer.valueOf(request.get("programa_id").toString());
+                otorgadas = insigniaService.otorgarInsigniaPorPrograma(insigniaId, programaId);
+            } else {
+                List<UUID> usuarioIds = new ArrayList<>();
+                for (Object usuarioId : (List<?>) request.get("usuario_ids")) {
+                    usuarioIds.add(UUID.fromString(usuarioId.toString()));
+                }
+                otorgadas = insigniaService.otorgarInsigniaCohorte(insigniaId, usuarioIds);
+            }
+            return ResponseEntity.ok(Map.of("insignias_otorgadas", otorgadas));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/reglas")
+    @Operation(summary = "Listar las reglas de otorgamiento automático")
+    public ResponseEntity<List<ReglaInsigniaDTO>> getReglas() {
+        try {
+            return ResponseEntity.ok(reglasInsigniasService.listarReglas());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @PostMapping("/reglas")
+    @Operation(summary = "Crear regla de otorgamiento automático: programa_completado, programas_area o lecciones_semana")
+    public ResponseEntity<ReglaInsigniaDTO> crearRegla(@RequestBody ReglaInsigniaDTO reglaDTO) {
+        try {
+            return ResponseEntity.ok(reglasInsigniasService.crearRegla(reglaDTO));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @DeleteMapping("/reglas/{id}")
+    @Operation(summary = "Eliminar regla de otorgamiento automático")
+    public ResponseEntity<Void> eliminarRegla(@PathVariable Long id) {
+        boolean eliminada = reglasInsigniasService.eliminarRegla(id);
+        return eliminada ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+    
+    @PostMapping("/reglas/evaluar")
+    @Operation(summary = "Evaluar ahora las reglas para los usuarios en cola")
+    public ResponseEntity<Map<String, Object>> evaluarReglas() {
+        try {
+            int otorgadas = reglasInsigniasService.evaluarPendientes();
+            return ResponseEntity.ok(Map.of("insignias_otorgadas", otorgadas));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/reglas/estadisticas")
+    @Operation(summary = "Estadísticas del motor de reglas de insignias")
+    public ResponseEntity<Map<String, Object>> getEstadisticasReglas() {
+        return ResponseEntity.ok(reglasInsigniasService.obtenerEstadisticas());
+    }
 }
-
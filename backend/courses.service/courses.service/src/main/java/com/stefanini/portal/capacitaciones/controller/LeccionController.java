@@ -1,11 +1,14 @@
 package com.stefanini.portal.capacitaciones.controller;
 
 import com.stefanini.portal.capacitaciones.dto.LeccionDTO;
+import com.stefanini.portal.capacitaciones.dto.VersionRecursoDTO;
 import com.stefanini.portal.capacitaciones.service.LeccionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import jakarta.validation.Valid;
 import java.util.List;
@@ -29,32 +32,50 @@ public class LeccionController {
         }
     }
     
+    // Los GET responden 304 si el ETag o la fecha del cliente siguen vigentes, consultando
+    // solo la versión; checkNotModified agrega ETag y Last-Modified a la respuesta
     @GetMapping("/unidad/{unidadId}")
-    public ResponseEntity<List<LeccionDTO>> obtenerLeccionesPorUnidad(@PathVariable Integer unidadId) {
+    public ResponseEntity<List<LeccionDTO>> obtenerLeccionesPorUnidad(@PathVariable Integer unidadId, WebRequest request) {
+        if (noModificado(request, leccionService.obtenerVersionUnidad(unidadId), "unidad-" + unidadId)) {
+            return null;
+        }
         List<LeccionDTO> lecciones = leccionService.obtenerLeccionesPorUnidad(unidadId);
         return ResponseEntity.ok(lecciones);
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<LeccionDTO> obtenerLeccionPorId(@PathVariable Integer id) {
+    public ResponseEntity<LeccionDTO> obtenerLeccionPorId(@PathVariable Integer id, WebRequest request) {
+        if (noModificado(request, leccionService.obtenerVersionLeccion(id), "leccion-" + id)) {
+            return null;
+        }
         Optional<LeccionDTO> leccion = leccionService.obtenerLeccionPorId(id);
         return leccion.map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
     
     
+    // Si otro usuario modificó la misma lección entre la lectura y la escritura (@Version),
+    // se responde 409 para que el cliente vuelva a consultarla
     @PutMapping("/{id}")
     public ResponseEntity<LeccionDTO> actualizarLeccion(@PathVariable Integer id, 
                                                         @Valid @RequestBody LeccionDTO leccionDTO) {
-        Optional<LeccionDTO> leccionActualizada = leccionService.actualizarLeccion(id, leccionDTO);
-        return leccionActualizada.map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+        try {
+            Optional<LeccionDTO> leccionActualizada = leccionService.actualizarLeccion(id, leccionDTO);
+            return leccionActualizada.map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
     
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> eliminarLeccion(@PathVariable Integer id) {
-        boolean eliminado = leccionService.eliminarLeccion(id);
-        return eliminado ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+        try {
+            boolean eliminado = leccionService.eliminarLeccion(id);
+            return eliminado ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
     
     @GetMapping("/buscar/tipo")
@@ -70,7 +91,11 @@ public class LeccionController {
     }
     
     @GetMapping("/programa/{programaId}")
-    public ResponseEntity<List<LeccionDTO>> obtenerLeccionesPorPrograma(@PathVariable Integer programaId) {
+    public ResponseEntity<List<LeccionDTO>> obtenerLeccionesPorPrograma(@PathVariable Integer programaId,
+                                                                        WebRequest request) {
+        if (noModificado(request, leccionService.obtenerVersionPrograma(programaId), "programa-lecciones-" + programaId)) {
+            return null;
+        }
         List<LeccionDTO> lecciones = leccionService.obtenerLeccionesPorPrograma(programaId);
         return ResponseEntity.ok(lecciones);
     }
@@ -100,6 +125,8 @@ public class LeccionController {
         try {
             List<LeccionDTO> leccionesReordenadas = leccionService.reordenarLecciones(unidadId, idsOrdenados);
             return ResponseEntity.ok(leccionesReordenadas);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
@@ -119,6 +146,12 @@ public class LeccionController {
         return leccion.map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
+    
+    // Sin versión (recurso inexistente) se deja seguir al camino normal, que responde 404 o lista vacía
+    private boolean noModificado(WebRequest request, Optional<VersionRecursoDTO> version, String recurso) {
+        return version.isPresent()
+                && request.checkNotModified(version.get().etag(recurso), version.get().getUltimaModificacionMillis());
+    }
 }
 
 
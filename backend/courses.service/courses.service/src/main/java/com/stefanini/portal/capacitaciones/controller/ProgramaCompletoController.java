@@ -1,14 +1,32 @@
 package com.stefanini.portal.capacitaciones.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stefanini.portal.capacitaciones.dto.PaginaProgramasDTO;
 import com.stefanini.portal.capacitaciones.dto.ProgramaCompletoDTO;
+import com.stefanini.portal.capacitaciones.dto.ResultadoBusquedaDTO;
+import com.stefanini.portal.capacitaciones.dto.ResultadoImportacionDTO;
+import com.stefanini.portal.capacitaciones.dto.SugerenciaDTO;
+import com.stefanini.portal.capacitaciones.dto.VersionRecursoDTO;
+import com.stefanini.portal.capacitaciones.service.BusquedaCatalogoService;
+import com.stefanini.portal.capacitaciones.service.ImportacionProgramasService;
+import com.stefanini.portal.capacitaciones.service.IndiceAutocompletado;
 import com.stefanini.portal.capacitaciones.service.ProgramaCompletoService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -19,6 +37,18 @@ public class ProgramaCompletoController {
     @Autowired
     private ProgramaCompletoService programaCompletoService;
     
+    @Autowired
+    private ImportacionProgramasService importacionProgramasService;
+    
+    @Autowired
+    private BusquedaCatalogoService busquedaCatalogoService;
+    
+    @Autowired
+    private IndiceAutocompletado indiceAutocompletado;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
     @PostMapping
     public ResponseEntity<?> crearProgramaCompleto(@Valid @RequestBody ProgramaCompletoDTO programaCompletoDTO) {
         try {
@@ -36,17 +66,30 @@ public class ProgramaCompletoController {
         }
     }
     
+    // Los GET responden 304 si el ETag o la fecha del cliente siguen vigentes; la versión sale de la
+    // caché del catálogo. checkNotModified agrega ETag y Last-Modified a la respuesta
     @GetMapping
-    public ResponseEntity<List<ProgramaCompletoDTO>> obtenerTodosLosProgramasCompletos() {
+    public ResponseEntity<List<ProgramaCompletoDTO>> obtenerTodosLosProgramasCompletos(WebRequest request) {
+        if (catalogoNoModificado(request)) {
+            return null;
+        }
         List<ProgramaCompletoDTO> programas = programaCompletoService.obtenerTodosLosProgramasCompletos();
         return ResponseEntity.ok(programas);
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<ProgramaCompletoDTO> obtenerProgramaCompletoPorId(@PathVariable Integer id) {
+    public ResponseEntity<ProgramaCompletoDTO> obtenerProgramaCompletoPorId(@PathVariable Integer id, WebRequest request) {
+        // La versión se lee antes que el árbol: si cambia entre ambas lecturas, el ETag queda atrás
+        // y el cliente vuelve a recibir el árbol completo en la próxima petición
+        VersionRecursoDTO version = programaCompletoService.obtenerVersionPrograma(id);
         Optional<ProgramaCompletoDTO> programa = programaCompletoService.obtenerProgramaCompletoPorId(id);
-        return programa.map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+        if (programa.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(version.etag("programa-" + id), version.getUltimaModificacionMillis())) {
+            return null;
+        }
+        return ResponseEntity.ok(programa.get());
     }
     
     @PutMapping("/{id}")
@@ -56,6 +99,10 @@ public class ProgramaCompletoController {
             Optional<ProgramaCompletoDTO> programaActualizado = programaCompletoService.actualizarProgramaCompleto(id, programaCompletoDTO);
             return programaActualizado.map(ResponseEntity::ok)
                     .orElse(ResponseEntity.notFound().build());
+        } catch (OptimisticLockingFailureException e) {
+            // Otro usuario modificó el programa o alguna de sus unidades o lecciones: volver a consultarlo
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Conflicto de versión: el programa fue modificado por otro usuario");
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body("Error de validación: " + e.getMessage());
@@ -74,21 +121,121 @@ public class ProgramaCompletoController {
         return eliminado ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
     }
     
+    // Búsqueda de texto completo en programas, unidades y lecciones, ordenada por relevancia
+    @GetMapping("/buscar")
+    public ResponseEntity<?> buscarEnCatalogo(@RequestParam String q,
+                                              @RequestParam(required = false) Integer limite) {
+        try {
+            List<ResultadoBusquedaDTO> resultados = busquedaCatalogoService.buscar(q, limite);
+            return ResponseEntity.ok(resultados);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Error de validación: " + e.getMessage());
+        }
+    }
+    
+    // Sugerencias para la caja de búsqueda: solo ids y títulos, resueltas en memoria
+    @GetMapping("/autocompletar")
+    public ResponseEntity<?> autocompletar(@RequestParam String q,
+                                           @RequestParam(defaultValue = "10") int limite) {
+        if (limite < 1 || limite > 50) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Error de validación: El límite debe estar entre 1 y 50");
+        }
+        List<SugerenciaDTO> sugerencias = indiceAutocompletado.sugerir(q, limite);
+        return ResponseEntity.ok(sugerencias);
+    }
+    
     @GetMapping("/buscar/titulo")
-    public ResponseEntity<List<ProgramaCompletoDTO>> buscarProgramasCompletosPorTitulo(@RequestParam String titulo) {
+    public ResponseEntity<List<ProgramaCompletoDTO>> buscarProgramasCompletosPorTitulo(@RequestParam String titulo,
+                                                                                       WebRequest request) {
+        if (catalogoNoModificado(request)) {
+            return null;
+        }
         List<ProgramaCompletoDTO> programas = programaCompletoService.buscarProgramasCompletosPorTitulo(titulo);
         return ResponseEntity.ok(programas);
     }
     
     @GetMapping("/buscar/area")
-    public ResponseEntity<List<ProgramaCompletoDTO>> buscarProgramasCompletosPorArea(@RequestParam String area) {
+    public ResponseEntity<List<ProgramaCompletoDTO>> buscarProgramasCompletosPorArea(@RequestParam String area,
+                                                                                     WebRequest request) {
+        if (catalogoNoModificado(request)) {
+            return null;
+        }
         List<ProgramaCompletoDTO> programas = programaCompletoService.buscarProgramasCompletosPorArea(area);
         return ResponseEntity.ok(programas);
     }
     
     @GetMapping("/recientes")
-    public ResponseEntity<List<ProgramaCompletoDTO>> obtenerProgramasCompletosRecientes() {
+    public ResponseEntity<List<ProgramaCompletoDTO>> obtenerProgramasCompletosRecientes(WebRequest request) {
+        if (catalogoNoModificado(request)) {
+            return null;
+        }
         List<ProgramaCompletoDTO> programas = programaCompletoService.obtenerProgramasCompletosRecientes();
         return ResponseEntity.ok(programas);
     }
+    
+    @GetMapping("/pagina")
+    public ResponseEntity<?> obtenerPaginaProgramasCompletos(@RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer tamano,
+                                                             @RequestParam(required = false) String area) {
+        try {
+            PaginaProgramasDTO pagina = programaCompletoService.obtenerPaginaProgramasCompletos(cursor, tamano, area);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Error de validación: " + e.getMessage());
+        }
+    }
+    
+    // Un programa por línea (NDJSON), escrito en cuanto se arma
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> transmitirProgramasCompletos(@RequestParam(required = false) String area) {
+        StreamingResponseBody cuerpo = salida -> programaCompletoService.transmitirProgramasCompletos(area, programa -> {
+            try {
+                salida.write(objectMapper.writeValueAsBytes(programa));
+                salida.write('\n');
+                salida.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(cuerpo);
+    }
+    
+    // Importación masiva: el cuerpo se procesa como flujo (JSON, NDJSON o CSV según Content-Type)
+    @PostMapping(value = "/importar", consumes = {MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public ResponseEntity<?> importarProgramasCompletos(@RequestHeader(HttpHeaders.CONTENT_TYPE) String tipoContenido,
+                                                        @RequestParam(required = false) Integer tamanoLote,
+                                                        InputStream cuerpo) {
+        try {
+            ResultadoImportacionDTO resultado = MediaType.parseMediaType(tipoContenido).isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                    ? importacionProgramasService.importarCsv(cuerpo, tamanoLote)
+                    : importacionProgramasService.importarJson(cuerpo, tamanoLote);
+            return ResponseEntity.ok(resultado);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Error de validación: " + e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Error al leer el archivo: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error interno del servidor: " + e.getMessage());
+        }
+    }
+    
+    @GetMapping("/cache/estadisticas")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasCache() {
+        return ResponseEntity.ok(programaCompletoService.obtenerEstadisticasCache());
+    }
+    
+    // Los listados cambian con cualquier alta, baja o modificación del catálogo
+    private boolean catalogoNoModificado(WebRequest request) {
+        VersionRecursoDTO version = programaCompletoService.obtenerVersionCatalogo();
+        return request.checkNotModified(version.etag("catalogo"), version.getUltimaModificacionMillis());
+    }
 }
@@ -3,13 +3,21 @@ package com.stefanini.portal.capacitaciones.controller;
 import com.stefanini.portal.capacitaciones.dto.ProgresoDTO;
 import com.stefanini.portal.capacitaciones.dto.ProgresoProgramaDTO;
 import com.stefanini.portal.capacitaciones.dto.UserStatsDTO;
+import com.stefanini.portal.capacitaciones.service.BufferLatidosProgreso;
+import com.stefanini.portal.capacitaciones.service.DiarioProgresoService;
+import com.stefanini.portal.capacitaciones.service.NotificadorProgreso;
+import com.stefanini.portal.capacitaciones.service.ProgresoAgregadoService;
 import com.stefanini.portal.capacitaciones.service.ProgresoService;
+import com.stefanini.portal.capacitaciones.service.SesionesEstudio;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -23,6 +31,21 @@ public class ProgresoController {
     @Autowired
     private ProgresoService progresoService;
     
+    @Autowired
+    private ProgresoAgregadoService progresoAgregadoService;
+    
+    @Autowired
+    private BufferLatidosProgreso bufferLatidosProgreso;
+    
+    @Autowired
+    private SesionesEstudio sesionesEstudio;
+    
+    @Autowired
+    private DiarioProgresoService diarioProgresoService;
+    
+    @Autowired
+    private NotificadorProgreso notificadorProgreso;
+    
     @GetMapping("/usuario/{usuarioId}")
     @Operation(summary = "Obtener progreso de un usuario (detalle por lección)")
     public ResponseEntity<List<ProgresoDTO>> getProgresoByUsuarioId(@PathVariable UUID usuarioId) {
@@ -34,6 +57,18 @@ public class ProgresoController {
         }
     }
     
+    @GetMapping(value = "/usuario/{usuarioId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Suscribirse (SSE) a los cambios de progreso por programa y a las insignias otorgadas")
+    public SseEmitter suscribirProgreso(@PathVariable UUID usuarioId) {
+        return notificadorProgreso.suscribir(usuarioId);
+    }
+    
+    @GetMapping("/stream/estadisticas")
+    @Operation(summary = "Estadísticas de las conexiones SSE de progreso")
+    public ResponseEntity<Map<String, Object>> getEstadisticasStream() {
+        return ResponseEntity.ok(notificadorProgreso.obtenerEstadisticas());
+    }
+    
     @GetMapping("/usuario/{usuarioId}/programas")
     @Operation(summary = "Obtener progreso de un usuario agrupado por programas")
     public ResponseEntity<List<ProgresoProgramaDTO>> getProgresoProgramasByUsuarioId(@PathVariable UUID usuarioId) {
@@ -60,6 +95,78 @@ public class ProgresoController {
         }
     }
     
+    @PostMapping("/lote")
+    @Operation(summary = "Actualizar en una sola sentencia el progreso de varias lecciones (el porcentaje no disminuye)")
+    public ResponseEntity<List<ProgresoDTO>> actualizarProgresoLote(@RequestBody List<Map<String, Object>> request) {
+        try {
+            List<ProgresoDTO> actualizaciones = new ArrayList<>();
+            for (Map<String, Object> item : request) {
+                UUID usuarioId = UUID.fromString((String) item.get("usuario_id"));
+                Long leccionId = Long.valueOf(item.get("leccion_id").toString());
+                Double porcentaje = Double.valueOf(item.get("porcentaje").toString());
+                actualizaciones.add(new ProgresoDTO(null, usuarioId, leccionId, null, porcentaje, null));
+            }
+            
+            List<ProgresoDTO> progresos = progresoService.actualizarProgresoLote(actualizaciones);
+            return ResponseEntity.ok(progresos);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @PostMapping("/latido")
+    @Operation(summary = "Registrar un latido de progreso (escritura diferida salvo al completar la lección)")
+    public ResponseEntity<ProgresoDTO> registrarLatido(@RequestBody Map<String, Object> request) {
+        try {
+            UUID usuarioId = UUID.fromString((String) request.get("usuario_id"));
+            Integer leccionId = Integer.valueOf(request.get("leccion_id").toString());
+            Double porcentaje = Double.valueOf(request.get("porcentaje").toString());
+            
+            return bufferLatidosProgreso.registrarLatido(usuarioId, leccionId, porcentaje)
+                    .map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.accepted().build());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/latido/estadisticas")
+    @Operation(summary = "Estadísticas del buffer de latidos de progreso")
+    public ResponseEntity<Map<String, Object>> getEstadisticasLatidos() {
+        return ResponseEntity.ok(bufferLatidosProgreso.obtenerEstadisticas());
+    }
+    
+    @PostMapping("/estudio/{evento}")
+    @Operation(summary = "Registrar un evento de sesión de estudio: iniciar, latido o detener")
+    public ResponseEntity<Void> registrarEventoEstudio(@PathVariable String evento,
+                                                       @RequestBody Map<String, Object> request) {
+        try {
+            UUID usuarioId = UUID.fromString((String) request.get("usuario_id"));
+            Integer leccionId = Integer.valueOf(request.get("leccion_id").toString());
+            
+            switch (evento) {
+                case "iniciar":
+                case "latido":
+                    sesionesEstudio.registrarActividad(usuarioId, leccionId);
+                    break;
+                case "detener":
+                    sesionesEstudio.detener(usuarioId, leccionId);
+                    break;
+                default:
+                    return ResponseEntity.badRequest().build();
+            }
+            return ResponseEntity.accepted().build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/estudio/estadisticas")
+    @Operation(summary = "Estadísticas de las sesiones de estudio en memoria")
+    public ResponseEntity<Map<String, Object>> getEstadisticasEstudio() {
+        return ResponseEntity.ok(sesionesEstudio.obtenerEstadisticas());
+    }
+    
     @GetMapping("/usuario/{usuarioId}/estadisticas")
     @Operation(summary = "Obtener estadísticas de un usuario")
     public ResponseEntity<UserStatsDTO> getEstadisticasUsuario(@PathVariable UUID usuarioId) {
@@ -70,4 +177,46 @@ public class ProgresoController {
             return ResponseEntity.badRequest().build();
         }
     }
+    
+    @GetMapping("/usuario/{usuarioId}/leccion/{leccionId}/historial")
+    @Operation(summary = "Historial de eventos de progreso de un usuario en una lección")
+    public ResponseEntity<List<ProgresoDTO>> getHistorialLeccion(@PathVariable UUID usuarioId,
+                                                                 @PathVariable Integer leccionId) {
+        try {
+            return ResponseEntity.ok(diarioProgresoService.obtenerHistorial(usuarioId, leccionId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @PostMapping("/eventos/compactar")
+    @Operation(summary = "Plegar los eventos nuevos del diario sobre progreso y los agregados")
+    public ResponseEntity<Map<String, Object>> compactarEventos() {
+        try {
+            return ResponseEntity.ok(diarioProgresoService.compactar());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @PostMapping("/eventos/reproducir")
+    @Operation(summary = "Reconstruir progreso y agregados desde el diario de eventos completo")
+    public ResponseEntity<Map<String, Object>> reproducirEventos() {
+        try {
+            return ResponseEntity.ok(diarioProgresoService.reproducir());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @PostMapping("/agregados/reconstruir")
+    @Operation(summary = "Recalcular desde cero los agregados de progreso por programa")
+    public ResponseEntity<Map<String, Object>> reconstruirAgregados() {
+        try {
+            long agregados = progresoAgregadoService.reconstruirTodo();
+            return ResponseEntity.ok(Map.of("agregados", agregados));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
@@ -0,0 +1,83 @@
+package com.stefanini.portal.capacitaciones.dto;
+
+public class AnaliticaAreaDTO {
+    
+    private String areaConocimiento;
+    private int totalProgramas;
+    private long inscripciones;
+    private long completados;
+    private double tasaCompletado;
+    private double progresoPromedio; // Ponderado por inscripciones
+    private Double horasPromedioHastaCompletar;
+    
+    // Constructores
+    public AnaliticaAreaDTO() {}
+    
+    public AnaliticaAreaDTO(String areaConocimiento, int totalProgramas, long inscripciones, long completados,
+                            double tasaCompletado, double progresoPromedio, Double horasPromedioHastaCompletar) {
+        this.areaConocimiento = areaConocimiento;
+        this.totalProgramas = totalProgramas;
+        this.inscripciones = inscripciones;
+        this.completados = completados;
+        this.tasaCompletado = tasaCompletado;
+        this.progresoPromedio = progresoPromedio;
+        this.horasPromedioHastaCompletar = horasPromedioHastaCompletar;
+    }
+    
+    // Getters y Setters
+    public String getAreaConocimiento() {
+        return areaConocimiento;
+    }
+    
+    public void setAreaConocimiento(String areaConocimiento) {
+        this.areaConocimiento = areaConocimiento;
+    }
+    
+    public int getTotalProgramas() {
+        return totalProgramas;
+    }
+    
+    public void setTotalProgramas(int totalProgramas) {
+        this.totalProgramas = totalProgramas;
+    }
+    
+    public long getInscripciones() {
+        return inscripciones;
+    }
+    
+    public void setInscripciones(long inscripciones) {
+        this.inscripciones = inscripciones;
+    }
+    
+    public long getCompletados() {
+        return completados;
+    }
+    
+    public void setCompletados(long completados) {
+        this.completados = completados;
+    }
+    
+    public double getTasaCompletado() {
+        return tasaCompletado;
+    }
+    
+    public void setTasaCompletado(double tasaCompletado) {
+        this.tasaCompletado = tasaCompletado;
+    }
+    
+    public double getProgresoPromedio() {
+        return progresoPromedio;
+    }
+    
+    public void setProgresoPromedio(double progresoPromedio) {
+        this.progresoPromedio = progresoPromedio;
+    }
+    
+    public Double getHorasPromedioHastaCompletar() {
+        return horasPromedioHastaCompletar;
+    }
+    
+    public void setHorasPromedioHastaCompletar(Double horasPromedioHastaCompletar) {
+        this.horasPromedioHastaCompletar = horasPromedioHastaCompletar;
+    }
+}
@@ -0,0 +1,94 @@
+package com.stefanini.portal.capacitaciones.dto;
+
+public class AnaliticaProgramaDTO {
+    
+    private Long programaId;
+    private String tituloPrograma;
+    private String areaConocimiento;
+    private long inscripciones; // Usuarios con progreso en el programa
+    private long completados;
+    private double tasaCompletado; // Porcentaje de inscripciones completadas
+    private double progresoPromedio;
+    private Double horasPromedioHastaCompletar; // Nulo si nadie lo ha completado
+    
+    // Constructores
+    public AnaliticaProgramaDTO() {}
+    
+    public AnaliticaProgramaDTO(Long programaId, String tituloPrograma, String areaConocimiento,
+                                long inscripciones, long completados, double tasaCompletado,
+                                double progresoPromedio, Double horasPromedioHastaCompletar) {
+        this.programaId = programaId;
+        this.tituloPrograma = tituloPrograma;
+        this.areaConocimiento = areaConocimiento;
+        this.inscripciones = inscripciones;
+        this.completados = completados;
+        this.tasaCompletado = tasaCompletado;
+        this.progresoPromedio = progresoPromedio;
+        this.horasPromedioHastaCompletar = horasPromedioHastaCompletar;
+    }
+    
+    // Getters y Setters
+    public Long getProgramaId() {
+        return programaId;
+    }
+    
+    public void setProgramaId(Long programaId) {
+        this.programaId = programaId;
+    }
+    
+    public String getTituloPrograma() {
+        return tituloPrograma;
+    }
+    
+    public void setTituloPrograma(String tituloPrograma) {
+        this.tituloPrograma = tituloPrograma;
+    }
+    
+    public String getAreaConocimiento() {
+        return areaConocimiento;
+    }
+    
+    public void setAreaConocimiento(String areaConocimiento) {
+        this.areaConocimiento = areaConocimiento;
+    }
+    
+    public long getInscripciones() {
+        return inscripciones;
+    }
+    
+    public void setInscripciones(long inscripciones) {
+        this.inscripciones = inscripciones;
+    }
+    
+    public long getCompletados() {
+        return completados;
+    }
+    
+    public void setCompletados(long completados) {
+        this.completados = completados;
+    }
+    
+    public double getTasaCompletado() {
+        return tasaCompletado;
+    }
+    
+    public void setTasaCompletado(double tasaCompletado) {
+        this.tasaCompletado = tasaCompletado;
+    }
+    
+    public double getProgresoPromedio() {
+        return progresoPromedio;
+    }
+    
+    public void setProgresoPromedio(double progresoPromedio) {
+        this.progresoPromedio = progresoPromedio;
+    }
+    
+    public Double getHorasPromedioHastaCompletar() {
+        return horasPromedioHastaCompletar;
+    }
+    
+    public void setHorasPromedioHastaCompletar(Double horasPromedioHastaCompletar) {
+        this.horasPromedioHastaCompletar = horasPromedioHastaCompletar;
+    }
+}
@@ -43,6 +43,30 @@ public class LeccionDTO {
         this.urlMaterial = urlMaterial;
     }
     
+    // Usados por las proyecciones de LeccionRepository
+    public LeccionDTO(Integer id, Integer unidadId, String titulo, Integer orden, String tipoMaterial, String urlMaterial) {
+        this(unidadId, titulo, orden, tipoMaterial, urlMaterial);
+        this.id = id;
+    }
+    
+    public LeccionDTO(Integer id, Integer unidadId, String titulo, Integer orden, String tipoMaterial, String urlMaterial,
+                      Integer materialId, String materialNombreOriginal, String materialTipoMaterial,
+                      String materialExtension, Long materialTamañoBytes, String materialUrlAcceso,
+                      String materialDescripcion, Boolean materialS3Uploaded, String materialS3Key) {
+        this(id, unidadId, titulo, orden, tipoMaterial, urlMaterial);
+        if (materialId != null) {
+            this.materialId = materialId;
+            this.materialNombreOriginal = materialNombreOriginal;
+            this.materialTipoMaterial = materialTipoMaterial;
+            this.materialExtension = materialExtension;
+            this.materialTamañoBytes = materialTamañoBytes;
+            this.materialUrlAcceso = materialUrlAcceso;
+            this.materialDescripcion = materialDescripcion;
+            this.materialS3Uploaded = materialS3Uploaded;
+            this.materialS3Key = materialS3Key;
+        }
+    }
+    
     // Getters y Setters
     public Integer getId() {
         return id;
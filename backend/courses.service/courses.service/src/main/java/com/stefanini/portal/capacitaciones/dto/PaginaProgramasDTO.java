@@ -0,0 +1,49 @@
+package com.stefanini.portal.capacitaciones.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PaginaProgramasDTO {
+    
+    private List<ProgramaCompletoDTO> programas = new ArrayList<>();
+    private String siguienteCursor; // null cuando no hay más páginas
+    private Integer tamano;
+    
+    // Constructores
+    public PaginaProgramasDTO() {}
+    
+    public PaginaProgramasDTO(List<ProgramaCompletoDTO> programas, String siguienteCursor, Integer tamano) {
+        this.programas = programas;
+        this.siguienteCursor = siguienteCursor;
+        this.tamano = tamano;
+    }
+    
+    // Getters y Setters
+    public List<ProgramaCompletoDTO> getProgramas() {
+        return programas;
+    }
+    
+    public void setProgramas(List<ProgramaCompletoDTO> programas) {
+        this.programas = programas;
+    }
+    
+    public String getSiguienteCursor() {
+        return siguienteCursor;
+    }
+    
+    public void setSiguienteCursor(String siguienteCursor) {
+        this.siguienteCursor = siguienteCursor;
+    }
+    
+    public Integer getTamano() {
+        return tamano;
+    }
+    
+    public void setTamano(Integer tamano) {
+        this.tamano = tamano;
+    }
+    
+    public boolean isHayMas() {
+        return siguienteCursor != null;
+    }
+}
@@ -0,0 +1,54 @@
+package com.stefanini.portal.capacitaciones.dto;
+
+import java.util.UUID;
+
+public class PosicionClasificacionDTO {
+    
+    private UUID usuarioId;
+    private int posicion; // 0 si el usuario no figura en la clasificación
+    private int puntos; // Lecciones completadas o insignias, según la clasificación
+    private int participantes;
+    
+    // Constructores
+    public PosicionClasificacionDTO() {}
+    
+    public PosicionClasificacionDTO(UUID usuarioId, int posicion, int puntos, int participantes) {
+        this.usuarioId = usuarioId;
+        this.posicion = posicion;
+        this.puntos = puntos;
+        this.participantes = participantes;
+    }
+    
+    // Getters y Setters
+    public UUID getUsuarioId() {
+        return usuarioId;
+    }
+    
+    public void setUsuarioId(UUID usuarioId) {
+        this.usuarioId = usuarioId;
+    }
+    
+    public int getPosicion() {
+        return posicion;
+    }
+    
+    public void setPosicion(int posicion) {
+        this.posicion = posicion;
+    }
+    
+    public int getPuntos() {
+        return puntos;
+    }
+    
+    public void setPuntos(int puntos) {
+        this.puntos = puntos;
+    }
+    
+    public int getParticipantes() {
+        return participantes;
+    }
+    
+    public void setParticipantes(int participantes) {
+        this.participantes = participantes;
+    }
+}
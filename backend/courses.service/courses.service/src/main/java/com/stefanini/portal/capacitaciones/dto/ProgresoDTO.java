@@ -13,6 +13,9 @@ public class ProgresoDTO {
     private LocalDateTime fechaActualizacion;
     private String tituloLeccion;
     private String tituloPrograma;
+    private Long unidadId;
+    private String tituloUnidad;
+    private Long programaId;
     
     // Constructores
     public ProgresoDTO() {}
@@ -27,6 +30,18 @@ public class ProgresoDTO {
         this.fechaActualizacion = fechaActualizacion;
     }
     
+    // Proyección de ProgresoRepository con lección, unidad y programa resueltos en la misma consulta
+    public ProgresoDTO(Long id, UUID usuarioId, Integer leccionId, String estado, Double porcentaje,
+                      LocalDateTime fechaActualizacion, String tituloLeccion, Integer unidadId,
+                      String tituloUnidad, Integer programaId, String tituloPrograma) {
+        this(id, usuarioId, leccionId.longValue(), estado, porcentaje, fechaActualizacion);
+        this.tituloLeccion = tituloLeccion;
+        this.unidadId = unidadId.longValue();
+        this.tituloUnidad = tituloUnidad;
+        this.programaId = programaId.longValue();
+        this.tituloPrograma = tituloPrograma;
+    }
+    
     // Getters y Setters
     public Long getId() {
         return id;
@@ -91,5 +106,28 @@ public class ProgresoDTO {
     public void setTituloPrograma(String tituloPrograma) {
         this.tituloPrograma = tituloPrograma;
     }
+    
+    public Long getUnidadId() {
+        return unidadId;
+    }
+    
+    public void setUnidadId(Long unidadId) {
+        this.unidadId = unidadId;
+    }
+    
+    public String getTituloUnidad() {
+        return tituloUnidad;
+    }
+    
+    public void setTituloUnidad(String tituloUnidad) {
+        this.tituloUnidad = tituloUnidad;
+    }
+    
+    public Long getProgramaId() {
+        return programaId;
+    }
+    
+    public void setProgramaId(Long programaId) {
+        this.programaId = programaId;
+    }
 }
-
@@ -0,0 +1,83 @@
+package com.stefanini.portal.capacitaciones.dto;
+
+public class ReglaInsigniaDTO {
+    
+    private Long id;
+    private Long insigniaId;
+    private String tipo; // programa_completado, programas_area o lecciones_semana
+    private Integer programaId;
+    private String areaConocimiento;
+    private Integer cantidad;
+    private Boolean activa;
+    
+    // Constructores
+    public ReglaInsigniaDTO() {}
+    
+    public ReglaInsigniaDTO(Long id, Long insigniaId, String tipo, Integer programaId, String areaConocimiento,
+                            Integer cantidad, Boolean activa) {
+        this.id = id;
+        this.insigniaId = insigniaId;
+        this.tipo = tipo;
+        this.programaId = programaId;
+        this.areaConocimiento = areaConocimiento;
+        this.cantidad = cantidad;
+        this.activa = activa;
+    }
+    
+    // Getters y Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getInsigniaId() {
+        return insigniaId;
+    }
+    
+    public void setInsigniaId(Long insigniaId) {
+        this.insigniaId = insigniaId;
+    }
+    
+    public String getTipo() {
+        return tipo;
+    }
+    
+    public void setTipo(String tipo) {
+        this.tipo = tipo;
+    }
+    
+    public Integer getProgramaId() {
+        return programaId;
+    }
+    
+    public void setProgramaId(Integer programaId) {
+        this.programaId = programaId;
+    }
+    
+    public String getAreaConocimiento() {
+        return areaConocimiento;
+    }
+    
+    public void setAreaConocimiento(String areaConocimiento) {
+        this.areaConocimiento = areaConocimiento;
+    }
+    
+    public Integer getCantidad() {
+        return cantidad;
+    }
+    
+    public void setCantidad(Integer cantidad) {
+        this.cantidad = cantidad;
+    }
+    
+    public Boolean getActiva() {
+        return activa;
+    }
+    
+    public void setActiva(Boolean activa) {
+        this.activa = activa;
+    }
+}
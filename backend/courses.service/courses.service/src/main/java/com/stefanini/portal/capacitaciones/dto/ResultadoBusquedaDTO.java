@@ -0,0 +1,73 @@
+package com.stefanini.portal.capacitaciones.dto;
+
+public class ResultadoBusquedaDTO {
+    
+    private String tipo; // PROGRAMA, UNIDAD o LECCION
+    private Integer id;
+    private Integer programaId;
+    private String titulo;
+    private String fragmento; // texto con las coincidencias marcadas con <mark>
+    private Double relevancia;
+    
+    // Constructores
+    public ResultadoBusquedaDTO() {}
+    
+    public ResultadoBusquedaDTO(String tipo, Integer id, Integer programaId, String titulo,
+                                String fragmento, Double relevancia) {
+        this.tipo = tipo;
+        this.id = id;
+        this.programaId = programaId;
+        this.titulo = titulo;
+        this.fragmento = fragmento;
+        this.relevancia = relevancia;
+    }
+    
+    // Getters y Setters
+    public String getTipo() {
+        return tipo;
+    }
+    
+    public void setTipo(String tipo) {
+        this.tipo = tipo;
+    }
+    
+    public Integer getId() {
+        return id;
+    }
+    
+    public void setId(Integer id) {
+        this.id = id;
+    }
+    
+    public Integer getProgramaId() {
+        return programaId;
+    }
+    
+    public void setProgramaId(Integer programaId) {
+        this.programaId = programaId;
+    }
+    
+    public String getTitulo() {
+        return titulo;
+    }
+    
+    public void setTitulo(String titulo) {
+        this.titulo = titulo;
+    }
+    
+    public String getFragmento() {
+        return fragmento;
+    }
+    
+    public void setFragmento(String fragmento) {
+        this.fragmento = fragmento;
+    }
+    
+    public Double getRelevancia() {
+        return relevancia;
+    }
+    
+    public void setRelevancia(Double relevancia) {
+        this.relevancia = relevancia;
+    }
+}
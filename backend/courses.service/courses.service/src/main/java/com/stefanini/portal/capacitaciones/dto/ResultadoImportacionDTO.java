@@ -0,0 +1,126 @@
+package com.stefanini.portal.capacitaciones.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResultadoImportacionDTO {
+    
+    private int totalRegistros;
+    private int registrosImportados;
+    private int registrosConError;
+    private int lotesConfirmados;
+    private long duracionMs;
+    private double registrosPorSegundo;
+    private boolean completado; // false si la lectura del archivo se interrumpió
+    private List<ErrorRegistroDTO> errores = new ArrayList<>();
+    
+    // Constructores
+    public ResultadoImportacionDTO() {}
+    
+    // Getters y Setters
+    public int getTotalRegistros() {
+        return totalRegistros;
+    }
+    
+    public void setTotalRegistros(int totalRegistros) {
+        this.totalRegistros = totalRegistros;
+    }
+    
+    public int getRegistrosImportados() {
+        return registrosImportados;
+    }
+    
+    public void setRegistrosImportados(int registrosImportados) {
+        this.registrosImportados = registrosImportados;
+    }
+    
+    public int getRegistrosConError() {
+        return registrosConError;
+    }
+    
+    public void setRegistrosConError(int registrosConError) {
+        this.registrosConError = registrosConError;
+    }
+    
+    public int getLotesConfirmados() {
+        return lotesConfirmados;
+    }
+    
+    public void setLotesConfirmados(int lotesConfirmados) {
+        this.lotesConfirmados = lotesConfirmados;
+    }
+    
+    public long getDuracionMs() {
+        return duracionMs;
+    }
+    
+    public void setDuracionMs(long duracionMs) {
+        this.duracionMs = duracionMs;
+    }
+    
+    public double getRegistrosPorSegundo() {
+        return registrosPorSegundo;
+    }
+    
+    public void setRegistrosPorSegundo(double registrosPorSegundo) {
+        this.registrosPorSegundo = registrosPorSegundo;
+    }
+    
+    public boolean isCompletado() {
+        return completado;
+    }
+    
+    public void setCompletado(boolean completado) {
+        this.completado = completado;
+    }
+    
+    public List<ErrorRegistroDTO> getErrores() {
+        return errores;
+    }
+    
+    public void setErrores(List<ErrorRegistroDTO> errores) {
+        this.errores = errores;
+    }
+    
+    // Clase interna para el error de un registro
+    public static class ErrorRegistroDTO {
+        
+        private int registro; // posición del programa en el archivo, desde 1
+        private String titulo;
+        private String mensaje;
+        
+        // Constructores
+        public ErrorRegistroDTO() {}
+        
+        public ErrorRegistroDTO(int registro, String titulo, String mensaje) {
+            this.registro = registro;
+            this.titulo = titulo;
+            this.mensaje = mensaje;
+        }
+        
+        // Getters y Setters
+        public int getRegistro() {
+            return registro;
+        }
+        
+        public void setRegistro(int registro) {
+            this.registro = registro;
+        }
+        
+        public String getTitulo() {
+            return titulo;
+        }
+        
+        public void setTitulo(String titulo) {
+            this.titulo = titulo;
+        }
+        
+        public String getMensaje() {
+            return mensaje;
+        }
+        
+        public void setMensaje(String mensaje) {
+            this.mensaje = mensaje;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.stefanini.portal.capacitaciones.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+public class SubidaArchivoDTO {
+    
+    private UUID id;
+    private String nombreOriginal;
+    private Long tamañoBytes;
+    private Long bytesConfirmados; // Prefijo contiguo recibido: desde aquí se reanuda
+    private List<long[]> rangosRecibidos; // [inicio, fin) recibidos, incluidos los que llegaron fuera de orden
+    private Integer materialId; // Nulo hasta finalizar
+    
+    // Constructores
+    public SubidaArchivoDTO() {}
+    
+    public SubidaArchivoDTO(UUID id, String nombreOriginal, Long tamañoBytes, Long bytesConfirmados,
+                            List<long[]> rangosRecibidos, Integer materialId) {
+        this.id = id;
+        this.nombreOriginal = nombreOriginal;
+        this.tamañoBytes = tamañoBytes;
+        this.bytesConfirmados = bytesConfirmados;
+        this.rangosRecibidos = rangosRecibidos;
+        this.materialId = materialId;
+    }
+    
+    // Getters y Setters
+    public UUID getId() {
+        return id;
+    }
+    
+    public void setId(UUID id) {
+        this.id = id;
+    }
+    
+    public String getNombreOriginal() {
+        return nombreOriginal;
+    }
+    
+    public void setNombreOriginal(String nombreOriginal) {
+        this.nombreOriginal = nombreOriginal;
+    }
+    
+    public Long getTamañoBytes() {
+        return tamañoBytes;
+    }
+    
+    public void setTamañoBytes(Long tamañoBytes) {
+        this.tamañoBytes = tamañoBytes;
+    }
+    
+    public Long getBytesConfirmados() {
+        return bytesConfirmados;
+    }
+    
+    public void setBytesConfirmados(Long bytesConfirmados) {
+        this.bytesConfirmados = bytesConfirmados;
+    }
+    
+    public List<long[]> getRangosRecibidos() {
+        return rangosRecibidos;
+    }
+    
+    public void setRangosRecibidos(List<long[]> rangosRecibidos) {
+        this.rangosRecibidos = rangosRecibidos;
+    }
+    
+    public Integer getMaterialId() {
+        return materialId;
+    }
+    
+    public void setMaterialId(Integer materialId) {
+        this.materialId = materialId;
+    }
+}
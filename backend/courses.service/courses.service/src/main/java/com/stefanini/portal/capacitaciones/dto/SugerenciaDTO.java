@@ -0,0 +1,52 @@
+package com.stefanini.portal.capacitaciones.dto;
+
+public class SugerenciaDTO {
+    
+    private String tipo; // PROGRAMA, UNIDAD o LECCION
+    private Integer id;
+    private Integer programaId;
+    private String titulo;
+    
+    // Constructores
+    public SugerenciaDTO() {}
+    
+    public SugerenciaDTO(String tipo, Integer id, Integer programaId, String titulo) {
+        this.tipo = tipo;
+        this.id = id;
+        this.programaId = programaId;
+        this.titulo = titulo;
+    }
+    
+    // Getters y Setters
+    public String getTipo() {
+        return tipo;
+    }
+    
+    public void setTipo(String tipo) {
+        this.tipo = tipo;
+    }
+    
+    public Integer getId() {
+        return id;
+    }
+    
+    public void setId(Integer id) {
+        this.id = id;
+    }
+    
+    public Integer getProgramaId() {
+        return programaId;
+    }
+    
+    public void setProgramaId(Integer programaId) {
+        this.programaId = programaId;
+    }
+    
+    public String getTitulo() {
+        return titulo;
+    }
+    
+    public void setTitulo(String titulo) {
+        this.titulo = titulo;
+    }
+}
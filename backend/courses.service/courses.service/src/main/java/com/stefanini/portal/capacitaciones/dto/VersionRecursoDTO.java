@@ -0,0 +1,74 @@
+package com.stefanini.portal.capacitaciones.dto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Versión de un recurso (o de un conjunto de recursos) leída sin cargar sus datos.
+ * Sirve para responder GET condicionales (If-None-Match / If-Modified-Since) con 304.
+ */
+public class VersionRecursoDTO {
+    
+    private String version;
+    private LocalDateTime ultimaModificacion;
+    
+    // Constructores
+    public VersionRecursoDTO() {}
+    
+    public VersionRecursoDTO(Long version, LocalDateTime ultimaModificacion) {
+        this.version = String.valueOf(version);
+        this.ultimaModificacion = ultimaModificacion;
+    }
+    
+    // Para conjuntos (un árbol de programa, el catálogo). Cada fila trae total, suma de versiones,
+    // mayor id y última modificación de una tabla: el total detecta bajas, el mayor id las altas
+    // y la suma de versiones las modificaciones. Así ningún cambio en una lección tiene que
+    // escribir la fila del programa para que su ETag avance
+    public static VersionRecursoDTO combinar(Object[]... filas) {
+        StringBuilder version = new StringBuilder();
+        LocalDateTime ultimaModificacion = null;
+        for (Object[] fila : filas) {
+            if (version.length() > 0) {
+                version.append('.');
+            }
+            version.append(fila[0]).append('.').append(fila[1]).append('.').append(fila[2] != null ? fila[2] : 0);
+            LocalDateTime fecha = (LocalDateTime) fila[3];
+            if (fecha != null && (ultimaModificacion == null || fecha.isAfter(ultimaModificacion))) {
+                ultimaModificacion = fecha;
+            }
+        }
+        VersionRecursoDTO resultado = new VersionRecursoDTO();
+        resultado.setVersion(version.toString());
+        resultado.setUltimaModificacion(ultimaModificacion);
+        return resultado;
+    }
+    
+    // ETag fuerte: la versión identifica exactamente el contenido servido
+    public String etag(String recurso) {
+        long marca = ultimaModificacion != null ? getUltimaModificacionMillis() : 0;
+        return "\"" + recurso + "-" + version + "-" + marca + "\"";
+    }
+    
+    public long getUltimaModificacionMillis() {
+        return ultimaModificacion != null
+                ? ultimaModificacion.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : -1;
+    }
+    
+    // Getters y Setters
+    public String getVersion() {
+        return version;
+    }
+    
+    public void setVersion(String version) {
+        this.version = version;
+    }
+    
+    public LocalDateTime getUltimaModificacion() {
+        return ultimaModificacion;
+    }
+    
+    public void setUltimaModificacion(LocalDateTime ultimaModificacion) {
+        this.ultimaModificacion = ultimaModificacion;
+    }
+}
@@ -5,7 +5,9 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "insignias_otorgadas", schema = "capacitaciones")
+@Table(name = "insignias_otorgadas", schema = "capacitaciones",
+       uniqueConstraints = @UniqueConstraint(name = "insignias_otorgadas_usuario_id_insignia_id_key",
+                                             columnNames = {"usuario_id", "insignia_id"}))
 public class InsigniaOtorgada {
     
     @Id
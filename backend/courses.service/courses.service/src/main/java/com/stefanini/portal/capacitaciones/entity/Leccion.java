@@ -4,13 +4,17 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "lecciones", schema = "capacitaciones")
 public class Leccion {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lecciones_id_seq")
+    @SequenceGenerator(name = "lecciones_id_seq", sequenceName = "lecciones_id_seq", schema = "capacitaciones", allocationSize = 50)
     private Integer id;
     
     @NotNull(message = "La unidad es requerida")
@@ -37,6 +41,15 @@ public class Leccion {
     @JoinColumn(name = "material_id")
     private Material material; // Para archivos subidos
     
+    // Se incrementa en cada modificación; base de los ETag de los GET
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+    
+    @UpdateTimestamp
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+    
     // Constructores
     public Leccion() {}
     
@@ -134,6 +147,14 @@ public class Leccion {
         return urlMaterial; // Fallback a URL externa
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+    
     @Override
     public String toString() {
         return "Leccion{" +
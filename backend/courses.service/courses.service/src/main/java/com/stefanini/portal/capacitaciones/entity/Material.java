@@ -131,6 +131,10 @@ public class Material {
     }
     
     public String getTamañoFormateado() {
+        return formatearTamaño(tamañoBytes);
+    }
+    
+    public static String formatearTamaño(Long tamañoBytes) {
         if (tamañoBytes == null) return "0 B";
         
         long bytes = tamañoBytes;
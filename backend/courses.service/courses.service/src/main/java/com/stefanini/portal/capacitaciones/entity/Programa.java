@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -33,6 +34,16 @@ public class Programa {
     @Column(name = "fecha_creacion", nullable = false, updatable = false)
     private LocalDateTime fechaCreacion;
     
+    // Se incrementa en cada modificación de los datos del programa. El ETag del árbol combina
+    // esta versión con las de sus unidades y lecciones, que no escriben esta fila
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+    
+    @UpdateTimestamp
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+    
     @OneToMany(mappedBy = "programa", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     @OrderBy("orden ASC")
     private List<Unidad> unidades = new ArrayList<>();
@@ -98,6 +109,14 @@ public class Programa {
         this.fechaCreacion = fechaCreacion;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+    
     public List<Unidad> getUnidades() {
         return unidades;
     }
@@ -5,7 +5,9 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "progreso", schema = "capacitaciones")
+@Table(name = "progreso", schema = "capacitaciones",
+       uniqueConstraints = @UniqueConstraint(name = "progreso_usuario_id_leccion_id_key",
+                                             columnNames = {"usuario_id", "leccion_id"}))
 public class Progreso {
     
     @Id
@@ -28,6 +30,11 @@ public class Progreso {
     @Column(name = "fecha_actualizacion")
     private LocalDateTime fechaActualizacion = LocalDateTime.now();
     
+    // Primera vez que la lección quedó completada; los latidos y reescrituras posteriores solo mueven
+    // fechaActualizacion (reglas de insignias por lecciones completadas en la semana)
+    @Column(name = "fecha_completado")
+    private LocalDateTime fechaCompletado;
+    
     // Constructores
     public Progreso() {}
     
@@ -92,4 +99,12 @@ public class Progreso {
     public void preUpdate() {
         this.fechaActualizacion = LocalDateTime.now();
     }
+    
+    public LocalDateTime getFechaCompletado() {
+        return fechaCompletado;
+    }
+    
+    public void setFechaCompletado(LocalDateTime fechaCompletado) {
+        this.fechaCompletado = fechaCompletado;
+    }
 }
@@ -0,0 +1,50 @@
+package com.stefanini.portal.capacitaciones.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Marca de la compactación del diario de progreso: los eventos con id hasta ultimoEventoId ya
+// están reflejados en progreso y progreso_programas. Tabla de una sola fila
+@Entity
+@Table(name = "progreso_compactacion", schema = "capacitaciones")
+public class ProgresoCompactacion {
+    
+    public static final Integer ID_UNICO = 1;
+    
+    @Id
+    private Integer id = ID_UNICO;
+    
+    @Column(name = "ultimo_evento_id", nullable = false)
+    private Long ultimoEventoId = 0L;
+    
+    @Column(name = "fecha_compactacion")
+    private LocalDateTime fechaCompactacion;
+    
+    // Constructores
+    public ProgresoCompactacion() {}
+    
+    // Getters y Setters
+    public Integer getId() {
+        return id;
+    }
+    
+    public void setId(Integer id) {
+        this.id = id;
+    }
+    
+    public Long getUltimoEventoId() {
+        return ultimoEventoId;
+    }
+    
+    public void setUltimoEventoId(Long ultimoEventoId) {
+        this.ultimoEventoId = ultimoEventoId;
+    }
+    
+    public LocalDateTime getFechaCompactacion() {
+        return fechaCompactacion;
+    }
+    
+    public void setFechaCompactacion(LocalDateTime fechaCompactacion) {
+        this.fechaCompactacion = fechaCompactacion;
+    }
+}
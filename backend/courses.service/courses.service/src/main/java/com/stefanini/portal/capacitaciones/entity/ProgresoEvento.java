@@ -0,0 +1,91 @@
+package com.stefanini.portal.capacitaciones.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Diario de solo inserción con el estado resultante de cada escritura de progreso; progreso guarda
+// únicamente el último estado de cada (usuario, lección)
+@Entity
+@Table(name = "progreso_eventos", schema = "capacitaciones")
+public class ProgresoEvento {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "usuario_id", nullable = false)
+    private UUID usuarioId;
+    
+    @Column(name = "leccion_id", nullable = false)
+    private Integer leccionId;
+    
+    @Column(name = "estado", length = 20)
+    private String estado;
+    
+    @Column(name = "porcentaje")
+    private Double porcentaje;
+    
+    @Column(name = "fecha", nullable = false)
+    private LocalDateTime fecha;
+    
+    // Constructores
+    public ProgresoEvento() {}
+    
+    public ProgresoEvento(UUID usuarioId, Integer leccionId, String estado, Double porcentaje, LocalDateTime fecha) {
+        this.usuarioId = usuarioId;
+        this.leccionId = leccionId;
+        this.estado = estado;
+        this.porcentaje = porcentaje;
+        this.fecha = fecha;
+    }
+    
+    // Getters y Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public UUID getUsuarioId() {
+        return usuarioId;
+    }
+    
+    public void setUsuarioId(UUID usuarioId) {
+        this.usuarioId = usuarioId;
+    }
+    
+    public Integer getLeccionId() {
+        return leccionId;
+    }
+    
+    public void setLeccionId(Integer leccionId) {
+        this.leccionId = leccionId;
+    }
+    
+    public String getEstado() {
+        return estado;
+    }
+    
+    public void setEstado(String estado) {
+        this.estado = estado;
+    }
+    
+    public Double getPorcentaje() {
+        return porcentaje;
+    }
+    
+    public void setPorcentaje(Double porcentaje) {
+        this.porcentaje = porcentaje;
+    }
+    
+    public LocalDateTime getFecha() {
+        return fecha;
+    }
+    
+    public void setFecha(LocalDateTime fecha) {
+        this.fecha = fecha;
+    }
+}
@@ -0,0 +1,148 @@
+package com.stefanini.portal.capacitaciones.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Agregado por (usuario, programa) de las filas de progreso, mantenido en cada escritura
+// para que los paneles lean un registro por programa en lugar de recorrer cada lección
+@Entity
+@Table(name = "progreso_programas", schema = "capacitaciones",
+       uniqueConstraints = @UniqueConstraint(name = "progreso_programas_usuario_id_programa_id_key",
+                                             columnNames = {"usuario_id", "programa_id"}))
+public class ProgresoPrograma {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "usuario_id", nullable = false)
+    private UUID usuarioId;
+    
+    @Column(name = "programa_id", nullable = false)
+    private Integer programaId;
+    
+    @Column(name = "total_lecciones", nullable = false)
+    private Integer totalLecciones = 0;
+    
+    @Column(name = "lecciones_completadas", nullable = false)
+    private Integer leccionesCompletadas = 0;
+    
+    @Column(name = "lecciones_en_progreso", nullable = false)
+    private Integer leccionesEnProgreso = 0;
+    
+    @Column(name = "lecciones_inscritas", nullable = false)
+    private Integer leccionesInscritas = 0;
+    
+    // Suma de los porcentajes de las lecciones; el promedio es suma / total
+    @Column(name = "suma_porcentaje", nullable = false)
+    private Double sumaPorcentaje = 0.0;
+    
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+    
+    // Primer registro de progreso del usuario en el programa
+    @Column(name = "fecha_inicio")
+    private LocalDateTime fechaInicio;
+    
+    // Momento en que quedaron completadas todas sus lecciones; nulo mientras no lo estén
+    @Column(name = "fecha_completado")
+    private LocalDateTime fechaCompletado;
+    
+    // Constructores
+    public ProgresoPrograma() {}
+    
+    public ProgresoPrograma(UUID usuarioId, Integer programaId) {
+        this.usuarioId = usuarioId;
+        this.programaId = programaId;
+    }
+    
+    // Getters y Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public UUID getUsuarioId() {
+        return usuarioId;
+    }
+    
+    public void setUsuarioId(UUID usuarioId) {
+        this.usuarioId = usuarioId;
+    }
+    
+    public Integer getProgramaId() {
+        return programaId;
+    }
+    
+    public void setProgramaId(Integer programaId) {
+        this.programaId = programaId;
+    }
+    
+    public Integer getTotalLecciones() {
+        return totalLecciones;
+    }
+    
+    public void setTotalLecciones(Integer totalLecciones) {
+        this.totalLecciones = totalLecciones;
+    }
+    
+    public Integer getLeccionesCompletadas() {
+        return leccionesCompletadas;
+    }
+    
+    public void setLeccionesCompletadas(Integer leccionesCompletadas) {
+        this.leccionesCompletadas = leccionesCompletadas;
+    }
+    
+    public Integer getLeccionesEnProgreso() {
+        return leccionesEnProgreso;
+    }
+    
+    public void setLeccionesEnProgreso(Integer leccionesEnProgreso) {
+        this.leccionesEnProgreso = leccionesEnProgreso;
+    }
+    
+    public Integer getLeccionesInscritas() {
+        return leccionesInscritas;
+    }
+    
+    public void setLeccionesInscritas(Integer leccionesInscritas) {
+        this.leccionesInscritas = leccionesInscritas;
+    }
+    
+    public Double getSumaPorcentaje() {
+        return sumaPorcentaje;
+    }
+    
+    public void setSumaPorcentaje(Double sumaPorcentaje) {
+        this.sumaPorcentaje = sumaPorcentaje;
+    }
+    
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+    
+    public void setFechaActualizacion(LocalDateTime fechaActualizacion) {
+        this.fechaActualizacion = fechaActualizacion;
+    }
+    
+    public LocalDateTime getFechaInicio() {
+        return fechaInicio;
+    }
+    
+    public void setFechaInicio(LocalDateTime fechaInicio) {
+        this.fechaInicio = fechaInicio;
+    }
+    
+    public LocalDateTime getFechaCompletado() {
+        return fechaCompletado;
+    }
+    
+    public void setFechaCompletado(LocalDateTime fechaCompletado) {
+        this.fechaCompletado = fechaCompletado;
+    }
+}
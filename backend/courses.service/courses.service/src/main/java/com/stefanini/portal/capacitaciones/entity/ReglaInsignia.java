@@ -0,0 +1,118 @@
+package com.stefanini.portal.capacitaciones.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Regla de otorgamiento automático de una insignia, evaluada al completar lecciones.
+// Tipos: programa_completado (programaId), programas_area (areaConocimiento y cantidad de programas
+// completados) y lecciones_semana (cantidad de lecciones completadas en los últimos 7 días)
+@Entity
+@Table(name = "reglas_insignias", schema = "capacitaciones")
+public class ReglaInsignia {
+    
+    public static final String PROGRAMA_COMPLETADO = "programa_completado";
+    public static final String PROGRAMAS_AREA = "programas_area";
+    public static final String LECCIONES_SEMANA = "lecciones_semana";
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "insignia_id", nullable = false)
+    private Long insigniaId;
+    
+    @Column(name = "tipo", nullable = false, length = 30)
+    private String tipo;
+    
+    @Column(name = "programa_id")
+    private Integer programaId;
+    
+    @Column(name = "area_conocimiento")
+    private String areaConocimiento;
+    
+    @Column(name = "cantidad")
+    private Integer cantidad;
+    
+    @Column(name = "activa", nullable = false)
+    private Boolean activa = true;
+    
+    @Column(name = "fecha_creacion")
+    private LocalDateTime fechaCreacion = LocalDateTime.now();
+    
+    // Constructores
+    public ReglaInsignia() {}
+    
+    public ReglaInsignia(Long insigniaId, String tipo, Integer programaId, String areaConocimiento, Integer cantidad) {
+        this.insigniaId = insigniaId;
+        this.tipo = tipo;
+        this.programaId = programaId;
+        this.areaConocimiento = areaConocimiento;
+        this.cantidad = cantidad;
+        this.fechaCreacion = LocalDateTime.now();
+    }
+    
+    // Getters y Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getInsigniaId() {
+        return insigniaId;
+    }
+    
+    public void setInsigniaId(Long insigniaId) {
+        this.insigniaId = insigniaId;
+    }
+    
+    public String getTipo() {
+        return tipo;
+    }
+    
+    public void setTipo(String tipo) {
+        this.tipo = tipo;
+    }
+    
+    public Integer getProgramaId() {
+        return programaId;
+    }
+    
+    public void setProgramaId(Integer programaId) {
+        this.programaId = programaId;
+    }
+    
+    public String getAreaConocimiento() {
+        return areaConocimiento;
+    }
+    
+    public void setAreaConocimiento(String areaConocimiento) {
+        this.areaConocimiento = areaConocimiento;
+    }
+    
+    public Integer getCantidad() {
+        return cantidad;
+    }
+    
+    public void setCantidad(Integer cantidad) {
+        this.cantidad = cantidad;
+    }
+    
+    public Boolean getActiva() {
+        return activa;
+    }
+    
+    public void setActiva(Boolean activa) {
+        this.activa = activa;
+    }
+    
+    public LocalDateTime getFechaCreacion() {
+        return fechaCreacion;
+    }
+    
+    public void setFechaCreacion(LocalDateTime fechaCreacion) {
+        this.fechaCreacion = fechaCreacion;
+    }
+}
@@ -0,0 +1,127 @@
+package com.stefanini.portal.capacitaciones.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Sesión de subida reanudable: el archivo llega por fragmentos a un temporal y al finalizar se
+// registra como Material. bytesConfirmados es el prefijo contiguo ya escrito (desde donde reanudar)
+@Entity
+@Table(name = "subidas_archivos", schema = "capacitaciones")
+public class SubidaArchivo {
+    
+    @Id
+    private UUID id;
+    
+    @Column(name = "nombre_original", nullable = false, length = 255)
+    private String nombreOriginal;
+    
+    @Column(name = "descripcion", columnDefinition = "TEXT")
+    private String descripcion;
+    
+    @Column(name = "tamaño_bytes", nullable = false)
+    private Long tamañoBytes;
+    
+    // SHA-256 anunciado por el cliente (opcional); si viene se comprueba al finalizar
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+    
+    @Column(name = "bytes_confirmados", nullable = false)
+    private Long bytesConfirmados = 0L;
+    
+    // Material creado al finalizar; nulo mientras la subida está abierta
+    @Column(name = "material_id")
+    private Integer materialId;
+    
+    @Column(name = "fecha_creacion", nullable = false, updatable = false)
+    private LocalDateTime fechaCreacion;
+    
+    @Column(name = "fecha_actualizacion", nullable = false)
+    private LocalDateTime fechaActualizacion;
+    
+    // Constructores
+    public SubidaArchivo() {}
+    
+    public SubidaArchivo(String nombreOriginal, String descripcion, Long tamañoBytes, String sha256) {
+        this.id = UUID.randomUUID();
+        this.nombreOriginal = nombreOriginal;
+        this.descripcion = descripcion;
+        this.tamañoBytes = tamañoBytes;
+        this.sha256 = sha256;
+        this.fechaCreacion = LocalDateTime.now();
+        this.fechaActualizacion = this.fechaCreacion;
+    }
+    
+    // Getters y Setters
+    public UUID getId() {
+        return id;
+    }
+    
+    public void setId(UUID id) {
+        this.id = id;
+    }
+    
+    public String getNombreOriginal() {
+        return nombreOriginal;
+    }
+    
+    public void setNombreOriginal(String nombreOriginal) {
+        this.nombreOriginal = nombreOriginal;
+    }
+    
+    public String getDescripcion() {
+        return descripcion;
+    }
+    
+    public void setDescripcion(String descripcion) {
+        this.descripcion = descripcion;
+    }
+    
+    public Long getTamañoBytes() {
+        return tamañoBytes;
+    }
+    
+    public void setTamañoBytes(Long tamañoBytes) {
+        this.tamañoBytes = tamañoBytes;
+    }
+    
+    public String getSha256() {
+        return sha256;
+    }
+    
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+    
+    public Long getBytesConfirmados() {
+        return bytesConfirmados;
+    }
+    
+    public void setBytesConfirmados(Long bytesConfirmados) {
+        this.bytesConfirmados = bytesConfirmados;
+    }
+    
+    public Integer getMaterialId() {
+        return materialId;
+    }
+    
+    public void setMaterialId(Integer materialId) {
+        this.materialId = materialId;
+    }
+    
+    public LocalDateTime getFechaCreacion() {
+        return fechaCreacion;
+    }
+    
+    public void setFechaCreacion(LocalDateTime fechaCreacion) {
+        this.fechaCreacion = fechaCreacion;
+    }
+    
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+    
+    public void setFechaActualizacion(LocalDateTime fechaActualizacion) {
+        this.fechaActualizacion = fechaActualizacion;
+    }
+}
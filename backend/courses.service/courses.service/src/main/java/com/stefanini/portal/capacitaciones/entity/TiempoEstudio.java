@@ -0,0 +1,81 @@
+package com.stefanini.portal.capacitaciones.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.util.UUID;
+
+// Segundos de estudio por usuario, lección y día; las sesiones se fusionan en memoria y solo se
+// persisten estos totales
+@Entity
+@Table(name = "tiempo_estudio", schema = "capacitaciones",
+       uniqueConstraints = @UniqueConstraint(name = "tiempo_estudio_usuario_id_leccion_id_fecha_key",
+                                             columnNames = {"usuario_id", "leccion_id", "fecha"}))
+public class TiempoEstudio {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "usuario_id", nullable = false)
+    private UUID usuarioId;
+    
+    @Column(name = "leccion_id", nullable = false)
+    private Integer leccionId;
+    
+    @Column(name = "fecha", nullable = false)
+    private LocalDate fecha;
+    
+    @Column(name = "segundos", nullable = false)
+    private Long segundos = 0L;
+    
+    // Constructores
+    public TiempoEstudio() {}
+    
+    public TiempoEstudio(UUID usuarioId, Integer leccionId, LocalDate fecha, Long segundos) {
+        this.usuarioId = usuarioId;
+        this.leccionId = leccionId;
+        this.fecha = fecha;
+        this.segundos = segundos;
+    }
+    
+    // Getters y Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public UUID getUsuarioId() {
+        return usuarioId;
+    }
+    
+    public void setUsuarioId(UUID usuarioId) {
+        this.usuarioId = usuarioId;
+    }
+    
+    public Integer getLeccionId() {
+        return leccionId;
+    }
+    
+    public void setLeccionId(Integer leccionId) {
+        this.leccionId = leccionId;
+    }
+    
+    public LocalDate getFecha() {
+        return fecha;
+    }
+    
+    public void setFecha(LocalDate fecha) {
+        this.fecha = fecha;
+    }
+    
+    public Long getSegundos() {
+        return segundos;
+    }
+    
+    public void setSegundos(Long segundos) {
+        this.segundos = segundos;
+    }
+}
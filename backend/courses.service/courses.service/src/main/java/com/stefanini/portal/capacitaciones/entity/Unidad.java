@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -13,7 +15,8 @@ import java.util.List;
 public class Unidad {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "unidades_id_seq")
+    @SequenceGenerator(name = "unidades_id_seq", sequenceName = "unidades_id_seq", schema = "capacitaciones", allocationSize = 50)
     private Integer id;
     
     @NotNull(message = "El programa es requerido")
@@ -29,6 +32,15 @@ public class Unidad {
     @Column(name = "orden")
     private Integer orden;
     
+    // Se incrementa en cada modificación; base de los ETag de los GET
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+    
+    @UpdateTimestamp
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+    
     @OneToMany(mappedBy = "unidad", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     @OrderBy("orden ASC")
     private List<Leccion> lecciones = new ArrayList<>();
@@ -94,6 +106,14 @@ public class Unidad {
         this.lecciones = lecciones;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+    
     @Override
     public String toString() {
         return "Unidad{" +
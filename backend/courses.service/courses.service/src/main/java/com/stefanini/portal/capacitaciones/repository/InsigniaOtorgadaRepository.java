@@ -1,5 +1,6 @@
 package com.stefanini.portal.capacitaciones.repository;
 
+import com.stefanini.portal.capacitaciones.dto.InsigniaOtorgadaDTO;
 import com.stefanini.portal.capacitaciones.entity.InsigniaOtorgada;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -16,6 +17,13 @@ public interface InsigniaOtorgadaRepository extends JpaRepository<InsigniaOtorga
     @Query("SELECT io FROM InsigniaOtorgada io WHERE io.usuarioId = :usuarioId")
     List<InsigniaOtorgada> findByUsuarioId(@Param("usuarioId") UUID usuarioId);
     
+    // Insignias de un usuario sin JOIN (io.insignia.id es la columna insignia_id): los datos de cada
+    // insignia salen del catálogo en memoria
+    @Query("SELECT new com.stefanini.portal.capacitaciones.dto.InsigniaOtorgadaDTO(" +
+           "io.id, io.usuarioId, io.insignia.id, io.fechaOtorgada) " +
+           "FROM InsigniaOtorgada io WHERE io.usuarioId = :usuarioId")
+    List<InsigniaOtorgadaDTO> findResumenByUsuarioId(@Param("usuarioId") UUID usuarioId);
+    
     // Contar insignias por usuario
     @Query("SELECT COUNT(io) FROM InsigniaOtorgada io WHERE io.usuarioId = :usuarioId")
     Long countByUsuarioId(@Param("usuarioId") UUID usuarioId);
@@ -23,5 +31,8 @@ public interface InsigniaOtorgadaRepository extends JpaRepository<InsigniaOtorga
     // Verificar si usuario ya tiene una insignia específica
     @Query("SELECT COUNT(io) > 0 FROM InsigniaOtorgada io WHERE io.usuarioId = :usuarioId AND io.insignia.id = :insigniaId")
     boolean existsByUsuarioIdAndInsigniaId(@Param("usuarioId") UUID usuarioId, @Param("insigniaId") Long insigniaId);
+    
+    // Insignias por usuario (reconstrucción de la clasificación de insignias)
+    @Query("SELECT io.usuarioId, COUNT(io) FROM InsigniaOtorgada io GROUP BY io.usuarioId")
+    List<Object[]> findTotalesPorUsuario();
 }
-
@@ -1,10 +1,18 @@
 package com.stefanini.portal.capacitaciones.repository;
 
+import com.stefanini.portal.capacitaciones.dto.InsigniaDTO;
 import com.stefanini.portal.capacitaciones.entity.Insignia;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface InsigniaRepository extends JpaRepository<Insignia, Long> {
+    
+    // Proyección de todas las insignias, sin hidratar entidades
+    @Query("SELECT new com.stefanini.portal.capacitaciones.dto.InsigniaDTO(i.id, i.nombre, i.descripcion, i.urlImagen) " +
+           "FROM Insignia i")
+    List<InsigniaDTO> findAllDTO();
 }
-
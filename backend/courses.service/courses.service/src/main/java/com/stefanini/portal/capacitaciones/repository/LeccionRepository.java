@@ -1,17 +1,25 @@
 package com.stefanini.portal.capacitaciones.repository;
 
+import com.stefanini.portal.capacitaciones.dto.LeccionDTO;
+import com.stefanini.portal.capacitaciones.dto.VersionRecursoDTO;
 import com.stefanini.portal.capacitaciones.entity.Leccion;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface LeccionRepository extends JpaRepository<Leccion, Integer> {
     
+    // Argumentos de los constructores de LeccionDTO usados por las proyecciones
+    String COLUMNAS_DTO = "l.id, l.unidad.id, l.titulo, l.orden, l.tipoMaterial, l.urlMaterial";
+    String COLUMNAS_DTO_CON_MATERIAL = COLUMNAS_DTO + ", m.id, m.nombreOriginal, m.tipoMaterial, m.extension, " +
+            "m.tamañoBytes, m.urlAcceso, m.descripcion, m.s3Uploaded, m.s3Key";
+    
     // Buscar lecciones por unidad
     List<Leccion> findByUnidadIdOrderByOrden(Integer unidadId);
     
@@ -29,10 +37,78 @@ public interface LeccionRepository extends JpaRepository<Leccion, Integer> {
     @Query("SELECT l FROM Leccion l WHERE l.unidad.id = :unidadId ORDER BY l.orden")
     List<Leccion> findByUnidadIdWithQuery(@Param("unidadId") Integer unidadId);
     
+    // Obtener las lecciones (con su material) de un conjunto de unidades en una sola consulta
+    @Query("SELECT l FROM Leccion l LEFT JOIN FETCH l.material WHERE l.unidad.id IN :unidadIds ORDER BY l.orden")
+    List<Leccion> findByUnidadIdInWithMaterial(@Param("unidadIds") Collection<Integer> unidadIds);
+    
+    // Ids, títulos y programa de todas las lecciones (carga del índice de autocompletado)
+    @Query("SELECT l.id, l.titulo, u.programa.id FROM Leccion l JOIN l.unidad u")
+    List<Object[]> findResumenTitulos();
+    
+    // Lección, unidad y programa de un conjunto de lecciones (actualización de progreso por lotes)
+    // Filas: id, titulo, unidadId, unidadTitulo, programaId, programaTitulo
+    @Query("SELECT l.id, l.titulo, u.id, u.titulo, p.id, p.titulo FROM Leccion l JOIN l.unidad u JOIN u.programa p " +
+           "WHERE l.id IN :ids")
+    List<Object[]> findContextoByIdIn(@Param("ids") Collection<Integer> ids);
+    
+    // Proyección de las lecciones de un conjunto de unidades, sin hidratar entidades
+    // Filas: unidadId, id, titulo, orden, tipoMaterial, urlMaterial, materialId
+    @Query("SELECT l.unidad.id, l.id, l.titulo, l.orden, l.tipoMaterial, l.urlMaterial, m.id " +
+           "FROM Leccion l LEFT JOIN l.material m WHERE l.unidad.id IN :unidadIds ORDER BY l.orden")
+    List<Object[]> findProyeccionByUnidadIdIn(@Param("unidadIds") Collection<Integer> unidadIds);
+    
+    // Proyecciones a LeccionDTO construidas directamente desde el resultado de la consulta
+    @Query("SELECT new com.stefanini.portal.capacitaciones.dto.LeccionDTO(" + LeccionRepository.COLUMNAS_DTO + ") " +
+           "FROM Leccion l WHERE l.id = :id")
+    Optional<LeccionDTO> findDTOById(@Param("id") Integer id);
+    
+    @Query("SELECT new com.stefanini.portal.capacitaciones.dto.LeccionDTO(" + LeccionRepository.COLUMNAS_DTO + ") " +
+           "FROM Leccion l WHERE l.unidad.id = :unidadId ORDER BY l.orden")
+    List<LeccionDTO> findDTOByUnidadId(@Param("unidadId") Integer unidadId);
+    
+    @Query("SELECT new com.stefanini.portal.capacitaciones.dto.LeccionDTO(" + LeccionRepository.COLUMNAS_DTO + ") " +
+           "FROM Leccion l WHERE l.tipoMaterial = :tipoMaterial")
+    List<LeccionDTO> findDTOByTipoMaterial(@Param("tipoMaterial") String tipoMaterial);
+    
+    @Query("SELECT new com.stefanini.portal.capacitaciones.dto.LeccionDTO(" + LeccionRepository.COLUMNAS_DTO + ") " +
+           "FROM Leccion l WHERE LOWER(l.titulo) LIKE LOWER(CONCAT('%', :titulo, '%'))")
+    List<LeccionDTO> findDTOByTituloContainingIgnoreCase(@Param("titulo") String titulo);
+    
+    @Query("SELECT new com.stefanini.portal.capacitaciones.dto.LeccionDTO(" + LeccionRepository.COLUMNAS_DTO + ") " +
+           "FROM Leccion l WHERE l.unidad.programa.id = :programaId ORDER BY l.unidad.orden, l.orden")
+    List<LeccionDTO> findDTOByProgramaId(@Param("programaId") Integer programaId);
+    
+    @Query("SELECT new com.stefanini.portal.capacitaciones.dto.LeccionDTO(" + LeccionRepository.COLUMNAS_DTO_CON_MATERIAL + ") " +
+           "FROM Leccion l LEFT JOIN l.material m WHERE l.id = :id")
+    Optional<LeccionDTO> findDTOConMaterialById(@Param("id") Integer id);
+    
+    @Query("SELECT new com.stefanini.portal.capacitaciones.dto.LeccionDTO(" + LeccionRepository.COLUMNAS_DTO_CON_MATERIAL + ") " +
+           "FROM Leccion l LEFT JOIN l.material m WHERE l.unidad.id = :unidadId ORDER BY l.orden")
+    List<LeccionDTO> findDTOConMaterialByUnidadId(@Param("unidadId") Integer unidadId);
+    
+    // Versión de una lección sin cargarla
+    @Query("SELECT new com.stefanini.portal.capacitaciones.dto.VersionRecursoDTO(l.version, l.fechaActualizacion) " +
+           "FROM Leccion l WHERE l.id = :id")
+    Optional<VersionRecursoDTO> findVersionById(@Param("id") Integer id);
+    
+    // Versión de las lecciones de una unidad y de un programa
+    // Fila única: total, suma de versiones, mayor id, última modificación
+    @Query("SELECT COUNT(l), COALESCE(SUM(l.version), 0L), MAX(l.id), MAX(l.fechaActualizacion) " +
+           "FROM Leccion l WHERE l.unidad.id = :unidadId")
+    List<Object[]> findVersionByUnidadId(@Param("unidadId") Integer unidadId);
+    
+    @Query("SELECT COUNT(l), COALESCE(SUM(l.version), 0L), MAX(l.id), MAX(l.fechaActualizacion) " +
+           "FROM Leccion l WHERE l.unidad.programa.id = :programaId")
+    List<Object[]> findVersionByProgramaId(@Param("programaId") Integer programaId);
+    
     // Contar lecciones por unidad
     @Query("SELECT COUNT(l) FROM Leccion l WHERE l.unidad.id = :unidadId")
     Long countByUnidadId(@Param("unidadId") Integer unidadId);
     
+    // Contar lecciones por programa
+    @Query("SELECT COUNT(l) FROM Leccion l WHERE l.unidad.programa.id = :programaId")
+    Long countByProgramaId(@Param("programaId") Integer programaId);
+    
     // Contar lecciones por tipo de material
     @Query("SELECT COUNT(l) FROM Leccion l WHERE l.tipoMaterial = :tipoMaterial")
     Long countByTipoMaterial(@Param("tipoMaterial") String tipoMaterial);
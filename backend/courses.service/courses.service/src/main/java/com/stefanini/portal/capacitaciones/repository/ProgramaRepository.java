@@ -1,11 +1,14 @@
 package com.stefanini.portal.capacitaciones.repository;
 
 import com.stefanini.portal.capacitaciones.entity.Programa;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -37,6 +40,79 @@ public interface ProgramaRepository extends JpaRepository<Programa, Integer> {
     @Query("SELECT p FROM Programa p ORDER BY p.fechaCreacion DESC")
     List<Programa> findRecentPrograms();
     
+    // Paginación por cursor sobre (fechaCreacion, id), del más reciente al más antiguo
+    @Query("SELECT p FROM Programa p ORDER BY p.fechaCreacion DESC, p.id DESC")
+    List<Programa> findPrimeraPagina(Pageable pageable);
+    
+    @Query("SELECT p FROM Programa p WHERE p.fechaCreacion < :fecha OR (p.fechaCreacion = :fecha AND p.id < :id) " +
+           "ORDER BY p.fechaCreacion DESC, p.id DESC")
+    List<Programa> findPaginaDespuesDe(@Param("fecha") LocalDateTime fecha, @Param("id") Integer id, Pageable pageable);
+    
+    @Query("SELECT p FROM Programa p WHERE p.areaConocimiento = :area ORDER BY p.fechaCreacion DESC, p.id DESC")
+    List<Programa> findPrimeraPaginaPorArea(@Param("area") String area, Pageable pageable);
+    
+    @Query("SELECT p FROM Programa p WHERE p.areaConocimiento = :area " +
+           "AND (p.fechaCreacion < :fecha OR (p.fechaCreacion = :fecha AND p.id < :id)) " +
+           "ORDER BY p.fechaCreacion DESC, p.id DESC")
+    List<Programa> findPaginaPorAreaDespuesDe(@Param("area") String area, @Param("fecha") LocalDateTime fecha,
+                                              @Param("id") Integer id, Pageable pageable);
+    
+    // Ids y títulos de todos los programas (carga del índice de autocompletado)
+    @Query("SELECT p.id, p.titulo FROM Programa p")
+    List<Object[]> findResumenTitulos();
+    
+    // Ids, títulos y áreas de todos los programas (analítica por programa y por área)
+    @Query("SELECT p.id, p.titulo, p.areaConocimiento FROM Programa p")
+    List<Object[]> findResumenAreas();
+    
+    @Query("SELECT p.areaConocimiento FROM Programa p WHERE p.id = :id")
+    Optional<String> findAreaById(@Param("id") Integer id);
+    
+    // Áreas de los programas dados (reglas de insignias por área)
+    @Query("SELECT p.id, p.areaConocimiento FROM Programa p WHERE p.id IN :ids")
+    List<Object[]> findAreasByIdIn(@Param("ids") Collection<Integer> ids);
+    
+    // Búsqueda de texto completo sobre programas, unidades y lecciones (configuración capacitaciones.espanol:
+    // raíces en español y sin acentos). Las expresiones to_tsvector coinciden con los índices GIN del script
+    // de base de datos; el resaltado se calcula solo para las filas ya recortadas al límite.
+    // Filas: tipo, id, programa_id, titulo, fragmento, relevancia
+    @Query(value = "SELECT r.tipo, r.id, r.programa_id, r.titulo, " +
+           "ts_headline(CAST('capacitaciones.espanol' AS regconfig), r.texto, q.consulta, " +
+           "'StartSel=<mark>, StopSel=</mark>, MaxFragments=2, MaxWords=25, MinWords=8') AS fragmento, " +
+           "r.relevancia " +
+           "FROM (" +
+           "  SELECT 'PROGRAMA' AS tipo, p.id, p.id AS programa_id, p.titulo, " +
+           "         concat_ws(' ', p.titulo, p.area_conocimiento, p.descripcion) AS texto, " +
+           "         ts_rank(setweight(to_tsvector(CAST('capacitaciones.espanol' AS regconfig), coalesce(p.titulo, '')), 'A') " +
+           "              || setweight(to_tsvector(CAST('capacitaciones.espanol' AS regconfig), coalesce(p.area_conocimiento, '')), 'B') " +
+           "              || setweight(to_tsvector(CAST('capacitaciones.espanol' AS regconfig), coalesce(p.descripcion, '')), 'C'), " +
+           "                 q.consulta) AS relevancia " +
+           "  FROM capacitaciones.programas p, " +
+           "       (SELECT websearch_to_tsquery(CAST('capacitaciones.espanol' AS regconfig), :consulta) AS consulta) q " +
+           "  WHERE (setweight(to_tsvector(CAST('capacitaciones.espanol' AS regconfig), coalesce(p.titulo, '')), 'A') " +
+           "      || setweight(to_tsvector(CAST('capacitaciones.espanol' AS regconfig), coalesce(p.area_conocimiento, '')), 'B') " +
+           "      || setweight(to_tsvector(CAST('capacitaciones.espanol' AS regconfig), coalesce(p.descripcion, '')), 'C')) " +
+           "        @@ q.consulta " +
+           "  UNION ALL " +
+           "  SELECT 'UNIDAD', u.id, u.programa_id, u.titulo, u.titulo, " +
+           "         ts_rank(setweight(to_tsvector(CAST('capacitaciones.espanol' AS regconfig), u.titulo), 'B'), q.consulta) " +
+           "  FROM capacitaciones.unidades u, " +
+           "       (SELECT websearch_to_tsquery(CAST('capacitaciones.espanol' AS regconfig), :consulta) AS consulta) q " +
+           "  WHERE to_tsvector(CAST('capacitaciones.espanol' AS regconfig), u.titulo) @@ q.consulta " +
+           "  UNION ALL " +
+           "  SELECT 'LECCION', l.id, un.programa_id, l.titulo, l.titulo, " +
+           "         ts_rank(setweight(to_tsvector(CAST('capacitaciones.espanol' AS regconfig), l.titulo), 'B'), q.consulta) " +
+           "  FROM capacitaciones.lecciones l " +
+           "  JOIN capacitaciones.unidades un ON un.id = l.unidad_id, " +
+           "       (SELECT websearch_to_tsquery(CAST('capacitaciones.espanol' AS regconfig), :consulta) AS consulta) q " +
+           "  WHERE to_tsvector(CAST('capacitaciones.espanol' AS regconfig), l.titulo) @@ q.consulta " +
+           "  ORDER BY relevancia DESC, id " +
+           "  LIMIT :limite" +
+           ") r, (SELECT websearch_to_tsquery(CAST('capacitaciones.espanol' AS regconfig), :consulta) AS consulta) q " +
+           "ORDER BY r.relevancia DESC, r.id",
+           nativeQuery = true)
+    List<Object[]> buscarTextoCompleto(@Param("consulta") String consulta, @Param("limite") int limite);
+    
     // Verificar si existe un programa con el mismo título
     boolean existsByTitulo(String titulo);
     
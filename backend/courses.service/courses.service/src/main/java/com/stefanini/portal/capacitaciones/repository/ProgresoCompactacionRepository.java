@@ -0,0 +1,20 @@
+package com.stefanini.portal.capacitaciones.repository;
+
+import com.stefanini.portal.capacitaciones.entity.ProgresoCompactacion;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ProgresoCompactacionRepository extends JpaRepository<ProgresoCompactacion, Integer> {
+    
+    // Bloquea la marca hasta el commit: una sola compactación a la vez, también entre instancias
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ProgresoCompactacion c WHERE c.id = :id")
+    Optional<ProgresoCompactacion> bloquear(@Param("id") Integer id);
+}
@@ -0,0 +1,19 @@
+package com.stefanini.portal.capacitaciones.repository;
+
+import com.stefanini.portal.capacitaciones.entity.ProgresoEvento;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ProgresoEventoRepository extends JpaRepository<ProgresoEvento, Long> {
+    
+    // Historial de una lección en orden de escritura (índice usuario_id, leccion_id, id)
+    List<ProgresoEvento> findByUsuarioIdAndLeccionIdOrderByIdAsc(UUID usuarioId, Integer leccionId);
+    
+    @Query("SELECT MAX(e.id) FROM ProgresoEvento e")
+    Long findMaxId();
+}
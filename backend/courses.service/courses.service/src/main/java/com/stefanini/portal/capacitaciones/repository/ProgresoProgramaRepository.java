@@ -0,0 +1,126 @@
+package com.stefanini.portal.capacitaciones.repository;
+
+import com.stefanini.portal.capacitaciones.entity.ProgresoPrograma;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ProgresoProgramaRepository extends JpaRepository<ProgresoPrograma, Long> {
+    
+    // Agregados del usuario junto con los datos del programa, un registro por programa
+    // Filas: programaId, titulo, descripcion, areaConocimiento, fechaCreacion, totalLecciones,
+    // leccionesCompletadas, leccionesEnProgreso, leccionesInscritas, sumaPorcentaje, fechaActualizacion, fechaCompletado
+    @Query("SELECT pr.id, pr.titulo, pr.descripcion, pr.areaConocimiento, pr.fechaCreacion, a.totalLecciones, " +
+           "a.leccionesCompletadas, a.leccionesEnProgreso, a.leccionesInscritas, a.sumaPorcentaje, a.fechaActualizacion, " +
+           "a.fechaCompletado " +
+           "FROM ProgresoPrograma a JOIN Programa pr ON pr.id = a.programaId " +
+           "WHERE a.usuarioId = :usuarioId AND a.totalLecciones > 0 ORDER BY pr.id")
+    List<Object[]> findResumenByUsuarioId(@Param("usuarioId") UUID usuarioId);
+    
+    // Indicadores de todos los usuarios agrupados por programa; la agregación la resuelve la base de datos
+    // Filas: programaId, inscripciones, completados, sumaProgreso, completadosConDuracion, sumaSegundosHastaCompletar
+    String INDICADORES = "SELECT a.programaId, COUNT(a), COUNT(a.fechaCompletado), " +
+            "SUM(a.sumaPorcentaje / a.totalLecciones), " +
+            "COUNT(a) FILTER (WHERE a.fechaCompletado IS NOT NULL AND a.fechaInicio IS NOT NULL), " +
+            "SUM((a.fechaCompletado - a.fechaInicio) by second) " +
+            "FROM ProgresoPrograma a WHERE a.totalLecciones > 0 ";
+    
+    @Query(INDICADORES + "GROUP BY a.programaId")
+    List<Object[]> findIndicadoresPorPrograma();
+    
+    @Query(INDICADORES + "AND a.programaId IN :programaIds GROUP BY a.programaId")
+    List<Object[]> findIndicadoresPorProgramaByProgramaIdIn(@Param("programaIds") Collection<Integer> programaIds);
+    
+    // Programas con algún agregado modificado desde la fecha dada (refresco incremental de la analítica)
+    @Query("SELECT DISTINCT a.programaId FROM ProgresoPrograma a WHERE a.fechaActualizacion > :desde")
+    List<Integer> findProgramaIdsActualizadosDesde(@Param("desde") LocalDateTime desde);
+    
+    // Lecciones completadas por (usuario, programa) para reconstruir las clasificaciones
+    // Filas: usuarioId, programaId, leccionesCompletadas
+    @Query("SELECT a.usuarioId, a.programaId, a.leccionesCompletadas FROM ProgresoPrograma a " +
+           "WHERE a.leccionesCompletadas > 0")
+    List<Object[]> findLeccionesCompletadas();
+    
+    // Lecciones del programa del agregado: totalLecciones cuenta solo las que el usuario ya empezó
+    String LECCIONES_DEL_PROGRAMA = "(SELECT COUNT(l) FROM Leccion l WHERE l.unidad.programa.id = a.programaId)";
+    
+    // Programa completado: fechaCompletado se fija cuando el usuario completa todas las lecciones del
+    // programa (acumular y ProgresoAgregadoService) y se borra si el programa gana lecciones. Es la única
+    // definición: la usan los indicadores, las reglas de insignias y el estado mostrado al usuario
+    String COMPLETADO = "a.fechaCompletado IS NOT NULL ";
+    
+    // Programas completados por los usuarios, entre los programas dados
+    // Filas: usuarioId, programaId
+    @Query("SELECT a.usuarioId, a.programaId FROM ProgresoPrograma a " +
+           "WHERE a.usuarioId IN :usuarioIds AND a.programaId IN :programaIds AND " + COMPLETADO)
+    List<Object[]> findCompletadosByUsuarioIdInAndProgramaIdIn(@Param("usuarioIds") Collection<UUID> usuarioIds,
+                                                               @Param("programaIds") Collection<Integer> programaIds);
+    
+    // Programas completados por usuario en cada una de las áreas dadas
+    // Filas: usuarioId, areaConocimiento, programasCompletados
+    @Query("SELECT a.usuarioId, pr.areaConocimiento, COUNT(a) FROM ProgresoPrograma a JOIN Programa pr ON pr.id = a.programaId " +
+           "WHERE a.usuarioId IN :usuarioIds AND pr.areaConocimiento IN :areas AND " + COMPLETADO +
+           "GROUP BY a.usuarioId, pr.areaConocimiento")
+    List<Object[]> findCompletadosPorArea(@Param("usuarioIds") Collection<UUID> usuarioIds,
+                                          @Param("areas") Collection<String> areas);
+    
+    // Aplica un cambio incremental en una sola sentencia; la fila queda bloqueada hasta el commit,
+    // así que dos escrituras concurrentes del mismo usuario y programa no pierden actualizaciones
+    @Modifying
+    @Query("UPDATE ProgresoPrograma a SET a.totalLecciones = a.totalLecciones + :total, " +
+           "a.leccionesCompletadas = a.leccionesCompletadas + :completadas, " +
+           "a.leccionesEnProgreso = a.leccionesEnProgreso + :enProgreso, " +
+           "a.leccionesInscritas = a.leccionesInscritas + :inscritas, " +
+           "a.sumaPorcentaje = a.sumaPorcentaje + :porcentaje, " +
+           "a.fechaActualizacion = CASE WHEN a.fechaActualizacion IS NULL OR a.fechaActualizacion < :fecha " +
+           "THEN :fecha ELSE a.fechaActualizacion END, " +
+           "a.fechaCompletado = CASE WHEN a.leccionesCompletadas + :completadas > 0 AND " +
+           "a.leccionesCompletadas + :completadas = " + LECCIONES_DEL_PROGRAMA + " " +
+           "THEN COALESCE(a.fechaCompletado, :fecha) ELSE NULL END " +
+           "WHERE a.usuarioId = :usuarioId AND a.programaId = :programaId")
+    int acumular(@Param("usuarioId") UUID usuarioId, @Param("programaId") Integer programaId,
+                 @Param("total") int total, @Param("completadas") int completadas,
+                 @Param("enProgreso") int enProgreso, @Param("inscritas") int inscritas,
+                 @Param("porcentaje") double porcentaje, @Param("fecha") LocalDateTime fecha);
+    
+    // Crea el agregado salvo que ya exista. Si otra transacción lo está creando a la vez, la inserción
+    // espera a que confirme y no escribe nada (devuelve 0) en lugar de fallar por la clave única
+    // (la única además del id, que sale de la secuencia)
+    @Modifying
+    @Query(value = "INSERT INTO capacitaciones.progreso_programas (usuario_id, programa_id, total_lecciones, " +
+           "lecciones_completadas, lecciones_en_progreso, lecciones_inscritas, suma_porcentaje, fecha_actualizacion, " +
+           "fecha_inicio, fecha_completado) VALUES (:#{#a.usuarioId}, :#{#a.programaId}, :#{#a.totalLecciones}, " +
+           ":#{#a.leccionesCompletadas}, :#{#a.leccionesEnProgreso}, :#{#a.leccionesInscritas}, :#{#a.sumaPorcentaje}, " +
+           ":#{#a.fechaActualizacion}, :#{#a.fechaInicio}, :#{#a.fechaCompletado}) " +
+           "ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int insertarSiNoExiste(@Param("a") ProgresoPrograma agregado);
+    
+    // Bloquea el agregado hasta el commit: las escrituras concurrentes del mismo usuario y programa
+    // esperan (acumular) en lugar de aplicar su diferencia sobre valores que se están recalculando
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM ProgresoPrograma a WHERE a.usuarioId = :usuarioId AND a.programaId = :programaId")
+    Optional<ProgresoPrograma> bloquear(@Param("usuarioId") UUID usuarioId, @Param("programaId") Integer programaId);
+    
+    // El programa ganó lecciones: nadie lo tiene completo hasta completar también las nuevas
+    @Modifying
+    @Query("UPDATE ProgresoPrograma a SET a.fechaCompletado = NULL " +
+           "WHERE a.programaId = :programaId AND a.fechaCompletado IS NOT NULL")
+    int limpiarCompletadoByProgramaId(@Param("programaId") Integer programaId);
+    
+    @Modifying
+    @Query("DELETE FROM ProgresoPrograma a WHERE a.programaId = :programaId")
+    int deleteByProgramaId(@Param("programaId") Integer programaId);
+    
+}
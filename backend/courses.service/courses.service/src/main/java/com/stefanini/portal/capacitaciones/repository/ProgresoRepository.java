@@ -1,11 +1,14 @@
 package com.stefanini.portal.capacitaciones.repository;
 
+import com.stefanini.portal.capacitaciones.dto.ProgresoDTO;
 import com.stefanini.portal.capacitaciones.entity.Progreso;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,14 +20,73 @@ public interface ProgresoRepository extends JpaRepository<Progreso, Long> {
     @Query("SELECT p FROM Progreso p WHERE p.usuarioId = :usuarioId")
     List<Progreso> findByUsuarioId(@Param("usuarioId") UUID usuarioId);
     
+    // Progreso del usuario con lección, unidad y programa en una sola consulta, sin cargas diferidas
+    @Query("SELECT new com.stefanini.portal.capacitaciones.dto.ProgresoDTO(p.id, p.usuarioId, l.id, p.estado, " +
+           "p.porcentaje, p.fechaActualizacion, l.titulo, u.id, u.titulo, pr.id, pr.titulo) " +
+           "FROM Progreso p JOIN p.leccion l JOIN l.unidad u JOIN u.programa pr " +
+           "WHERE p.usuarioId = :usuarioId ORDER BY pr.id, u.orden, l.orden")
+    List<ProgresoDTO> findDTOByUsuarioId(@Param("usuarioId") UUID usuarioId);
+    
     // Buscar progreso por usuario y lección
     @Query("SELECT p FROM Progreso p WHERE p.usuarioId = :usuarioId AND p.leccion.id = :leccionId")
     Optional<Progreso> findByUsuarioIdAndLeccionId(@Param("usuarioId") UUID usuarioId, @Param("leccionId") Long leccionId);
     
+    // Estado previo de las filas que va a tocar una actualización por lotes, bloqueadas hasta el commit
+    // (el cruce usuarios × lecciones puede traer filas de más; se filtran en el servicio). Se bloquean
+    // en orden de (usuario_id, leccion_id), el mismo del upsert, para que dos lotes que se solapan no
+    // se bloqueen en orden inverso
+    // Filas: usuario_id, leccion_id, estado, porcentaje
+    @Query(value = "SELECT usuario_id, leccion_id, estado, porcentaje FROM capacitaciones.progreso " +
+                   "WHERE usuario_id IN (:usuarioIds) AND leccion_id IN (:leccionIds) " +
+                   "ORDER BY usuario_id, leccion_id FOR UPDATE",
+           nativeQuery = true)
+    List<Object[]> bloquearByUsuarioIdInAndLeccionIdIn(@Param("usuarioIds") Collection<UUID> usuarioIds,
+                                                     @Param("leccionIds") Collection<Integer> leccionIds);
+    
+    // Condiciones de cada lección según su estado y porcentaje, compartidas por las consultas agrupadas
+    String LECCION_COMPLETADA = "p.estado = 'completado' AND p.porcentaje >= 100";
+    String LECCION_EN_PROGRESO = "p.estado = 'en_progreso' OR (p.estado = 'iniciado' AND p.porcentaje > 0)";
+    String LECCION_INSCRITA = "p.estado = 'inscrito' OR (p.estado = 'iniciado' AND COALESCE(p.porcentaje, 0) = 0)";
+    
+    // Contadores por grupo: total, completadas, enProgreso, inscritas, sumaPorcentaje, última y primera actualización
+    String CONTADORES = "COUNT(p), " +
+            "COUNT(p) FILTER (WHERE " + LECCION_COMPLETADA + "), " +
+            "COUNT(p) FILTER (WHERE " + LECCION_EN_PROGRESO + "), " +
+            "COUNT(p) FILTER (WHERE " + LECCION_INSCRITA + "), " +
+            "SUM(COALESCE(p.porcentaje, 0)), MAX(p.fechaActualizacion), MIN(p.fechaActualizacion)";
+    
+    // Agregados por usuario de las lecciones de un programa (recálculo de progreso_programas)
+    // Filas: usuarioId + CONTADORES
+    String COLUMNAS_AGREGADO = "p.usuarioId, " + CONTADORES;
+    
+    // Contadores del usuario por programa en una sola consulta agrupada
+    // Filas: programaId + CONTADORES + lecciones del programa
+    @Query("SELECT u.programa.id, " + ProgresoRepository.CONTADORES + ", " +
+           "(SELECT COUNT(lp) FROM Leccion lp WHERE lp.unidad.programa.id = u.programa.id) " +
+           "FROM Progreso p JOIN p.leccion l JOIN l.unidad u WHERE p.usuarioId = :usuarioId GROUP BY u.programa.id")
+    List<Object[]> findContadoresPorProgramaByUsuarioId(@Param("usuarioId") UUID usuarioId);
+    
+    @Query("SELECT " + ProgresoRepository.COLUMNAS_AGREGADO + " FROM Progreso p " +
+           "WHERE p.leccion.unidad.programa.id = :programaId GROUP BY p.usuarioId")
+    List<Object[]> findAgregadosByProgramaId(@Param("programaId") Integer programaId);
+    
+    @Query("SELECT " + ProgresoRepository.COLUMNAS_AGREGADO + " FROM Progreso p " +
+           "WHERE p.leccion.unidad.programa.id = :programaId AND p.usuarioId = :usuarioId GROUP BY p.usuarioId")
+    List<Object[]> findAgregadosByProgramaIdAndUsuarioId(@Param("programaId") Integer programaId,
+                                                         @Param("usuarioId") UUID usuarioId);
+    
     // Contar lecciones completadas por usuario
     @Query("SELECT COUNT(p) FROM Progreso p WHERE p.usuarioId = :usuarioId AND p.estado = 'completado'")
     Long countLeccionesCompletadasByUsuarioId(@Param("usuarioId") UUID usuarioId);
     
+    // Lecciones completadas por primera vez desde la fecha dada, por usuario (reglas de insignias semanales).
+    // Se usa la fecha de completado: fechaActualizacion avanza con cada latido sobre una lección ya completada
+    // Filas: usuarioId, leccionesCompletadas
+    @Query("SELECT p.usuarioId, COUNT(p) FROM Progreso p WHERE p.usuarioId IN :usuarioIds " +
+           "AND p.fechaCompletado >= :desde GROUP BY p.usuarioId")
+    List<Object[]> findLeccionesCompletadasDesde(@Param("usuarioIds") Collection<UUID> usuarioIds,
+                                                 @Param("desde") LocalDateTime desde);
+    
     // Contar lecciones en progreso por usuario
     @Query("SELECT COUNT(p) FROM Progreso p WHERE p.usuarioId = :usuarioId AND p.estado = 'en_progreso'")
     Long countLeccionesEnProgresoByUsuarioId(@Param("usuarioId") UUID usuarioId);
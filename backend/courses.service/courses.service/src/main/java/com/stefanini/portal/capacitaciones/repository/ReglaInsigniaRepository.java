@@ -0,0 +1,22 @@
+package com.stefanini.portal.capacitaciones.repository;
+
+import com.stefanini.portal.capacitaciones.dto.ReglaInsigniaDTO;
+import com.stefanini.portal.capacitaciones.entity.ReglaInsignia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReglaInsigniaRepository extends JpaRepository<ReglaInsignia, Long> {
+    
+    // Reglas activas para construir el índice del motor
+    @Query("SELECT r FROM ReglaInsignia r WHERE r.activa = true")
+    List<ReglaInsignia> findActivas();
+    
+    @Query("SELECT new com.stefanini.portal.capacitaciones.dto.ReglaInsigniaDTO(" +
+           "r.id, r.insigniaId, r.tipo, r.programaId, r.areaConocimiento, r.cantidad, r.activa) " +
+           "FROM ReglaInsignia r ORDER BY r.id")
+    List<ReglaInsigniaDTO> findAllDTO();
+}
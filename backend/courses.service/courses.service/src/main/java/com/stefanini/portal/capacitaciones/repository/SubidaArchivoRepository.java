@@ -0,0 +1,28 @@
+package com.stefanini.portal.capacitaciones.repository;
+
+import com.stefanini.portal.capacitaciones.entity.SubidaArchivo;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface SubidaArchivoRepository extends JpaRepository<SubidaArchivo, UUID> {
+    
+    // Avanza el prefijo confirmado sin retroceder: los fragmentos en paralelo pueden confirmar en
+    // cualquier orden. Se llama fuera de transacción, tras escribir cada fragmento
+    @Transactional
+    @Modifying
+    @Query("UPDATE SubidaArchivo s SET s.bytesConfirmados = :bytes, s.fechaActualizacion = :fecha " +
+           "WHERE s.id = :id AND s.bytesConfirmados < :bytes AND s.materialId IS NULL")
+    int confirmarBytes(@Param("id") UUID id, @Param("bytes") long bytes, @Param("fecha") LocalDateTime fecha);
+    
+    @Query("SELECT s FROM SubidaArchivo s WHERE s.fechaActualizacion < :limite")
+    List<SubidaArchivo> findInactivasDesde(@Param("limite") LocalDateTime limite);
+}
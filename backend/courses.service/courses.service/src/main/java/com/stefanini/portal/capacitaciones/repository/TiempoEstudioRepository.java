@@ -0,0 +1,17 @@
+package com.stefanini.portal.capacitaciones.repository;
+
+import com.stefanini.portal.capacitaciones.entity.TiempoEstudio;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface TiempoEstudioRepository extends JpaRepository<TiempoEstudio, Long> {
+    
+    // Total del usuario sobre los totales diarios ya agregados (índice único por usuario_id, leccion_id, fecha)
+    @Query("SELECT COALESCE(SUM(t.segundos), 0) FROM TiempoEstudio t WHERE t.usuarioId = :usuarioId")
+    Long sumSegundosByUsuarioId(@Param("usuarioId") UUID usuarioId);
+}
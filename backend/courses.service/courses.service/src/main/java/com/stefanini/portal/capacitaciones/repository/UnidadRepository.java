@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,6 +27,19 @@ public interface UnidadRepository extends JpaRepository<Unidad, Integer> {
     @Query("SELECT u FROM Unidad u LEFT JOIN FETCH u.lecciones WHERE u.programa.id = :programaId ORDER BY u.orden")
     List<Unidad> findByProgramaIdWithLecciones(@Param("programaId") Integer programaId);
     
+    // Obtener las unidades de un conjunto de programas en una sola consulta
+    @Query("SELECT u FROM Unidad u WHERE u.programa.id IN :programaIds ORDER BY u.orden")
+    List<Unidad> findByProgramaIdIn(@Param("programaIds") Collection<Integer> programaIds);
+    
+    // Ids, títulos y programa de todas las unidades (carga del índice de autocompletado)
+    @Query("SELECT u.id, u.titulo, u.programa.id FROM Unidad u")
+    List<Object[]> findResumenTitulos();
+    
+    // Proyección de las unidades de un conjunto de programas, sin hidratar entidades
+    // Filas: programaId, id, titulo, orden
+    @Query("SELECT u.programa.id, u.id, u.titulo, u.orden FROM Unidad u WHERE u.programa.id IN :programaIds ORDER BY u.orden")
+    List<Object[]> findProyeccionByProgramaIdIn(@Param("programaIds") Collection<Integer> programaIds);
+    
     // Contar unidades por programa
     @Query("SELECT COUNT(u) FROM Unidad u WHERE u.programa.id = :programaId")
     Long countByProgramaId(@Param("programaId") Integer programaId);
@@ -0,0 +1,239 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.AnaliticaAreaDTO;
+import com.stefanini.portal.capacitaciones.dto.AnaliticaProgramaDTO;
+import com.stefanini.portal.capacitaciones.repository.ProgramaRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgresoProgramaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indicadores de progreso de toda la organización, por programa y por área: tasa de finalización,
+ * progreso promedio y tiempo medio hasta completar. Se calculan sobre progreso_programas (un registro
+ * por usuario y programa) con una consulta agrupada y quedan en memoria. Un refresco periódico
+ * recalcula solo los programas con agregados modificados desde el anterior y vuelve a sumar las
+ * áreas a partir de los programas.
+ */
+@Service
+public class AnaliticaProgresoService {
+    
+    // Solape del refresco incremental: cubre escrituras confirmadas después de leer con una fecha anterior
+    private static final long MARGEN_SEGUNDOS = 60;
+    
+    // Tope de ids por consulta IN
+    private static final int TAMANO_LOTE = 1000;
+    
+    private static final String SIN_AREA = "Sin área";
+    
+    @Autowired
+    private ProgresoProgramaRepository progresoProgramaRepository;
+    
+    @Autowired
+    private ProgramaRepository programaRepository;
+    
+    // Último cálculo publicado; nulo hasta la primera consulta
+    private volatile Instantanea instantanea;
+    
+    // Programas cuyos agregados se rehicieron desde progreso y conservan fechas anteriores al último cálculo
+    private final Set<Integer> marcados = ConcurrentHashMap.newKeySet();
+    
+    public List<AnaliticaProgramaDTO> obtenerPorPrograma() {
+        return obtener().programas;
+    }
+    
+    public List<AnaliticaAreaDTO> obtenerPorArea() {
+        return obtener().areas;
+    }
+    
+    // El programa se recalculará en el próximo refresco, una vez confirmada la transacción en curso
+    public void marcarPrograma(Integer programaId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    marcados.add(programaId);
+                }
+            });
+        } else {
+            marcados.add(programaId);
+        }
+    }
+    
+    // Cálculo completo de todos los programas
+    public synchronized Map<String, Object> recalcular() {
+        LocalDateTime inicio = LocalDateTime.now();
+        marcados.clear();
+        Map<Integer, Sumas> porPrograma = new HashMap<>();
+        for (Object[] fila : progresoProgramaRepository.findIndicadoresPorPrograma()) {
+            porPrograma.put((Integer) fila[0], Sumas.desdeFila(fila));
+        }
+        publicar(porPrograma, inicio);
+        return resumen();
+    }
+    
+    @Scheduled(fixedDelayString = "${app.analitica.refresh-interval-ms:60000}")
+    public void refrescarPeriodicamente() {
+        if (instantanea != null) {
+            refrescar();
+        }
+    }
+    
+    // Refresco incremental: solo se vuelven a consultar los programas con cambios
+    public synchronized Map<String, Object> refrescar() {
+        Instantanea actual = instantanea;
+        if (actual == null) {
+            return recalcular();
+        }
+        
+        LocalDateTime inicio = LocalDateTime.now();
+        Set<Integer> cambiados = new HashSet<>(progresoProgramaRepository.findProgramaIdsActualizadosDesde(
+                actual.fechaCalculo.minusSeconds(MARGEN_SEGUNDOS)));
+        for (Integer programaId : marcados) {
+            marcados.remove(programaId);
+            cambiados.add(programaId);
+        }
+        
+        Map<Integer, Sumas> porPrograma = new HashMap<>(actual.sumas);
+        porPrograma.keySet().removeAll(cambiados);
+        List<Integer> ids = new ArrayList<>(cambiados);
+        for (int desde = 0; desde < ids.size(); desde += TAMANO_LOTE) {
+            List<Integer> lote = ids.subList(desde, Math.min(desde + TAMANO_LOTE, ids.size()));
+            for (Object[] fila : progresoProgramaRepository.findIndicadoresPorProgramaByProgramaIdIn(lote)) {
+                porPrograma.put((Integer) fila[0], Sumas.desdeFila(fila));
+            }
+        }
+        // Se publica aunque no haya cambios: títulos y áreas se leen de nuevo en cada refresco
+        publicar(porPrograma, inicio);
+        Map<String, Object> resumen = resumen();
+        resumen.put("programas_recalculados", cambiados.size());
+        return resumen;
+    }
+    
+    private Instantanea obtener() {
+        Instantanea actual = instantanea;
+        if (actual == null) {
+            synchronized (this) {
+                if (instantanea == null) {
+                    recalcular();
+                }
+                actual = instantanea;
+            }
+        }
+        return actual;
+    }
+    
+    // Une las sumas con título y área de cada programa y acumula las áreas
+    private void publicar(Map<Integer, Sumas> porPrograma, LocalDateTime fechaCalculo) {
+        Map<Integer, Sumas> vigentes = new HashMap<>();
+        List<AnaliticaProgramaDTO> programas = new ArrayList<>();
+        Map<String, Sumas> porArea = new TreeMap<>();
+        Map<String, Integer> programasPorArea = new HashMap<>();
+        
+        for (Object[] programa : programaRepository.findResumenAreas()) {
+            Integer programaId = (Integer) programa[0];
+            Sumas sumas = porPrograma.get(programaId);
+            if (sumas == null) {
+                continue;
+            }
+            String area = programa[2] != null ? (String) programa[2] : SIN_AREA;
+            vigentes.put(programaId, sumas);
+            programas.add(new AnaliticaProgramaDTO(programaId.longValue(), (String) programa[1], area,
+                    sumas.inscripciones, sumas.completados, sumas.tasaCompletado(), sumas.progresoPromedio(),
+                    sumas.horasPromedioHastaCompletar()));
+            porArea.computeIfAbsent(area, clave -> new Sumas()).sumar(sumas);
+            programasPorArea.merge(area, 1, Integer::sum);
+        }
+        programas.sort((a, b) -> a.getProgramaId().compareTo(b.getProgramaId()));
+        
+        List<AnaliticaAreaDTO> areas = new ArrayList<>();
+        for (Map.Entry<String, Sumas> entrada : porArea.entrySet()) {
+            Sumas sumas = entrada.getValue();
+            areas.add(new AnaliticaAreaDTO(entrada.getKey(), programasPorArea.get(entrada.getKey()),
+                    sumas.inscripciones, sumas.completados, sumas.tasaCompletado(), sumas.progresoPromedio(),
+                    sumas.horasPromedioHastaCompletar()));
+        }
+        
+        instantanea = new Instantanea(vigentes, List.copyOf(programas), List.copyOf(areas), fechaCalculo);
+    }
+    
+    private Map<String, Object> resumen() {
+        Instantanea actual = instantanea;
+        Map<String, Object> resumen = new LinkedHashMap<>();
+        resumen.put("programas", actual.programas.size());
+        resumen.put("areas", actual.areas.size());
+        resumen.put("fecha_calculo", actual.fechaCalculo);
+        return resumen;
+    }
+    
+    private static double redondear(double valor) {
+        return Math.round(valor * 100.0) / 100.0; // Redondear a 2 decimales
+    }
+    
+    private static final class Instantanea {
+        private final Map<Integer, Sumas> sumas;
+        private final List<AnaliticaProgramaDTO> programas;
+        private final List<AnaliticaAreaDTO> areas;
+        private final LocalDateTime fechaCalculo;
+        
+        private Instantanea(Map<Integer, Sumas> sumas, List<AnaliticaProgramaDTO> programas,
+                            List<AnaliticaAreaDTO> areas, LocalDateTime fechaCalculo) {
+            this.sumas = sumas;
+            this.programas = programas;
+            this.areas = areas;
+            this.fechaCalculo = fechaCalculo;
+        }
+    }
+    
+    // Sumas de un programa o de un área; los promedios se derivan al final para poder sumar programas
+    private static final class Sumas {
+        private long inscripciones;
+        private long completados;
+        private double sumaProgreso;
+        private long completadosConDuracion;
+        private double sumaSegundos;
+        
+        private static Sumas desdeFila(Object[] fila) {
+            Sumas sumas = new Sumas();
+            sumas.inscripciones = ((Number) fila[1]).longValue();
+            sumas.completados = ((Number) fila[2]).longValue();
+            sumas.sumaProgreso = fila[3] != null ? ((Number) fila[3]).doubleValue() : 0.0;
+            sumas.completadosConDuracion = ((Number) fila[4]).longValue();
+            sumas.sumaSegundos = fila[5] != null ? ((Number) fila[5]).doubleValue() : 0.0;
+            return sumas;
+        }
+        
+        private void sumar(Sumas otras) {
+            inscripciones += otras.inscripciones;
+            completados += otras.completados;
+            sumaProgreso += otras.sumaProgreso;
+            completadosConDuracion += otras.completadosConDuracion;
+            sumaSegundos += otras.sumaSegundos;
+        }
+        
+        private double tasaCompletado() {
+            return inscripciones > 0 ? redondear(completados * 100.0 / inscripciones) : 0.0;
+        }
+        
+        private double progresoPromedio() {
+            return inscripciones > 0 ? redondear(sumaProgreso / inscripciones) : 0.0;
+        }
+        
+        private Double horasPromedioHastaCompletar() {
+            return completadosConDuracion > 0 ? redondear(sumaSegundos / completadosConDuracion / 3600.0) : null;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.ProgresoDTO;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Escritura diferida de los latidos de progreso que envían las lecciones de video cada pocos
+ * segundos. Cada latido reemplaza al pendiente de la misma (usuario, lección) en un mapa en
+ * memoria y un vaciado periódico los persiste con el upsert por lotes. Las finalizaciones
+ * (porcentaje >= 100) no pasan por el buffer: se escriben en el momento para que estadísticas e
+ * insignias las vean de inmediato. Al detener la aplicación se vacía lo pendiente.
+ */
+@Component
+public class BufferLatidosProgreso {
+    
+    // Mismo tope que el upsert por lotes
+    private static final int TAMANO_LOTE = 1000;
+    
+    @Value("${app.progreso.write-behind.enabled:true}")
+    private boolean habilitado;
+    
+    // Por encima de este número de pendientes se adelanta el vaciado en el pool del planificador
+    @Value("${app.progreso.write-behind.max-pending:50000}")
+    private int maxPendientes;
+    
+    @Autowired
+    private ProgresoService progresoService;
+    
+    @Autowired
+    private TaskScheduler taskScheduler;
+    
+    // "usuario:lección" → último latido sin persistir
+    private final Map<String, ProgresoDTO> pendientes = new ConcurrentHashMap<>();
+    
+    private final AtomicLong recibidos = new AtomicLong();
+    private final AtomicLong combinados = new AtomicLong();
+    private final AtomicLong escritos = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    private final AtomicLong vaciados = new AtomicLong();
+    
+    // Hay un vaciado adelantado pedido que todavía no terminó
+    private final AtomicBoolean vaciadoAdelantado = new AtomicBoolean();
+    
+    // Devuelve el progreso guardado si el latido se escribió en el momento, vacío si quedó en el buffer
+    public Optional<ProgresoDTO> registrarLatido(UUID usuarioId, Integer leccionId, Double porcentaje) {
+        if (usuarioId == null || leccionId == null) {
+            throw new IllegalArgumentException("El latido requiere usuario_id y leccion_id");
+        }
+        if (porcentaje == null || porcentaje < 0 || porcentaje > 100) {
+            throw new IllegalArgumentException("El porcentaje debe estar entre 0 y 100");
+        }
+        recibidos.incrementAndGet();
+        
+        String clave = usuarioId + ":" + leccionId;
+        if (!habilitado || porcentaje >= 100) {
+            pendientes.remove(clave);
+            return Optional.of(progresoService.actualizarProgreso(usuarioId, leccionId, porcentaje));
+        }
+        
+        if (pendientes.size() >= maxPendientes && vaciadoAdelantado.compareAndSet(false, true)) {
+            // El latido no espera a la base de datos: el vaciado corre en otro hilo y, mientras tanto,
+            // los latidos siguen entrando al buffer
+            taskScheduler.schedule(this::vaciarAdelantado, Instant.now());
+        }
+        encolar(new ProgresoDTO(null, usuarioId, leccionId.longValue(), null, porcentaje, null));
+        return Optional.empty();
+    }
+    
+    @Scheduled(fixedDelayString = "${app.progreso.write-behind.flush-interval-ms:5000}")
+    public void vaciarPeriodicamente() {
+        vaciar();
+    }
+    
+    @PreDestroy
+    public void vaciarAlDetener() {
+        vaciar();
+    }
+    
+    private void vaciarAdelantado() {
+        try {
+            vaciar();
+        } finally {
+            vaciadoAdelantado.set(false);
+        }
+    }
+    
+    // Persiste lo pendiente en lotes; devuelve cuántas lecciones se escribieron
+    public synchronized int vaciar() {
+        if (pendientes.isEmpty()) {
+            return 0;
+        }
+        
+        // Retirar clave a clave: un latido que llegue durante el vaciado queda para el siguiente
+        List<ProgresoDTO> lote = new ArrayList<>(pendientes.size());
+        for (String clave : pendientes.keySet()) {
+            ProgresoDTO latido = pendientes.remove(clave);
+            if (latido != null) {
+                lote.add(latido);
+            }
+        }
+        
+        int escritas = 0;
+        for (int inicio = 0; inicio < lote.size(); inicio += TAMANO_LOTE) {
+            escritas += escribir(lote.subList(inicio, Math.min(inicio + TAMANO_LOTE, lote.size())));
+        }
+        escritos.addAndGet(escritas);
+        vaciados.incrementAndGet();
+        return escritas;
+    }
+    
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("habilitado", habilitado);
+        estadisticas.put("pendientes", pendientes.size());
+        estadisticas.put("recibidos", recibidos.get());
+        estadisticas.put("combinados", combinados.get());
+        estadisticas.put("escritos", escritos.get());
+        estadisticas.put("descartados", descartados.get());
+        estadisticas.put("vaciados", vaciados.get());
+        return estadisticas;
+    }
+    
+    // Entre latidos de la misma lección se conserva el mayor: el upsert tampoco deja bajar el porcentaje
+    private void encolar(ProgresoDTO latido) {
+        String clave = latido.getUsuarioId() + ":" + latido.getLeccionId();
+        pendientes.merge(clave, latido, (actual, nuevo) -> {
+            combinados.incrementAndGet();
+            return nuevo.getPorcentaje() >= actual.getPorcentaje() ? nuevo : actual;
+        });
+    }
+    
+    private int escribir(List<ProgresoDTO> lote) {
+        try {
+            progresoService.actualizarProgresoLote(lote);
+            return lote.size();
+        } catch (IllegalArgumentException e) {
+            // Algún latido no es válido (p. ej. una lección borrada): reintentar uno a uno y descartar solo esos
+            int escritas = 0;
+            for (ProgresoDTO latido : lote) {
+                try {
+                    progresoService.actualizarProgresoLote(List.of(latido));
+                    escritas++;
+                } catch (IllegalArgumentException errorLatido) {
+                    descartados.incrementAndGet();
+                } catch (RuntimeException errorLatido) {
+                    encolar(latido);
+                }
+            }
+            return escritas;
+        } catch (RuntimeException e) {
+            // Error de la base de datos: conservarlos para el próximo vaciado
+            lote.forEach(this::encolar);
+            return 0;
+        }
+    }
+}
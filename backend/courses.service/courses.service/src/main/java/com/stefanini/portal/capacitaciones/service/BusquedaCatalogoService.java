@@ -0,0 +1,57 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.ResultadoBusquedaDTO;
+import com.stefanini.portal.capacitaciones.repository.ProgramaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Búsqueda de texto completo en el catálogo (programas, unidades y lecciones) con raíces en español,
+ * sin distinguir acentos, ordenada por relevancia y con fragmentos resaltados. Se apoya en los índices
+ * GIN de PostgreSQL definidos en el script de base de datos, por lo que no escanea las tablas.
+ */
+@Service
+@Transactional(readOnly = true)
+public class BusquedaCatalogoService {
+    
+    private static final int LIMITE_POR_DEFECTO = 20;
+    private static final int LIMITE_MAXIMO = 100;
+    private static final int LONGITUD_MAXIMA_CONSULTA = 200;
+    
+    @Autowired
+    private ProgramaRepository programaRepository;
+    
+    public List<ResultadoBusquedaDTO> buscar(String consulta, Integer limite) {
+        if (consulta == null || consulta.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        String texto = consulta.trim();
+        if (texto.length() > LONGITUD_MAXIMA_CONSULTA) {
+            throw new IllegalArgumentException("La consulta no puede superar " + LONGITUD_MAXIMA_CONSULTA + " caracteres");
+        }
+        
+        int limiteEfectivo = limite == null ? LIMITE_POR_DEFECTO : limite;
+        if (limiteEfectivo < 1 || limiteEfectivo > LIMITE_MAXIMO) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_MAXIMO);
+        }
+        
+        return programaRepository.buscarTextoCompleto(texto, limiteEfectivo).stream()
+                .map(this::convertirAResultadoBusquedaDTO)
+                .collect(Collectors.toList());
+    }
+    
+    private ResultadoBusquedaDTO convertirAResultadoBusquedaDTO(Object[] fila) {
+        return new ResultadoBusquedaDTO(
+                (String) fila[0],
+                ((Number) fila[1]).intValue(),
+                fila[2] != null ? ((Number) fila[2]).intValue() : null,
+                (String) fila[3],
+                (String) fila[4],
+                ((Number) fila[5]).doubleValue());
+    }
+}
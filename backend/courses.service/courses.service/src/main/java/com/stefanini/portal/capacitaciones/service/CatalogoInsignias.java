@@ -0,0 +1,117 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.InsigniaDTO;
+import com.stefanini.portal.capacitaciones.repository.InsigniaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copia en memoria del catálogo de insignias, que casi nunca cambia. Se carga en la primera
+ * lectura, se descarta al crear una insignia (de nuevo al confirmar) y caduca por tiempo para
+ * recoger altas hechas desde otras instancias. Una carga iniciada antes de una invalidación no se
+ * publica.
+ */
+@Component
+public class CatalogoInsignias {
+    
+    @Value("${app.cache.insignias.ttl-seconds:600}")
+    private long ttlSegundos;
+    
+    @Autowired
+    private InsigniaRepository insigniaRepository;
+    
+    private volatile Copia copia;
+    
+    private final AtomicLong generacion = new AtomicLong();
+    
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong cargas = new AtomicLong();
+    
+    public List<InsigniaDTO> listar() {
+        return obtener().lista;
+    }
+    
+    // Nulo si la insignia no existe; una insignia desconocida fuerza una recarga antes de descartarla
+    public InsigniaDTO buscar(Long insigniaId) {
+        InsigniaDTO insignia = obtener().porId.get(insigniaId);
+        if (insignia == null) {
+            insignia = cargar().porId.get(insigniaId);
+        }
+        return insignia;
+    }
+    
+    public void invalidar() {
+        descartar();
+        
+        // Repetir al confirmar para descartar lecturas que vieron datos previos al commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    descartar();
+                }
+            });
+        }
+    }
+    
+    public Map<String, Object> obtenerEstadisticas() {
+        Copia actual = copia;
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("insigniasEnCache", actual != null ? actual.lista.size() : 0);
+        estadisticas.put("aciertos", aciertos.get());
+        estadisticas.put("cargas", cargas.get());
+        estadisticas.put("ttlSegundos", ttlSegundos);
+        return estadisticas;
+    }
+    
+    private Copia obtener() {
+        Copia actual = copia;
+        if (actual != null && !actual.expirada()) {
+            aciertos.incrementAndGet();
+            return actual;
+        }
+        return cargar();
+    }
+    
+    private Copia cargar() {
+        long leida = generacion.get();
+        Copia nueva = new Copia(insigniaRepository.findAllDTO(), System.nanoTime() + ttlSegundos * 1_000_000_000L);
+        cargas.incrementAndGet();
+        synchronized (this) {
+            if (generacion.get() == leida) {
+                copia = nueva;
+            }
+        }
+        return nueva;
+    }
+    
+    private synchronized void descartar() {
+        generacion.incrementAndGet();
+        copia = null;
+    }
+    
+    private static final class Copia {
+        private final List<InsigniaDTO> lista;
+        private final Map<Long, InsigniaDTO> porId = new LinkedHashMap<>();
+        private final long expiraEn;
+        
+        private Copia(List<InsigniaDTO> insignias, long expiraEn) {
+            this.lista = Collections.unmodifiableList(insignias);
+            insignias.forEach(insignia -> porId.put(insignia.getId(), insignia));
+            this.expiraEn = expiraEn;
+        }
+        
+        private boolean expirada() {
+            return System.nanoTime() - expiraEn > 0;
+        }
+    }
+}
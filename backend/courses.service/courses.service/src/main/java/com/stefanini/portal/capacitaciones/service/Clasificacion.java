@@ -0,0 +1,133 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Una tabla de clasificación en memoria: puntos por usuario ordenados de mayor a menor.
+ * El conjunto ordenado da los primeros N en O(log n + N) y un árbol de Fenwick indexado por puntos
+ * cuenta cuántos usuarios superan una puntuación, así la posición de un usuario sale en
+ * O(log P), con P la puntuación máxima. Los empates comparten posición (1, 2, 2, 4).
+ * No es segura entre hilos: la sincroniza ClasificacionesService.
+ */
+class Clasificacion {
+    
+    private static final Comparator<Puesto> ORDEN = Comparator
+            .comparingInt((Puesto puesto) -> puesto.puntos).reversed()
+            .thenComparing(puesto -> puesto.usuarioId);
+    
+    private final Map<UUID, Integer> puntos = new HashMap<>();
+    private final TreeSet<Puesto> ordenados = new TreeSet<>(ORDEN);
+    
+    // usuariosPorPuntos[i] acumula, al estilo Fenwick, cuántos usuarios tienen i puntos (índices desde 1)
+    private long[] usuariosPorPuntos = new long[64];
+    
+    // Fija los puntos del usuario; con 0 o menos sale de la clasificación
+    void establecer(UUID usuarioId, int nuevos) {
+        Integer actuales = puntos.get(usuarioId);
+        if (actuales != null) {
+            if (actuales == nuevos) {
+                return;
+            }
+            ordenados.remove(new Puesto(usuarioId, actuales));
+            contar(actuales, -1);
+            puntos.remove(usuarioId);
+        }
+        if (nuevos > 0) {
+            // Ampliar antes de registrarlo: ampliar() recuenta desde el mapa de puntos
+            while (nuevos >= usuariosPorPuntos.length) {
+                ampliar();
+            }
+            puntos.put(usuarioId, nuevos);
+            ordenados.add(new Puesto(usuarioId, nuevos));
+            contar(nuevos, 1);
+        }
+    }
+    
+    void sumar(UUID usuarioId, int diferencia) {
+        if (diferencia != 0) {
+            establecer(usuarioId, puntos.getOrDefault(usuarioId, 0) + diferencia);
+        }
+    }
+    
+    int puntosDe(UUID usuarioId) {
+        return puntos.getOrDefault(usuarioId, 0);
+    }
+    
+    // Posición del usuario o 0 si no tiene puntos
+    int posicion(UUID usuarioId) {
+        Integer actuales = puntos.get(usuarioId);
+        if (actuales == null) {
+            return 0;
+        }
+        return (int) (puntos.size() - acumulado(actuales)) + 1;
+    }
+    
+    int participantes() {
+        return puntos.size();
+    }
+    
+    // Los primeros N: cada fila es {usuarioId, posicion, puntos}
+    List<Object[]> primeros(int limite) {
+        List<Object[]> resultado = new ArrayList<>();
+        int indice = 0;
+        int posicion = 0;
+        Integer puntosAnteriores = null;
+        for (Puesto puesto : ordenados) {
+            if (indice >= limite) {
+                break;
+            }
+            indice++;
+            if (puntosAnteriores == null || puesto.puntos != puntosAnteriores) {
+                posicion = indice;
+                puntosAnteriores = puesto.puntos;
+            }
+            resultado.add(new Object[] {puesto.usuarioId, posicion, puesto.puntos});
+        }
+        return resultado;
+    }
+    
+    Map<UUID, Integer> copiarPuntos() {
+        return new HashMap<>(puntos);
+    }
+    
+    private void contar(int valor, long cantidad) {
+        for (int i = valor; i < usuariosPorPuntos.length; i += i & -i) {
+            usuariosPorPuntos[i] += cantidad;
+        }
+    }
+    
+    // Usuarios con puntos en [1, valor]
+    private long acumulado(int valor) {
+        long total = 0;
+        for (int i = Math.min(valor, usuariosPorPuntos.length - 1); i > 0; i -= i & -i) {
+            total += usuariosPorPuntos[i];
+        }
+        return total;
+    }
+    
+    // Duplica la capacidad reconstruyendo el árbol desde los puntos actuales
+    private void ampliar() {
+        usuariosPorPuntos = new long[usuariosPorPuntos.length * 2];
+        for (int valor : puntos.values()) {
+            for (int i = valor; i < usuariosPorPuntos.length; i += i & -i) {
+                usuariosPorPuntos[i]++;
+            }
+        }
+    }
+    
+    private static final class Puesto {
+        private final UUID usuarioId;
+        private final int puntos;
+        
+        private Puesto(UUID usuarioId, int puntos) {
+            this.usuarioId = usuarioId;
+            this.puntos = puntos;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.PosicionClasificacionDTO;
+import com.stefanini.portal.capacitaciones.repository.InsigniaOtorgadaRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgramaRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgresoProgramaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Clasificaciones de usuarios en memoria: por programa y por área según lecciones completadas, y
+ * una global según insignias (las insignias no pertenecen a ningún programa). Se construyen desde
+ * progreso_programas e insignias_otorgadas al arrancar y una vez al día, y entre tanto se
+ * actualizan al confirmar cada escritura de progreso o insignia sin volver a consultar la base de
+ * datos. Un único monitor protege todas las clasificaciones; cada operación es O(log n). La
+ * reconstrucción lee fuera del monitor y solo lo toma para reemplazar las clasificaciones.
+ */
+@Service
+public class ClasificacionesService {
+    
+    @Autowired
+    private ProgresoProgramaRepository progresoProgramaRepository;
+    
+    @Autowired
+    private InsigniaOtorgadaRepository insigniaOtorgadaRepository;
+    
+    @Autowired
+    private ProgramaRepository programaRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    // Clasificaciones vigentes; una reconstrucción arma unas nuevas y las reemplaza de una vez
+    private Estado estado = new Estado();
+    
+    // Hasta la primera construcción los cambios solo se registran para aplicarlos sobre lo construido
+    private volatile boolean construido = false;
+    
+    // Cambios confirmados mientras hay una reconstrucción en curso, en orden de aplicación (null si no la hay)
+    private List<Consumer<Estado>> cambiosDuranteReconstruccion;
+    
+    // Una reconstrucción a la vez (arranque, tarea diaria, endpoint y primera consulta)
+    private final Object reconstruccion = new Object();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void construirAlArrancar() {
+        reconstruir();
+    }
+    
+    // Corrige cualquier desviación acumulada (p. ej. un cambio confirmado justo al tomar la foto de una reconstrucción)
+    @Scheduled(cron = "${app.clasificaciones.rebuild-cron:0 0 4 * * *}")
+    public void reconstruirPeriodicamente() {
+        reconstruir();
+    }
+    
+    // Las lecturas se hacen en una transacción de solo lectura con una única foto de la base de datos y
+    // sin tomar el monitor, así las escrituras no esperan. La foto la fija la primera consulta (áreas);
+    // los cambios registrados hasta que termina ya están en ella y se descartan, y los registrados
+    // después se aplican también sobre las clasificaciones nuevas. Como casi todos son diferencias,
+    // aplicar uno que ya estaba en la foto lo contaría dos veces; la primera consulta es pequeña para
+    // que un cambio confirmado mientras corre (que no se aplicaría) sea improbable
+    public Map<String, Object> reconstruir() {
+        synchronized (reconstruccion) {
+            synchronized (this) {
+                cambiosDuranteReconstruccion = new ArrayList<>();
+            }
+            try {
+                TransactionTemplate lectura = new TransactionTemplate(transactionManager);
+                lectura.setReadOnly(true);
+                lectura.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+                int[] cambiosEnLaFoto = new int[1];
+                Estado nuevo = lectura.execute(transaccion -> {
+                    Estado leido = new Estado();
+                    leerAreas(leido);
+                    synchronized (this) {
+                        cambiosEnLaFoto[0] = cambiosDuranteReconstruccion.size();
+                    }
+                    leerClasificaciones(leido);
+                    return leido;
+                });
+                
+                synchronized (this) {
+                    for (Consumer<Estado> cambio : cambiosDuranteReconstruccion.subList(cambiosEnLaFoto[0],
+                            cambiosDuranteReconstruccion.size())) {
+                        cambio.accept(nuevo);
+                    }
+                    estado = nuevo;
+                    construido = true;
+                    
+                    Map<String, Object> resumen = new LinkedHashMap<>();
+                    resumen.put("programas", estado.porPrograma.size());
+                    resumen.put("areas", estado.porArea.size());
+                    resumen.put("usuarios_con_insignias", estado.porInsignias.participantes());
+                    return resumen;
+                }
+            } finally {
+                synchronized (this) {
+                    cambiosDuranteReconstruccion = null;
+                }
+            }
+        }
+    }
+    
+    // Consultas
+    
+    public List<PosicionClasificacionDTO> obtenerPrimerosPrograma(Integer programaId, int limite) {
+        asegurarConstruido();
+        synchronized (this) {
+            return primeros(estado.porPrograma.get(programaId), limite);
+        }
+    }
+    
+    public PosicionClasificacionDTO obtenerPosicionPrograma(Integer programaId, UUID usuarioId) {
+        asegurarConstruido();
+        synchronized (this) {
+            return posicion(estado.porPrograma.get(programaId), usuarioId);
+        }
+    }
+    
+    public List<PosicionClasificacionDTO> obtenerPrimerosArea(String area, int limite) {
+        asegurarConstruido();
+        synchronized (this) {
+            return primeros(estado.porArea.get(area), limite);
+        }
+    }
+    
+    public PosicionClasificacionDTO obtenerPosicionArea(String area, UUID usuarioId) {
+        asegurarConstruido();
+        synchronized (this) {
+            return posicion(estado.porArea.get(area), usuarioId);
+        }
+    }
+    
+    public List<PosicionClasificacionDTO> obtenerPrimerosInsignias(int limite) {
+        asegurarConstruido();
+        synchronized (this) {
+            return primeros(estado.porInsignias, limite);
+        }
+    }
+    
+    public PosicionClasificacionDTO obtenerPosicionInsignias(UUID usuarioId) {
+        asegurarConstruido();
+        synchronized (this) {
+            return posicion(estado.porInsignias, usuarioId);
+        }
+    }
+    
+    // Cambios, aplicados al confirmar la transacción en curso. El área del programa se obtiene antes,
+    // dentro de la transacción que escribe, para que al confirmar solo se toque memoria
+    
+    public void sumarLecciones(UUID usuarioId, Integer programaId, int diferencia) {
+        if (diferencia != 0) {
+            String area = areaDe(programaId);
+            alConfirmar(clasificaciones -> clasificaciones.sumarLecciones(usuarioId, programaId, diferencia, area));
+        }
+    }
+    
+    public void establecerLecciones(UUID usuarioId, Integer programaId, int completadas) {
+        String area = areaDe(programaId);
+        alConfirmar(clasificaciones -> clasificaciones.fijarLecciones(usuarioId, programaId, completadas, area));
+    }
+    
+    // Reemplaza las lecciones completadas de todos los usuarios del programa
+    public void reemplazarPrograma(Integer programaId, Map<UUID, Integer> completadas) {
+        String area = areaDe(programaId);
+        alConfirmar(clasificaciones -> clasificaciones.reemplazarPrograma(programaId, completadas, area));
+    }
+    
+    public void eliminarPrograma(Integer programaId) {
+        alConfirmar(clasificaciones -> clasificaciones.eliminarPrograma(programaId));
+    }
+    
+    public void cambiarArea(Integer programaId, String area) {
+        alConfirmar(clasificaciones -> clasificaciones.cambiarArea(programaId, area));
+    }
+    
+    public void sumarInsignias(UUID usuarioId, int cantidad) {
+        alConfirmar(clasificaciones -> clasificaciones.porInsignias.sumar(usuarioId, cantidad));
+    }
+    
+    private void leerAreas(Estado nuevo) {
+        for (Object[] fila : programaRepository.findResumenAreas()) {
+            if (fila[2] != null) {
+                nuevo.areaPorPrograma.put((Integer) fila[0], (String) fila[2]);
+            }
+        }
+    }
+    
+    private void leerClasificaciones(Estado nuevo) {
+        for (Object[] fila : progresoProgramaRepository.findLeccionesCompletadas()) {
+            UUID usuarioId = (UUID) fila[0];
+            Integer programaId = (Integer) fila[1];
+            int completadas = (Integer) fila[2];
+            nuevo.porPrograma.computeIfAbsent(programaId, clave -> new Clasificacion()).establecer(usuarioId, completadas);
+            String area = nuevo.areaPorPrograma.get(programaId);
+            if (area != null) {
+                nuevo.porArea.computeIfAbsent(area, clave -> new Clasificacion()).sumar(usuarioId, completadas);
+            }
+        }
+        
+        for (Object[] fila : insigniaOtorgadaRepository.findTotalesPorUsuario()) {
+            nuevo.porInsignias.establecer((UUID) fila[0], ((Number) fila[1]).intValue());
+        }
+    }
+    
+    // Programa creado después de la última construcción: se consulta su área
+    private String areaDe(Integer programaId) {
+        synchronized (this) {
+            String area = estado.areaPorPrograma.get(programaId);
+            if (area != null) {
+                return area;
+            }
+        }
+        return programaRepository.findAreaById(programaId).orElse(null);
+    }
+    
+    // Aplica el cambio a las clasificaciones vigentes y, si se están reconstruyendo, lo registra para
+    // aplicarlo también sobre las nuevas
+    private synchronized void aplicar(Consumer<Estado> cambio) {
+        if (construido) {
+            cambio.accept(estado);
+        }
+        if (cambiosDuranteReconstruccion != null) {
+            cambiosDuranteReconstruccion.add(cambio);
+        }
+    }
+    
+    private void asegurarConstruido() {
+        if (!construido) {
+            synchronized (reconstruccion) {
+                if (!construido) {
+                    reconstruir();
+                }
+            }
+        }
+    }
+    
+    private static List<PosicionClasificacionDTO> primeros(Clasificacion clasificacion, int limite) {
+        List<PosicionClasificacionDTO> resultado = new ArrayList<>();
+        if (clasificacion != null) {
+            for (Object[] fila : clasificacion.primeros(limite)) {
+                resultado.add(new PosicionClasificacionDTO((UUID) fila[0], (Integer) fila[1], (Integer) fila[2],
+                        clasificacion.participantes()));
+            }
+        }
+        return resultado;
+    }
+    
+    private static PosicionClasificacionDTO posicion(Clasificacion clasificacion, UUID usuarioId) {
+        if (clasificacion == null) {
+            return new PosicionClasificacionDTO(usuarioId, 0, 0, 0);
+        }
+        return new PosicionClasificacionDTO(usuarioId, clasificacion.posicion(usuarioId),
+                clasificacion.puntosDe(usuarioId), clasificacion.participantes());
+    }
+    
+    private void alConfirmar(Consumer<Estado> cambio) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    aplicar(cambio);
+                }
+            });
+        } else {
+            aplicar(cambio);
+        }
+    }
+    
+    // Conjunto de clasificaciones; solo se modifica con el monitor del servicio tomado
+    private static final class Estado {
+        private final Map<Integer, Clasificacion> porPrograma = new HashMap<>();
+        private final Map<String, Clasificacion> porArea = new HashMap<>();
+        private final Map<Integer, String> areaPorPrograma = new HashMap<>();
+        private final Clasificacion porInsignias = new Clasificacion();
+        
+        private void sumarLecciones(UUID usuarioId, Integer programaId, int diferencia, String area) {
+            Clasificacion programa = porPrograma.get(programaId);
+            int actuales = programa != null ? programa.puntosDe(usuarioId) : 0;
+            fijarLecciones(usuarioId, programaId, actuales + diferencia, area);
+        }
+        
+        private void reemplazarPrograma(Integer programaId, Map<UUID, Integer> completadas, String area) {
+            Clasificacion programa = porPrograma.get(programaId);
+            if (programa != null) {
+                for (UUID usuarioId : programa.copiarPuntos().keySet()) {
+                    if (!completadas.containsKey(usuarioId)) {
+                        fijarLecciones(usuarioId, programaId, 0, area);
+                    }
+                }
+            }
+            completadas.forEach((usuarioId, valor) -> fijarLecciones(usuarioId, programaId, valor, area));
+        }
+        
+        private void eliminarPrograma(Integer programaId) {
+            reemplazarPrograma(programaId, Map.of(), null);
+            porPrograma.remove(programaId);
+            areaPorPrograma.remove(programaId);
+        }
+        
+        // Traslada los puntos del programa del área anterior a la nueva
+        private void cambiarArea(Integer programaId, String area) {
+            String anterior = areaPorPrograma.get(programaId);
+            if (Objects.equals(anterior, area)) {
+                return;
+            }
+            Clasificacion programa = porPrograma.get(programaId);
+            if (programa != null) {
+                programa.copiarPuntos().forEach((usuarioId, puntos) -> {
+                    if (anterior != null) {
+                        porArea.get(anterior).sumar(usuarioId, -puntos);
+                    }
+                    if (area != null) {
+                        porArea.computeIfAbsent(area, clave -> new Clasificacion()).sumar(usuarioId, puntos);
+                    }
+                });
+            }
+            if (area != null) {
+                areaPorPrograma.put(programaId, area);
+            } else {
+                areaPorPrograma.remove(programaId);
+            }
+        }
+        
+        // Fija los puntos del usuario en el programa y lleva la diferencia a la clasificación del área
+        // (la ya conocida o, para un programa nuevo, la leída al registrar el cambio)
+        private void fijarLecciones(UUID usuarioId, Integer programaId, int completadas, String areaLeida) {
+            Clasificacion programa = porPrograma.computeIfAbsent(programaId, clave -> new Clasificacion());
+            int diferencia = completadas - programa.puntosDe(usuarioId);
+            programa.establecer(usuarioId, completadas);
+            
+            String area = areaPorPrograma.get(programaId);
+            if (area == null && areaLeida != null) {
+                areaPorPrograma.put(programaId, areaLeida);
+                area = areaLeida;
+            }
+            if (area != null) {
+                porArea.computeIfAbsent(area, clave -> new Clasificacion()).sumar(usuarioId, diferencia);
+            }
+        }
+    }
+}
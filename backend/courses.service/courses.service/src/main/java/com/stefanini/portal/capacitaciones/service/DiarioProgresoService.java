@@ -0,0 +1,207 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.ProgresoDTO;
+import com.stefanini.portal.capacitaciones.entity.ProgresoCompactacion;
+import com.stefanini.portal.capacitaciones.entity.ProgresoEvento;
+import com.stefanini.portal.capacitaciones.repository.LeccionRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgresoCompactacionRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgresoEventoRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Diario de eventos de progreso (progreso_eventos). Cada escritura de progreso añade, en su misma
+ * transacción y con un único INSERT por llamada, el estado resultante de cada lección, de modo que
+ * se puede consultar cuándo alcanzó un usuario cada porcentaje. Una compactación periódica pliega
+ * los eventos nuevos sobre progreso (último evento de cada lección) y corrige los agregados por
+ * programa de lo que no coincidía; la reproducción rehace todo el estado derivado desde el diario.
+ */
+@Service
+@Transactional
+public class DiarioProgresoService {
+    
+    // 5 parámetros por fila, muy por debajo del límite de parámetros de PostgreSQL
+    private static final int TAMANO_LOTE = 1000;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private ProgresoEventoRepository progresoEventoRepository;
+    
+    @Autowired
+    private ProgresoCompactacionRepository progresoCompactacionRepository;
+    
+    @Autowired
+    private LeccionRepository leccionRepository;
+    
+    @Autowired
+    private ProgresoAgregadoService progresoAgregadoService;
+    
+    // Mayor id visto en la compactación anterior. Se compacta hasta él en la siguiente, cuando las
+    // transacciones que insertaron esos eventos ya confirmaron y no quedan huecos por debajo
+    private volatile Long ultimoIdVisto;
+    
+    // Añade los eventos en lotes de un INSERT con varias filas
+    public void registrar(List<ProgresoEvento> eventos) {
+        for (int inicio = 0; inicio < eventos.size(); inicio += TAMANO_LOTE) {
+            insertar(eventos.subList(inicio, Math.min(inicio + TAMANO_LOTE, eventos.size())));
+        }
+    }
+    
+    @Transactional(readOnly = true)
+    public List<ProgresoDTO> obtenerHistorial(UUID usuarioId, Integer leccionId) {
+        List<ProgresoDTO> historial = new ArrayList<>();
+        for (ProgresoEvento evento : progresoEventoRepository.findByUsuarioIdAndLeccionIdOrderByIdAsc(usuarioId, leccionId)) {
+            historial.add(new ProgresoDTO(evento.getId(), evento.getUsuarioId(), evento.getLeccionId().longValue(),
+                    evento.getEstado(), evento.getPorcentaje(), evento.getFecha()));
+        }
+        return historial;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.progreso.eventos.compaction-interval-ms:60000}")
+    public void compactarPeriodicamente() {
+        compactar();
+    }
+    
+    // Pliega los eventos posteriores a la marca y anteriores al último id visto
+    public Map<String, Object> compactar() {
+        ProgresoCompactacion marca = bloquearMarca();
+        Long hasta = ultimoIdVisto;
+        ultimoIdVisto = progresoEventoRepository.findMaxId();
+        
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        if (hasta == null || hasta <= marca.getUltimoEventoId()) {
+            resultado.put("ultimo_evento_id", marca.getUltimoEventoId());
+            resultado.put("lecciones_corregidas", 0);
+            return resultado;
+        }
+        
+        List<Object[]> corregidas = plegar(marca.getUltimoEventoId(), hasta);
+        recalcularAgregados(corregidas);
+        marca.setUltimoEventoId(hasta);
+        marca.setFechaCompactacion(LocalDateTime.now());
+        progresoCompactacionRepository.save(marca);
+        
+        resultado.put("ultimo_evento_id", hasta);
+        resultado.put("lecciones_corregidas", corregidas.size());
+        return resultado;
+    }
+    
+    // Rehace progreso desde el diario completo y después todos los agregados por programa.
+    // Las filas de progreso sin ningún evento (anteriores al diario) se conservan tal cual
+    public Map<String, Object> reproducir() {
+        ProgresoCompactacion marca = bloquearMarca();
+        Long hasta = progresoEventoRepository.findMaxId();
+        
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        int corregidas = hasta != null ? plegar(0L, hasta).size() : 0;
+        long agregados = progresoAgregadoService.reconstruirTodo();
+        if (hasta != null) {
+            marca.setUltimoEventoId(hasta);
+            marca.setFechaCompactacion(LocalDateTime.now());
+            progresoCompactacionRepository.save(marca);
+        }
+        
+        resultado.put("ultimo_evento_id", hasta != null ? hasta : 0L);
+        resultado.put("lecciones_corregidas", corregidas);
+        resultado.put("agregados", agregados);
+        return resultado;
+    }
+    
+    private ProgresoCompactacion bloquearMarca() {
+        return progresoCompactacionRepository.bloquear(ProgresoCompactacion.ID_UNICO)
+                .orElseGet(() -> progresoCompactacionRepository.save(new ProgresoCompactacion()));
+    }
+    
+    private void insertar(List<ProgresoEvento> eventos) {
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO capacitaciones.progreso_eventos (usuario_id, leccion_id, estado, porcentaje, fecha) VALUES ");
+        for (int i = 0; i < eventos.size(); i++) {
+            sql.append(i == 0 ? "" : ", ")
+               .append("(:u").append(i).append(", :l").append(i).append(", :e").append(i)
+               .append(", :p").append(i).append(", :f").append(i).append(")");
+        }
+        
+        Query consulta = entityManager.createNativeQuery(sql.toString());
+        for (int i = 0; i < eventos.size(); i++) {
+            ProgresoEvento evento = eventos.get(i);
+            consulta.setParameter("u" + i, evento.getUsuarioId());
+            consulta.setParameter("l" + i, evento.getLeccionId());
+            consulta.setParameter("e" + i, evento.getEstado());
+            consulta.setParameter("p" + i, evento.getPorcentaje());
+            consulta.setParameter("f" + i, evento.getFecha());
+        }
+        consulta.executeUpdate();
+    }
+    
+    // Lleva a progreso el último evento de cada lección con eventos en (desde, hasta], salvo si hay
+    // uno posterior a hasta (lo plegará la siguiente compactación). Devuelve (usuario, lección) de
+    // las filas insertadas o que no coincidían con el diario.
+    // El NOT EXISTS ve la foto del inicio de la sentencia: una escritura confirmada después ya dejó
+    // en progreso un estado más nuevo que el del diario plegado, y la condición sobre la fecha (que
+    // se evalúa sobre la última versión de la fila) evita pisarlo
+    private List<Object[]> plegar(Long desde, Long hasta) {
+        Query consulta = entityManager.createNativeQuery(
+                "INSERT INTO capacitaciones.progreso AS p (usuario_id, leccion_id, estado, porcentaje, fecha_actualizacion, " +
+                "fecha_completado) " +
+                "SELECT DISTINCT ON (e.usuario_id, e.leccion_id) e.usuario_id, e.leccion_id, e.estado, e.porcentaje, e.fecha, " +
+                "CASE WHEN e.estado = 'completado' THEN e.fecha END " +
+                "FROM capacitaciones.progreso_eventos e " +
+                "WHERE e.id > :desde AND e.id <= :hasta AND NOT EXISTS (" +
+                "SELECT 1 FROM capacitaciones.progreso_eventos n " +
+                "WHERE n.usuario_id = e.usuario_id AND n.leccion_id = e.leccion_id AND n.id > :hasta) " +
+                "ORDER BY e.usuario_id, e.leccion_id, e.id DESC " +
+                "ON CONFLICT (usuario_id, leccion_id) DO UPDATE SET estado = EXCLUDED.estado, " +
+                "porcentaje = EXCLUDED.porcentaje, fecha_actualizacion = EXCLUDED.fecha_actualizacion, " +
+                "fecha_completado = COALESCE(p.fecha_completado, EXCLUDED.fecha_completado) " +
+                "WHERE (p.fecha_actualizacion IS NULL OR p.fecha_actualizacion <= EXCLUDED.fecha_actualizacion) " +
+                "AND (p.estado IS DISTINCT FROM EXCLUDED.estado OR p.porcentaje IS DISTINCT FROM EXCLUDED.porcentaje) " +
+                "RETURNING p.usuario_id, p.leccion_id");
+        consulta.setParameter("desde", desde);
+        consulta.setParameter("hasta", hasta);
+        
+        @SuppressWarnings("unchecked")
+        List<Object[]> filas = consulta.getResultList();
+        return filas;
+    }
+    
+    // Recalcula desde progreso el agregado de cada (usuario, programa) con alguna lección corregida
+    private void recalcularAgregados(List<Object[]> corregidas) {
+        Map<Integer, Integer> programaPorLeccion = new HashMap<>();
+        Set<Integer> leccionIds = new LinkedHashSet<>();
+        for (Object[] fila : corregidas) {
+            leccionIds.add(((Number) fila[1]).intValue());
+        }
+        List<Integer> ids = new ArrayList<>(leccionIds);
+        for (int inicio = 0; inicio < ids.size(); inicio += TAMANO_LOTE) {
+            for (Object[] contexto : leccionRepository.findContextoByIdIn(ids.subList(inicio, Math.min(inicio + TAMANO_LOTE, ids.size())))) {
+                programaPorLeccion.put((Integer) contexto[0], (Integer) contexto[4]);
+            }
+        }
+        
+        Set<String> agregados = new LinkedHashSet<>();
+        for (Object[] fila : corregidas) {
+            UUID usuarioId = (UUID) fila[0];
+            Integer programaId = programaPorLeccion.get(((Number) fila[1]).intValue());
+            if (programaId != null && agregados.add(usuarioId + ":" + programaId)) {
+                progresoAgregadoService.recalcularUsuarioPrograma(usuarioId, programaId);
+            }
+        }
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -59,24 +61,9 @@ public class FileStorageService {
             Path rutaArchivo = directorio.resolve(nombreArchivo);
             Files.copy(archivo.getInputStream(), rutaArchivo, StandardCopyOption.REPLACE_EXISTING);
             
-            // Determinar tipo de material
-            String tipoMaterial = determinarTipoMaterial(extension);
-            
-            // Crear URL de acceso
-            String urlAcceso = contextPath + "/uploads/" + nombreArchivo;
-            
             // Crear entidad Material
-            Material material = new Material();
-            material.setNombreArchivo(nombreArchivo);
-            material.setNombreOriginal(nombreOriginal);
-            material.setTipoMaterial(tipoMaterial);
-            material.setExtension(extension);
-            material.setTamañoBytes(archivo.getSize());
-            material.setRutaArchivo(rutaArchivo.toString());
-            material.setUrlAcceso(urlAcceso);
-            material.setDescripcion(descripcion);
-            material.setFechaSubida(LocalDateTime.now());
-            material.setActivo(true);
+            Material material = nuevoMaterial(nombreArchivo, nombreOriginal, extension, archivo.getSize(),
+                    rutaArchivo, descripcion);
             
             // Guardar en base de datos
             Material materialGuardado = materialRepository.save(material);
@@ -88,6 +75,38 @@ public class FileStorageService {
         }
     }
     
+    // Registra como Material un archivo ya completo en disco (subidas reanudables). Lo mueve de forma
+    // atómica al directorio de subidas y, si la transacción no confirma, lo devuelve a su sitio
+    @Transactional(rollbackFor = Exception.class)
+    public Material registrarArchivo(Path origen, String nombreOriginal, String descripcion, String hash)
+            throws IOException {
+        String extension = obtenerExtension(nombreOriginal);
+        String nombreArchivo = generarNombreUnico(extension);
+        Path rutaArchivo = Paths.get(uploadDir).resolve(nombreArchivo);
+        long tamaño = Files.size(origen);
+        Files.move(origen, rutaArchivo, StandardCopyOption.ATOMIC_MOVE);
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int estado) {
+                    if (estado != STATUS_COMMITTED) {
+                        try {
+                            Files.move(rutaArchivo, origen, StandardCopyOption.ATOMIC_MOVE);
+                        } catch (IOException e) {
+                            throw new RuntimeException("Error al restaurar archivo: " + e.getMessage(), e);
+                        }
+                    }
+                }
+            });
+        }
+        
+        Material material = nuevoMaterial(nombreArchivo, nombreOriginal, extension, tamaño, rutaArchivo, descripcion);
+        material.setFileHash(hash);
+        material.setFileSizeVerified(true);
+        return materialRepository.save(material);
+    }
+    
     // Obtener material por ID
     @Transactional(readOnly = true)
     public Optional<Material> obtenerMaterialPorId(Integer id) {
@@ -156,12 +175,16 @@ public class FileStorageService {
             throw new IllegalArgumentException("El archivo no puede estar vacío");
         }
         
-        if (archivo.getSize() > maxFileSize) {
+        validarNombreYTamaño(archivo.getOriginalFilename(), archivo.getSize(), maxFileSize);
+    }
+    
+    // Validación común a la subida directa y a la reanudable, cada una con su tamaño máximo
+    public void validarNombreYTamaño(String nombreOriginal, long tamaño, long tamañoMaximo) {
+        if (tamaño > tamañoMaximo) {
             throw new IllegalArgumentException("El archivo excede el tamaño máximo permitido (" + 
-                    (maxFileSize / 1024 / 1024) + " MB)");
+                    (tamañoMaximo / 1024 / 1024) + " MB)");
         }
         
-        String nombreOriginal = archivo.getOriginalFilename();
         if (nombreOriginal == null || nombreOriginal.trim().isEmpty()) {
             throw new IllegalArgumentException("El nombre del archivo no puede estar vacío");
         }
@@ -172,6 +195,22 @@ public class FileStorageService {
         }
     }
     
+    private Material nuevoMaterial(String nombreArchivo, String nombreOriginal, String extension, long tamaño,
+                                   Path rutaArchivo, String descripcion) {
+        Material material = new Material();
+        material.setNombreArchivo(nombreArchivo);
+        material.setNombreOriginal(nombreOriginal);
+        material.setTipoMaterial(determinarTipoMaterial(extension));
+        material.setExtension(extension);
+        material.setTamañoBytes(tamaño);
+        material.setRutaArchivo(rutaArchivo.toString());
+        material.setUrlAcceso(contextPath + "/uploads/" + nombreArchivo);
+        material.setDescripcion(descripcion);
+        material.setFechaSubida(LocalDateTime.now());
+        material.setActivo(true);
+        return material;
+    }
+    
     private boolean esTipoPermitido(String extension) {
         String[] tiposPermitidos = allowedTypes.split(",");
         for (String tipo : tiposPermitidos) {
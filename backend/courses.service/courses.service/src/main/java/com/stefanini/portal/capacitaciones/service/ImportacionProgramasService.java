@@ -0,0 +1,194 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.stefanini.portal.capacitaciones.dto.ProgramaCompletoDTO;
+import com.stefanini.portal.capacitaciones.dto.ResultadoImportacionDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Importación masiva del catálogo. El archivo se lee registro a registro (sin cargarlo completo
+ * en memoria) y los programas se confirman en lotes de tamaño fijo, cada lote en su propia
+ * transacción. Un registro inválido se reporta y no detiene la importación.
+ */
+@Service
+public class ImportacionProgramasService {
+    
+    // Límite de errores detallados en la respuesta; el contador total sigue creciendo
+    private static final int MAX_ERRORES_REPORTADOS = 1000;
+    private static final int MAX_TAMANO_LOTE = 1000;
+    
+    @Value("${app.import.chunk-size:100}")
+    private int tamanoLotePorDefecto;
+    
+    @Autowired
+    private ProgramaCompletoService programaCompletoService;
+    
+    @Autowired
+    private ProgramaCompletoCache programaCompletoCache;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    // Acepta tanto un arreglo JSON como un programa por línea (NDJSON)
+    public ResultadoImportacionDTO importarJson(InputStream entrada, Integer tamanoLote) throws IOException {
+        try (MappingIterator<ProgramaCompletoDTO> registros = objectMapper
+                .readerFor(ProgramaCompletoDTO.class)
+                .readValues(entrada)) {
+            return importar(registros, tamanoLote);
+        }
+    }
+    
+    public ResultadoImportacionDTO importarCsv(InputStream entrada, Integer tamanoLote) {
+        LectorCsvProgramas registros = new LectorCsvProgramas(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        return importar(registros, tamanoLote);
+    }
+    
+    private ResultadoImportacionDTO importar(Iterator<ProgramaCompletoDTO> registros, Integer tamanoLote) {
+        int tamano = resolverTamanoLote(tamanoLote);
+        TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+        ResultadoImportacionDTO resultado = new ResultadoImportacionDTO();
+        long inicio = System.nanoTime();
+        
+        List<RegistroImportacion> lote = new ArrayList<>(tamano);
+        int numeroRegistro = 0;
+        try {
+            while (true) {
+                ProgramaCompletoDTO programa;
+                try {
+                    if (!registros.hasNext()) {
+                        break;
+                    }
+                    numeroRegistro++;
+                    programa = registros.next();
+                } catch (LectorCsvProgramas.RegistroInvalidoException e) {
+                    registrarError(resultado, numeroRegistro, e.getTitulo(), e);
+                    continue;
+                } catch (RuntimeJsonMappingException e) {
+                    // El JSON está bien formado pero el elemento no es un programa válido (p. ej. null):
+                    // el iterador se resincroniza en el elemento siguiente
+                    registrarError(resultado, numeroRegistro, null, e);
+                    continue;
+                } catch (RuntimeException e) {
+                    // Un registro mal formado en JSON/CSV no permite seguir leyendo con seguridad
+                    registrarError(resultado, numeroRegistro, null, e);
+                    resultado.setTotalRegistros(numeroRegistro);
+                    confirmarLote(lote, transaccion, resultado);
+                    return finalizar(resultado, inicio, false);
+                }
+                
+                // Validación barata antes de abrir transacción
+                // (un elemento null de un arreglo JSON llega como programa null)
+                try {
+                    programaCompletoService.validarArbol(programa);
+                    lote.add(new RegistroImportacion(numeroRegistro, programa));
+                } catch (RuntimeException e) {
+                    registrarError(resultado, numeroRegistro, programa != null ? programa.getTitulo() : null, e);
+                }
+                
+                if (lote.size() >= tamano) {
+                    confirmarLote(lote, transaccion, resultado);
+                }
+            }
+            confirmarLote(lote, transaccion, resultado);
+        } finally {
+            resultado.setTotalRegistros(numeroRegistro);
+        }
+        
+        return finalizar(resultado, inicio, true);
+    }
+    
+    private void confirmarLote(List<RegistroImportacion> lote, TransactionTemplate transaccion,
+                               ResultadoImportacionDTO resultado) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        
+        try {
+            transaccion.executeWithoutResult(estado -> {
+                for (RegistroImportacion registro : lote) {
+                    programaCompletoService.persistirProgramaCompleto(registro.programa);
+                }
+            });
+            resultado.setRegistrosImportados(resultado.getRegistrosImportados() + lote.size());
+            resultado.setLotesConfirmados(resultado.getLotesConfirmados() + 1);
+        } catch (RuntimeException e) {
+            // El lote se revirtió completo: reintentar registro a registro para aislar los que fallan
+            entityManager.clear();
+            for (RegistroImportacion registro : lote) {
+                try {
+                    transaccion.executeWithoutResult(estado ->
+                            programaCompletoService.persistirProgramaCompleto(registro.programa));
+                    resultado.setRegistrosImportados(resultado.getRegistrosImportados() + 1);
+                } catch (RuntimeException errorRegistro) {
+                    entityManager.clear();
+                    registrarError(resultado, registro.numero, registro.programa.getTitulo(), errorRegistro);
+                }
+            }
+        }
+        
+        // Liberar las entidades del lote y una sola invalidación de listados por lote
+        entityManager.clear();
+        programaCompletoCache.invalidarConsultas();
+        lote.clear();
+    }
+    
+    private void registrarError(ResultadoImportacionDTO resultado, int numeroRegistro, String titulo, Exception e) {
+        resultado.setRegistrosConError(resultado.getRegistrosConError() + 1);
+        if (resultado.getErrores().size() < MAX_ERRORES_REPORTADOS) {
+            String mensaje = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            resultado.getErrores().add(new ResultadoImportacionDTO.ErrorRegistroDTO(numeroRegistro, titulo, mensaje));
+        }
+    }
+    
+    private ResultadoImportacionDTO finalizar(ResultadoImportacionDTO resultado, long inicio, boolean completado) {
+        long duracionMs = (System.nanoTime() - inicio) / 1_000_000;
+        resultado.setDuracionMs(duracionMs);
+        resultado.setRegistrosPorSegundo(duracionMs == 0
+                ? resultado.getRegistrosImportados()
+                : resultado.getRegistrosImportados() * 1000.0 / duracionMs);
+        resultado.setCompletado(completado);
+        return resultado;
+    }
+    
+    private int resolverTamanoLote(Integer tamanoLote) {
+        if (tamanoLote == null) {
+            return tamanoLotePorDefecto;
+        }
+        if (tamanoLote < 1 || tamanoLote > MAX_TAMANO_LOTE) {
+            throw new IllegalArgumentException("El tamaño de lote debe estar entre 1 y " + MAX_TAMANO_LOTE);
+        }
+        return tamanoLote;
+    }
+    
+    private static final class RegistroImportacion {
+        private final int numero;
+        private final ProgramaCompletoDTO programa;
+        
+        private RegistroImportacion(int numero, ProgramaCompletoDTO programa) {
+            this.numero = numero;
+            this.programa = programa;
+        }
+    }
+}
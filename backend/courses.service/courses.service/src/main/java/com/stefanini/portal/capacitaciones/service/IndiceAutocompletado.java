@@ -0,0 +1,275 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.ProgramaCompletoDTO;
+import com.stefanini.portal.capacitaciones.dto.SugerenciaDTO;
+import com.stefanini.portal.capacitaciones.entity.Leccion;
+import com.stefanini.portal.capacitaciones.entity.Programa;
+import com.stefanini.portal.capacitaciones.entity.Unidad;
+import com.stefanini.portal.capacitaciones.repository.LeccionRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgramaRepository;
+import com.stefanini.portal.capacitaciones.repository.UnidadRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice en memoria de prefijos sobre los títulos de programas, unidades y lecciones para el
+ * autocompletado. Cada palabra normalizada (minúsculas, sin acentos) es una clave de un mapa
+ * ordenado, así que las coincidencias de un prefijo son un rango contiguo y las primeras k se
+ * obtienen sin recorrer el catálogo. Se construye en la primera consulta y luego se actualiza
+ * de forma incremental cuando se confirma una transacción que modifica el catálogo.
+ */
+@Component
+public class IndiceAutocompletado {
+    
+    public static final String TIPO_PROGRAMA = "PROGRAMA";
+    public static final String TIPO_UNIDAD = "UNIDAD";
+    public static final String TIPO_LECCION = "LECCION";
+    
+    // Tope de claves revisadas por consulta para acotar la latencia con prefijos muy comunes
+    private static final int MAX_CLAVES_REVISADAS = 2000;
+    
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final char SEPARADOR_CLAVE = '\u0001';
+    
+    @Autowired
+    private ProgramaRepository programaRepository;
+    
+    @Autowired
+    private UnidadRepository unidadRepository;
+    
+    @Autowired
+    private LeccionRepository leccionRepository;
+    
+    // palabra + SEPARADOR_CLAVE + clave de entrada → sugerencia
+    private final ConcurrentSkipListMap<String, SugerenciaDTO> porPalabra = new ConcurrentSkipListMap<>();
+    
+    // clave de entrada → palabras indexadas, para poder retirar o reemplazar la entrada
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<String>> clavesPorPrograma = new ConcurrentHashMap<>();
+    
+    private volatile boolean construido = false;
+    
+    public List<SugerenciaDTO> sugerir(String prefijo, int limite) {
+        List<String> palabrasConsulta = normalizar(prefijo);
+        if (palabrasConsulta.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (!construido) {
+            construir();
+        }
+        
+        // Recorrer el rango de la palabra más larga (la más selectiva) y filtrar por las demás
+        String palabraGuia = palabrasConsulta.stream()
+                .reduce((a, b) -> b.length() > a.length() ? b : a)
+                .get();
+        NavigableMap<String, SugerenciaDTO> rango = porPalabra.subMap(
+                palabraGuia, true, palabraGuia + Character.MAX_VALUE, true);
+        
+        List<SugerenciaDTO> resultado = new ArrayList<>();
+        Set<String> vistas = new HashSet<>();
+        int revisadas = 0;
+        for (Map.Entry<String, SugerenciaDTO> coincidencia : rango.entrySet()) {
+            if (resultado.size() >= limite || ++revisadas > MAX_CLAVES_REVISADAS) {
+                break;
+            }
+            String clave = coincidencia.getKey().substring(coincidencia.getKey().indexOf(SEPARADOR_CLAVE) + 1);
+            Entrada entrada = entradas.get(clave);
+            if (entrada == null || !vistas.add(clave) || !entrada.contieneTodos(palabrasConsulta)) {
+                continue;
+            }
+            resultado.add(coincidencia.getValue());
+        }
+        return resultado;
+    }
+    
+    // Reemplaza todas las entradas de un programa (programa, unidades y lecciones) al confirmar
+    public void reemplazarPrograma(Integer programaId, List<SugerenciaDTO> sugerencias) {
+        alConfirmar(() -> {
+            retirarProgramaIndexado(programaId);
+            sugerencias.forEach(this::indexar);
+        });
+    }
+    
+    public void reemplazarPrograma(ProgramaCompletoDTO programa) {
+        List<SugerenciaDTO> sugerencias = new ArrayList<>();
+        sugerencias.add(new SugerenciaDTO(TIPO_PROGRAMA, programa.getId(), programa.getId(), programa.getTitulo()));
+        for (ProgramaCompletoDTO.UnidadCompletaDTO unidad : programa.getUnidades()) {
+            sugerencias.add(new SugerenciaDTO(TIPO_UNIDAD, unidad.getId(), programa.getId(), unidad.getTitulo()));
+            for (ProgramaCompletoDTO.LeccionCompletaDTO leccion : unidad.getLecciones()) {
+                sugerencias.add(new SugerenciaDTO(TIPO_LECCION, leccion.getId(), programa.getId(), leccion.getTitulo()));
+            }
+        }
+        reemplazarPrograma(programa.getId(), sugerencias);
+    }
+    
+    public void reemplazarPrograma(Programa programa, List<Unidad> unidades, List<Leccion> lecciones) {
+        List<SugerenciaDTO> sugerencias = new ArrayList<>();
+        sugerencias.add(new SugerenciaDTO(TIPO_PROGRAMA, programa.getId(), programa.getId(), programa.getTitulo()));
+        for (Unidad unidad : unidades) {
+            sugerencias.add(new SugerenciaDTO(TIPO_UNIDAD, unidad.getId(), programa.getId(), unidad.getTitulo()));
+        }
+        for (Leccion leccion : lecciones) {
+            sugerencias.add(new SugerenciaDTO(TIPO_LECCION, leccion.getId(), programa.getId(), leccion.getTitulo()));
+        }
+        reemplazarPrograma(programa.getId(), sugerencias);
+    }
+    
+    public void eliminarPrograma(Integer programaId) {
+        alConfirmar(() -> retirarProgramaIndexado(programaId));
+    }
+    
+    public void indexarLeccion(Integer leccionId, Integer programaId, String titulo) {
+        alConfirmar(() -> indexar(new SugerenciaDTO(TIPO_LECCION, leccionId, programaId, titulo)));
+    }
+    
+    public void eliminarLeccion(Integer leccionId) {
+        alConfirmar(() -> retirar(clave(TIPO_LECCION, leccionId)));
+    }
+    
+    public Map<String, Object> obtenerEstadisticas() {
+        return Map.of(
+                "construido", construido,
+                "entradas", entradas.size(),
+                "claves", porPalabra.size());
+    }
+    
+    // Carga inicial desde la base de datos; las escrituras esperan a que termine
+    private synchronized void construir() {
+        if (construido) {
+            return;
+        }
+        for (Object[] fila : programaRepository.findResumenTitulos()) {
+            indexar(new SugerenciaDTO(TIPO_PROGRAMA, (Integer) fila[0], (Integer) fila[0], (String) fila[1]));
+        }
+        for (Object[] fila : unidadRepository.findResumenTitulos()) {
+            indexar(new SugerenciaDTO(TIPO_UNIDAD, (Integer) fila[0], (Integer) fila[2], (String) fila[1]));
+        }
+        for (Object[] fila : leccionRepository.findResumenTitulos()) {
+            indexar(new SugerenciaDTO(TIPO_LECCION, (Integer) fila[0], (Integer) fila[2], (String) fila[1]));
+        }
+        construido = true;
+    }
+    
+    // Antes de la carga inicial no hay nada que mantener: la carga leerá el estado confirmado
+    private void alConfirmar(Runnable cambio) {
+        Runnable aplicar = () -> {
+            synchronized (this) {
+                if (construido) {
+                    cambio.run();
+                }
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    aplicar.run();
+                }
+            });
+        } else {
+            aplicar.run();
+        }
+    }
+    
+    private void indexar(SugerenciaDTO sugerencia) {
+        String clave = clave(sugerencia.getTipo(), sugerencia.getId());
+        retirar(clave);
+        
+        List<String> palabras = normalizar(sugerencia.getTitulo());
+        for (String palabra : palabras) {
+            porPalabra.put(palabra + SEPARADOR_CLAVE + clave, sugerencia);
+        }
+        entradas.put(clave, new Entrada(sugerencia.getProgramaId(), palabras));
+        if (sugerencia.getProgramaId() != null) {
+            clavesPorPrograma.computeIfAbsent(sugerencia.getProgramaId(), id -> ConcurrentHashMap.newKeySet()).add(clave);
+        }
+    }
+    
+    private void retirar(String clave) {
+        Entrada anterior = entradas.remove(clave);
+        if (anterior == null) {
+            return;
+        }
+        for (String palabra : anterior.palabras) {
+            porPalabra.remove(palabra + SEPARADOR_CLAVE + clave);
+        }
+        if (anterior.programaId != null) {
+            Set<String> claves = clavesPorPrograma.get(anterior.programaId);
+            if (claves != null) {
+                claves.remove(clave);
+            }
+        }
+    }
+    
+    private void retirarProgramaIndexado(Integer programaId) {
+        Set<String> claves = clavesPorPrograma.remove(programaId);
+        if (claves != null) {
+            new ArrayList<>(claves).forEach(this::retirar);
+        }
+    }
+    
+    // El prefijo numérico ordena programas antes que unidades y unidades antes que lecciones
+    private static String clave(String tipo, Integer id) {
+        switch (tipo) {
+            case TIPO_PROGRAMA:
+                return "1:" + id;
+            case TIPO_UNIDAD:
+                return "2:" + id;
+            default:
+                return "3:" + id;
+        }
+    }
+    
+    private static List<String> normalizar(String texto) {
+        if (texto == null) {
+            return new ArrayList<>();
+        }
+        String sinAcentos = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        Set<String> palabras = new LinkedHashSet<>(Arrays.asList(SEPARADORES.split(sinAcentos.toLowerCase())));
+        palabras.remove("");
+        return new ArrayList<>(palabras);
+    }
+    
+    private static final class Entrada {
+        private final Integer programaId;
+        private final List<String> palabras;
+        
+        private Entrada(Integer programaId, List<String> palabras) {
+            this.programaId = programaId;
+            this.palabras = palabras;
+        }
+        
+        // Cada palabra de la consulta debe ser prefijo de alguna palabra del título
+        private boolean contieneTodos(List<String> prefijos) {
+            for (String prefijo : prefijos) {
+                boolean encontrado = false;
+                for (String palabra : palabras) {
+                    if (palabra.startsWith(prefijo)) {
+                        encontrado = true;
+                        break;
+                    }
+                }
+                if (!encontrado) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -6,12 +6,23 @@ import com.stefanini.portal.capacitaciones.entity.Insignia;
 import com.stefanini.portal.capacitaciones.entity.InsigniaOtorgada;
 import com.stefanini.portal.capacitaciones.repository.InsigniaOtorgadaRepository;
 import com.stefanini.portal.capacitaciones.repository.InsigniaRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgramaRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -19,25 +30,51 @@ import java.util.stream.Collectors;
 @Transactional
 public class InsigniaService {
     
+    // Usuarios por llamada al otorgamiento por cohorte (todos viajan en un solo parámetro)
+    private static final int MAX_USUARIOS_COHORTE = 20000;
+    
+    // Columnas y conflicto comunes a los otorgamientos en una sentencia; la restricción única descarta
+    // a quien ya tenía la insignia
+    private static final String INSERTAR_OTORGADAS =
+            "INSERT INTO capacitaciones.insignias_otorgadas (usuario_id, insignia_id, fecha_otorgada) ";
+    private static final String SIN_DUPLICADOS =
+            "ON CONFLICT (usuario_id, insignia_id) DO NOTHING RETURNING id, usuario_id, insignia_id";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
     @Autowired
     private InsigniaRepository insigniaRepository;
     
     @Autowired
     private InsigniaOtorgadaRepository insigniaOtorgadaRepository;
     
+    @Autowired
+    private NotificadorProgreso notificadorProgreso;
+    
+    @Autowired
+    private ClasificacionesService clasificacionesService;
+    
+    @Autowired
+    private ProgramaRepository programaRepository;
+    
+    @Autowired
+    private CatalogoInsignias catalogoInsignias;
+    
     // Obtener todas las insignias
+    @Transactional(readOnly = true)
     public List<InsigniaDTO> getAllInsignias() {
-        return insigniaRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return catalogoInsignias.listar();
     }
     
     // Obtener insignias por usuario
+    @Transactional(readOnly = true)
     public List<InsigniaOtorgadaDTO> getInsigniasByUsuarioId(UUID usuarioId) {
-        List<InsigniaOtorgada> insignias = insigniaOtorgadaRepository.findByUsuarioId(usuarioId);
-        return insignias.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<InsigniaOtorgadaDTO> otorgadas = insigniaOtorgadaRepository.findResumenByUsuarioId(usuarioId);
+        for (InsigniaOtorgadaDTO otorgada : otorgadas) {
+            otorgada.setInsignia(catalogoInsignias.buscar(otorgada.getInsigniaId()));
+        }
+        return otorgadas;
     }
     
     // Contar insignias por usuario
@@ -62,7 +99,76 @@ public class InsigniaService {
         InsigniaOtorgada insigniaOtorgada = new InsigniaOtorgada(usuarioId, insignia);
         insigniaOtorgada = insigniaOtorgadaRepository.save(insigniaOtorgada);
         
-        return convertToDTO(insigniaOtorgada);
+        InsigniaOtorgadaDTO dto = convertToDTO(insigniaOtorgada);
+        notificadorProgreso.publicarInsignia(dto);
+        clasificacionesService.sumarInsignias(usuarioId, 1);
+        return dto;
+    }
+    
+    // Otorga por lotes las insignias que ganó cada usuario con una sola sentencia; omite las que ya tenía
+    // o que ya no existen. Un otorgamiento concurrente del mismo par lo descarta la restricción única en
+    // lugar de hacer fallar el lote
+    public List<InsigniaOtorgadaDTO> otorgarInsigniasLote(Map<UUID, Set<Long>> insigniasPorUsuario) {
+        // Pares en orden de (usuario, insignia), el mismo para todos los lotes que se solapan
+        List<String> usuarios = new ArrayList<>();
+        List<String> insignias = new ArrayList<>();
+        insigniasPorUsuario.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.comparing(UUID::toString)))
+                .forEach(entrada -> entrada.getValue().stream().sorted().forEach(insigniaId -> {
+                    usuarios.add(entrada.getKey().toString());
+                    insignias.add(insigniaId.toString());
+                }));
+        if (usuarios.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        // Dos listas paralelas, cada una en un parámetro de texto; el JOIN omite las insignias borradas
+        Query consulta = entityManager.createNativeQuery(INSERTAR_OTORGADAS +
+                "SELECT CAST(u.usuario AS uuid), i.id, :fecha " +
+                "FROM unnest(string_to_array(CAST(:usuarios AS text), ','), " +
+                "string_to_array(CAST(:insignias AS text), ',')) AS u (usuario, insignia) " +
+                "JOIN capacitaciones.insignias i ON i.id = CAST(u.insignia AS bigint) " + SIN_DUPLICADOS);
+        consulta.setParameter("usuarios", String.join(",", usuarios));
+        consulta.setParameter("insignias", String.join(",", insignias));
+        return publicarOtorgadas(consulta);
+    }
+    
+    // Otorga la insignia a una lista de usuarios con una sola sentencia; devuelve cuántos la recibieron
+    public int otorgarInsigniaCohorte(Long insigniaId, Collection<UUID> usuarioIds) {
+        Insignia insignia = insigniaRepository.findById(insigniaId)
+                .orElseThrow(() -> new RuntimeException("Insignia no encontrada"));
+        Set<UUID> usuarios = new LinkedHashSet<>(usuarioIds);
+        if (usuarios.size() > MAX_USUARIOS_COHORTE) {
+            throw new IllegalArgumentException("La cohorte no puede superar " + MAX_USUARIOS_COHORTE + " usuarios");
+        }
+        if (usuarios.isEmpty()) {
+            return 0;
+        }
+        
+        // Los ids viajan como un texto separado por comas: un parámetro, sin importar el tamaño de la cohorte
+        String lista = usuarios.stream().map(UUID::toString).collect(Collectors.joining(","));
+        Query consulta = entityManager.createNativeQuery(INSERTAR_OTORGADAS +
+                "SELECT CAST(u.id AS uuid), :insigniaId, :fecha " +
+                "FROM unnest(string_to_array(CAST(:usuarios AS text), ',')) AS u (id) " + SIN_DUPLICADOS);
+        consulta.setParameter("usuarios", lista);
+        return registrarOtorgadas(insignia, consulta);
+    }
+    
+    // Otorga la insignia a quienes completaron todas las lecciones del programa, en una sola sentencia
+    public int otorgarInsigniaPorPrograma(Long insigniaId, Integer programaId) {
+        Insignia insignia = insigniaRepository.findById(insigniaId)
+                .orElseThrow(() -> new RuntimeException("Insignia no encontrada"));
+        if (!programaRepository.existsById(programaId)) {
+            throw new RuntimeException("Programa no encontrado");
+        }
+        
+        // Misma condición que ProgresoProgramaRepository.COMPLETADO
+        Query consulta = entityManager.createNativeQuery(INSERTAR_OTORGADAS +
+                "SELECT a.usuario_id, :insigniaId, :fecha FROM capacitaciones.progreso_programas a " +
+                "WHERE a.programa_id = :programaId AND a.fecha_completado IS NOT NULL " +
+                SIN_DUPLICADOS);
+        consulta.setParameter("programaId", programaId);
+        return registrarOtorgadas(insignia, consulta);
     }
     
     // Crear nueva insignia
@@ -74,9 +180,38 @@ public class InsigniaService {
         );
         
         insignia = insigniaRepository.save(insignia);
+        catalogoInsignias.invalidar();
         return convertToDTO(insignia);
     }
     
+    // Ejecuta el INSERT ... RETURNING y avisa de cada insignia nueva a clasificaciones y SSE
+    private int registrarOtorgadas(Insignia insignia, Query consulta) {
+        consulta.setParameter("insigniaId", insignia.getId());
+        return publicarOtorgadas(consulta).size();
+    }
+    
+    // Ejecuta un INSERT ... RETURNING de otorgamientos con la fecha actual; avisa y actualiza la
+    // clasificación solo por las filas que realmente se insertaron
+    private List<InsigniaOtorgadaDTO> publicarOtorgadas(Query consulta) {
+        LocalDateTime fecha = LocalDateTime.now();
+        consulta.setParameter("fecha", fecha);
+        @SuppressWarnings("unchecked")
+        List<Object[]> filas = consulta.getResultList();
+        
+        List<InsigniaOtorgadaDTO> resultado = new ArrayList<>();
+        for (Object[] fila : filas) {
+            UUID usuarioId = (UUID) fila[1];
+            Long insigniaId = ((Number) fila[2]).longValue();
+            InsigniaOtorgadaDTO dto = new InsigniaOtorgadaDTO(((Number) fila[0]).longValue(), usuarioId,
+                    insigniaId, fecha);
+            dto.setInsignia(catalogoInsignias.buscar(insigniaId));
+            notificadorProgreso.publicarInsignia(dto);
+            clasificacionesService.sumarInsignias(usuarioId, 1);
+            resultado.add(dto);
+        }
+        return resultado;
+    }
+    
     // Convertir entidad a DTO
     private InsigniaDTO convertToDTO(Insignia insignia) {
         return new InsigniaDTO(
@@ -1,6 +1,7 @@
 package com.stefanini.portal.capacitaciones.service;
 
 import com.stefanini.portal.capacitaciones.dto.LeccionDTO;
+import com.stefanini.portal.capacitaciones.dto.VersionRecursoDTO;
 import com.stefanini.portal.capacitaciones.entity.Leccion;
 import com.stefanini.portal.capacitaciones.entity.Unidad;
 import com.stefanini.portal.capacitaciones.entity.Material;
@@ -24,6 +25,14 @@ public class LeccionService {
     @Autowired
     private UnidadRepository unidadRepository;
     
+    @Autowired
+    private ProgramaCompletoCache programaCompletoCache;
+    
+    @Autowired
+    private IndiceAutocompletado indiceAutocompletado;
+    
+    @Autowired
+    private ProgresoAgregadoService progresoAgregadoService;
     
     public LeccionDTO crearLeccion(LeccionDTO leccionDTO) {
         Unidad unidad = unidadRepository.findById(leccionDTO.getUnidadId())
@@ -38,26 +47,25 @@ public class LeccionService {
         leccion.setUrlMaterial(leccionDTO.getUrlMaterial());
         
         Leccion leccionGuardada = leccionRepository.save(leccion);
+        progresoAgregadoService.leccionesAgregadas(unidad.getPrograma().getId());
+        programaCompletoCache.invalidarArbol(unidad.getPrograma().getId());
+        indiceAutocompletado.indexarLeccion(leccionGuardada.getId(), unidad.getPrograma().getId(), leccionGuardada.getTitulo());
         return convertirADTO(leccionGuardada);
     }
     
     @Transactional(readOnly = true)
     public List<LeccionDTO> obtenerLeccionesPorUnidad(Integer unidadId) {
-        return leccionRepository.findByUnidadIdOrderByOrden(unidadId).stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+        return leccionRepository.findDTOByUnidadId(unidadId);
     }
     
     @Transactional(readOnly = true)
     public Optional<LeccionDTO> obtenerLeccionPorId(Integer id) {
-        return leccionRepository.findById(id)
-                .map(this::convertirADTO);
+        return leccionRepository.findDTOById(id);
     }
     
     @Transactional(readOnly = true)
     public Optional<LeccionDTO> obtenerLeccionCompleta(Integer id) {
-        return leccionRepository.findByIdWithUnidadAndPrograma(id)
-                .map(this::convertirADTO);
+        return leccionRepository.findDTOById(id);
     }
     
     public Optional<LeccionDTO> actualizarLeccion(Integer id, LeccionDTO leccionDTO) {
@@ -69,37 +77,59 @@ public class LeccionService {
                     leccion.setUrlMaterial(leccionDTO.getUrlMaterial());
                     
                     Leccion leccionActualizada = leccionRepository.save(leccion);
+                    Integer programaId = leccion.getUnidad().getPrograma().getId();
+                    programaCompletoCache.invalidarArbol(programaId);
+                    indiceAutocompletado.indexarLeccion(id, programaId, leccionActualizada.getTitulo());
                     return convertirADTO(leccionActualizada);
                 });
     }
     
     public boolean eliminarLeccion(Integer id) {
-        if (leccionRepository.existsById(id)) {
-            leccionRepository.deleteById(id);
-            return true;
-        }
-        return false;
+        return leccionRepository.findById(id)
+                .map(leccion -> {
+                    Integer programaId = leccion.getUnidad().getPrograma().getId();
+                    leccionRepository.delete(leccion);
+                    
+                    // El progreso de la lección se borra en cascada: recalcular los agregados del programa
+                    leccionRepository.flush();
+                    progresoAgregadoService.recalcularPrograma(programaId);
+                    programaCompletoCache.invalidarArbol(programaId);
+                    indiceAutocompletado.eliminarLeccion(id);
+                    return true;
+                })
+                .orElse(false);
     }
     
     @Transactional(readOnly = true)
     public List<LeccionDTO> buscarPorTipoMaterial(String tipoMaterial) {
-        return leccionRepository.findByTipoMaterial(tipoMaterial).stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+        return leccionRepository.findDTOByTipoMaterial(tipoMaterial);
     }
     
     @Transactional(readOnly = true)
     public List<LeccionDTO> buscarPorTitulo(String titulo) {
-        return leccionRepository.findByTituloContainingIgnoreCase(titulo).stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+        return leccionRepository.findDTOByTituloContainingIgnoreCase(titulo);
     }
     
     @Transactional(readOnly = true)
     public List<LeccionDTO> obtenerLeccionesPorPrograma(Integer programaId) {
-        return leccionRepository.findByProgramaId(programaId).stream()
-                .map(this::convertirADTO)
-                .collect(Collectors.toList());
+        return leccionRepository.findDTOByProgramaId(programaId);
+    }
+    
+    // Versiones para GET condicionales. Los listados por unidad y por programa solo dependen de
+    // sus lecciones, así que se versionan con ellas sin tocar la fila del programa
+    @Transactional(readOnly = true)
+    public Optional<VersionRecursoDTO> obtenerVersionLeccion(Integer id) {
+        return leccionRepository.findVersionById(id);
+    }
+    
+    @Transactional(readOnly = true)
+    public Optional<VersionRecursoDTO> obtenerVersionUnidad(Integer unidadId) {
+        return Optional.of(VersionRecursoDTO.combinar(leccionRepository.findVersionByUnidadId(unidadId).get(0)));
+    }
+    
+    @Transactional(readOnly = true)
+    public Optional<VersionRecursoDTO> obtenerVersionPrograma(Integer programaId) {
+        return Optional.of(VersionRecursoDTO.combinar(leccionRepository.findVersionByProgramaId(programaId).get(0)));
     }
     
     @Transactional(readOnly = true)
@@ -130,6 +160,9 @@ public class LeccionService {
         }
         
         List<Leccion> leccionesActualizadas = leccionRepository.saveAll(lecciones);
+        if (!lecciones.isEmpty()) {
+            programaCompletoCache.invalidarArbol(lecciones.get(0).getUnidad().getPrograma().getId());
+        }
         return leccionesActualizadas.stream()
                 .map(this::convertirADTO)
                 .collect(Collectors.toList());
@@ -149,35 +182,22 @@ public class LeccionService {
     
     @Transactional(readOnly = true)
     public List<LeccionDTO> obtenerLeccionesCompletasPorUnidad(Integer unidadId) {
-        return leccionRepository.findByUnidadIdOrderByOrden(unidadId).stream()
-                .map(this::convertirADTOConMaterial)
+        return leccionRepository.findDTOConMaterialByUnidadId(unidadId).stream()
+                .map(this::completarMaterial)
                 .collect(Collectors.toList());
     }
     
     @Transactional(readOnly = true)
     public Optional<LeccionDTO> obtenerLeccionCompletaConMaterial(Integer id) {
-        return leccionRepository.findById(id)
-                .map(this::convertirADTOConMaterial);
+        return leccionRepository.findDTOConMaterialById(id)
+                .map(this::completarMaterial);
     }
     
-    private LeccionDTO convertirADTOConMaterial(Leccion leccion) {
-        LeccionDTO dto = convertirADTO(leccion);
-        
-        // Si la lección tiene material asociado, agregar información completa
-        if (leccion.getMaterial() != null) {
-            Material material = leccion.getMaterial();
-            dto.setMaterialId(material.getId());
-            dto.setMaterialNombreOriginal(material.getNombreOriginal());
-            dto.setMaterialTipoMaterial(material.getTipoMaterial());
-            dto.setMaterialExtension(material.getExtension());
-            dto.setMaterialTamañoBytes(material.getTamañoBytes());
-            dto.setMaterialTamañoFormateado(material.getTamañoFormateado());
-            dto.setMaterialUrlAcceso(material.getUrlAcceso());
-            dto.setMaterialDescripcion(material.getDescripcion());
-            dto.setMaterialS3Uploaded(material.getS3Uploaded());
-            dto.setMaterialS3Key(material.getS3Key());
+    // La proyección trae los datos del material; el tamaño legible se calcula aquí
+    private LeccionDTO completarMaterial(LeccionDTO dto) {
+        if (dto.getMaterialId() != null) {
+            dto.setMaterialTamañoFormateado(Material.formatearTamaño(dto.getMaterialTamañoBytes()));
         }
-        
         return dto;
     }
 }
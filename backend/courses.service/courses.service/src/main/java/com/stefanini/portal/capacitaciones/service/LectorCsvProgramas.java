@@ -0,0 +1,186 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.ProgramaCompletoDTO;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Lee un CSV de catálogo fila a fila y agrupa las filas consecutivas de un mismo programa
+ * (y de una misma unidad) en un ProgramaCompletoDTO. Solo mantiene en memoria el programa en curso.
+ *
+ * Columnas (por nombre en la cabecera): programa_titulo, programa_descripcion, area_conocimiento,
+ * unidad_titulo, unidad_orden, leccion_titulo, leccion_orden, tipo_material, url_material, material_id.
+ */
+class LectorCsvProgramas implements Iterator<ProgramaCompletoDTO> {
+    
+    private final BufferedReader lector;
+    private final Map<String, Integer> columnas = new HashMap<>();
+    private List<String> filaPendiente;
+    
+    LectorCsvProgramas(Reader entrada) {
+        this.lector = new BufferedReader(entrada);
+        List<String> cabecera = leerFila();
+        if (cabecera == null) {
+            throw new IllegalArgumentException("El archivo CSV está vacío");
+        }
+        for (int i = 0; i < cabecera.size(); i++) {
+            columnas.put(cabecera.get(i).replace("\uFEFF", "").trim().toLowerCase(), i);
+        }
+        if (!columnas.containsKey("programa_titulo")) {
+            throw new IllegalArgumentException("La cabecera del CSV debe incluir la columna programa_titulo");
+        }
+        this.filaPendiente = leerFilaNoVacia();
+    }
+    
+    @Override
+    public boolean hasNext() {
+        return filaPendiente != null;
+    }
+    
+    @Override
+    public ProgramaCompletoDTO next() {
+        if (filaPendiente == null) {
+            throw new NoSuchElementException();
+        }
+        
+        List<String> primera = filaPendiente;
+        String tituloPrograma = valor(primera, "programa_titulo");
+        ProgramaCompletoDTO programa = new ProgramaCompletoDTO(tituloPrograma,
+                valor(primera, "programa_descripcion"), valor(primera, "area_conocimiento"));
+        ProgramaCompletoDTO.UnidadCompletaDTO unidadActual = null;
+        String error = null;
+        
+        // Consumir todas las filas consecutivas del mismo programa, aunque alguna sea inválida, para
+        // que la lectura siga en el programa siguiente
+        List<String> fila = primera;
+        while (fila != null && Objects.equals(valor(fila, "programa_titulo"), tituloPrograma)) {
+            try {
+                String tituloUnidad = valor(fila, "unidad_titulo");
+                if (tituloUnidad != null) {
+                    if (unidadActual == null || !tituloUnidad.equals(unidadActual.getTitulo())) {
+                        unidadActual = new ProgramaCompletoDTO.UnidadCompletaDTO(tituloUnidad, entero(fila, "unidad_orden"));
+                        programa.getUnidades().add(unidadActual);
+                    }
+                    String tituloLeccion = valor(fila, "leccion_titulo");
+                    if (tituloLeccion != null) {
+                        ProgramaCompletoDTO.LeccionCompletaDTO leccion = new ProgramaCompletoDTO.LeccionCompletaDTO(
+                                tituloLeccion, entero(fila, "leccion_orden"),
+                                valor(fila, "tipo_material"), valor(fila, "url_material"));
+                        leccion.setMaterialId(entero(fila, "material_id"));
+                        unidadActual.getLecciones().add(leccion);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                if (error == null) {
+                    error = e.getMessage();
+                }
+            }
+            fila = leerFilaNoVacia();
+        }
+        filaPendiente = fila;
+        
+        if (error != null) {
+            throw new RegistroInvalidoException(tituloPrograma, error);
+        }
+        return programa;
+    }
+    
+    // Programa con algún valor inválido; sus filas ya se consumieron y la lectura puede continuar
+    static class RegistroInvalidoException extends IllegalArgumentException {
+        
+        private final String titulo;
+        
+        RegistroInvalidoException(String titulo, String mensaje) {
+            super(mensaje);
+            this.titulo = titulo;
+        }
+        
+        String getTitulo() {
+            return titulo;
+        }
+    }
+    
+    private String valor(List<String> fila, String columna) {
+        Integer indice = columnas.get(columna);
+        if (indice == null || indice >= fila.size()) {
+            return null;
+        }
+        String valor = fila.get(indice).trim();
+        return valor.isEmpty() ? null : valor;
+    }
+    
+    private Integer entero(List<String> fila, String columna) {
+        String valor = valor(fila, columna);
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor numérico inválido en la columna " + columna + ": " + valor);
+        }
+    }
+    
+    private List<String> leerFilaNoVacia() {
+        List<String> fila = leerFila();
+        while (fila != null && fila.size() == 1 && fila.get(0).isBlank()) {
+            fila = leerFila();
+        }
+        return fila;
+    }
+    
+    // Lee una fila RFC 4180: campos entre comillas pueden contener comas, saltos de línea y "" escapadas
+    private List<String> leerFila() {
+        try {
+            int c = lector.read();
+            if (c == -1) {
+                return null;
+            }
+            
+            List<String> campos = new ArrayList<>();
+            StringBuilder campo = new StringBuilder();
+            boolean entreComillas = false;
+            while (c != -1) {
+                char caracter = (char) c;
+                if (entreComillas) {
+                    if (caracter == '"') {
+                        lector.mark(1);
+                        int siguiente = lector.read();
+                        if (siguiente == '"') {
+                            campo.append('"');
+                        } else {
+                            entreComillas = false;
+                            lector.reset();
+                        }
+                    } else {
+                        campo.append(caracter);
+                    }
+                } else if (caracter == '"') {
+                    entreComillas = true;
+                } else if (caracter == ',') {
+                    campos.add(campo.toString());
+                    campo.setLength(0);
+                } else if (caracter == '\n') {
+                    break;
+                } else if (caracter != '\r') {
+                    campo.append(caracter);
+                }
+                c = lector.read();
+            }
+            campos.add(campo.toString());
+            return campos;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.InsigniaOtorgadaDTO;
+import com.stefanini.portal.capacitaciones.dto.ProgresoProgramaDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Conexiones Server-Sent Events abiertas por usuario y envío de los cambios de progreso por
+ * programa y de las insignias otorgadas. Cada conexión es una petición asíncrona del contenedor:
+ * mientras no hay eventos no ocupa ningún hilo. Los eventos se publican al confirmar la transacción
+ * que los produjo y se envían desde un pool pequeño, así un cliente lento no retrasa la escritura.
+ * Un comentario periódico mantiene vivas las conexiones y descarta las cerradas por el cliente.
+ */
+@Component
+public class NotificadorProgreso {
+    
+    @Value("${app.sse.timeout-ms:1800000}")
+    private long timeoutMs;
+    
+    @Value("${app.sse.max-connections-per-user:5}")
+    private int maxConexionesPorUsuario;
+    
+    @Value("${app.sse.dispatch-threads:4}")
+    private int hilosEnvio;
+    
+    // Envíos en espera; por encima se descartan (el cliente puede releer el estado completo)
+    @Value("${app.sse.max-pending-events:10000}")
+    private int maxEnviosPendientes;
+    
+    @Autowired
+    private ProgresoAgregadoService progresoAgregadoService;
+    
+    private final Map<UUID, List<SseEmitter>> conexiones = new ConcurrentHashMap<>();
+    
+    private ThreadPoolExecutor envios;
+    
+    private final AtomicLong enviados = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    
+    @PostConstruct
+    public void iniciar() {
+        envios = new ThreadPoolExecutor(hilosEnvio, hilosEnvio, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(maxEnviosPendientes), tarea -> {
+                    Thread hilo = new Thread(tarea, "sse-envio");
+                    hilo.setDaemon(true);
+                    return hilo;
+                }, (tarea, ejecutor) -> descartados.incrementAndGet());
+    }
+    
+    // Antes de detener el servidor: el apagado ordenado esperaría a que el cliente cerrara cada conexión
+    @EventListener(ContextClosedEvent.class)
+    public void cerrarConexiones() {
+        conexiones.values().forEach(emisores -> emisores.forEach(SseEmitter::complete));
+        conexiones.clear();
+    }
+    
+    @PreDestroy
+    public void detener() {
+        envios.shutdownNow();
+    }
+    
+    public SseEmitter suscribir(UUID usuarioId) {
+        SseEmitter emisor = new SseEmitter(timeoutMs);
+        List<SseEmitter> sobrantes = new ArrayList<>();
+        // Dentro de compute para no añadir a una lista que quitar() acaba de retirar del mapa
+        conexiones.compute(usuarioId, (clave, emisores) -> {
+            List<SseEmitter> lista = emisores != null ? emisores : new CopyOnWriteArrayList<>();
+            lista.add(emisor);
+            // Demasiadas pestañas del mismo usuario: se cierran las conexiones más antiguas
+            while (lista.size() > maxConexionesPorUsuario) {
+                sobrantes.add(lista.remove(0));
+            }
+            return lista;
+        });
+        sobrantes.forEach(SseEmitter::complete);
+        
+        emisor.onCompletion(() -> quitar(usuarioId, emisor));
+        emisor.onTimeout(() -> quitar(usuarioId, emisor));
+        emisor.onError(error -> quitar(usuarioId, emisor));
+        enviar(usuarioId, emisor, () -> SseEmitter.event().name("conectado").data(Map.of("usuario_id", usuarioId)));
+        return emisor;
+    }
+    
+    // Programas del usuario cuyo progreso cambió en la transacción en curso
+    public void publicarProgreso(UUID usuarioId, Collection<Long> programaIds) {
+        if (!conexiones.containsKey(usuarioId) || programaIds.isEmpty()) {
+            return;
+        }
+        Set<Long> programas = Set.copyOf(programaIds);
+        alConfirmar(() -> envios.execute(() -> enviarProgreso(usuarioId, programas)));
+    }
+    
+    public void publicarInsignia(InsigniaOtorgadaDTO insignia) {
+        UUID usuarioId = insignia.getUsuarioId();
+        if (!conexiones.containsKey(usuarioId)) {
+            return;
+        }
+        alConfirmar(() -> envios.execute(
+                () -> enviarATodos(usuarioId, () -> SseEmitter.event().name("insignia").data(insignia))));
+    }
+    
+    // Los latidos también salen por el pool de envíos: un cliente lento no bloquea el hilo del
+    // planificador que comparten las demás tareas programadas
+    @Scheduled(fixedDelayString = "${app.sse.heartbeat-interval-ms:25000}")
+    public void enviarLatidos() {
+        for (UUID usuarioId : conexiones.keySet()) {
+            envios.execute(() -> enviarATodos(usuarioId, () -> SseEmitter.event().comment("latido")));
+        }
+    }
+    
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("usuarios", conexiones.size());
+        estadisticas.put("conexiones", conexiones.values().stream().mapToInt(List::size).sum());
+        estadisticas.put("envios_pendientes", envios.getQueue().size());
+        estadisticas.put("enviados", enviados.get());
+        estadisticas.put("descartados", descartados.get());
+        return estadisticas;
+    }
+    
+    // Lee los agregados ya confirmados y envía solo los programas que cambiaron
+    private void enviarProgreso(UUID usuarioId, Set<Long> programaIds) {
+        if (!conexiones.containsKey(usuarioId)) {
+            return;
+        }
+        for (ProgresoProgramaDTO programa : progresoAgregadoService.obtenerProgresoProgramas(usuarioId)) {
+            if (programaIds.contains(programa.getProgramaId())) {
+                enviarATodos(usuarioId, () -> SseEmitter.event().name("progreso").data(programa));
+            }
+        }
+    }
+    
+    // Cada envío necesita su propio evento: el builder no se puede reutilizar entre conexiones
+    private void enviarATodos(UUID usuarioId, Supplier<SseEmitter.SseEventBuilder> evento) {
+        List<SseEmitter> emisores = conexiones.get(usuarioId);
+        if (emisores != null) {
+            for (SseEmitter emisor : emisores) {
+                enviar(usuarioId, emisor, evento);
+            }
+        }
+    }
+    
+    private void enviar(UUID usuarioId, SseEmitter emisor, Supplier<SseEmitter.SseEventBuilder> evento) {
+        try {
+            emisor.send(evento.get());
+            enviados.incrementAndGet();
+        } catch (IOException | IllegalStateException e) {
+            // Conexión cerrada por el cliente o ya completada
+            quitar(usuarioId, emisor);
+        }
+    }
+    
+    private void quitar(UUID usuarioId, SseEmitter emisor) {
+        conexiones.computeIfPresent(usuarioId, (clave, emisores) -> {
+            emisores.remove(emisor);
+            return emisores.isEmpty() ? null : emisores;
+        });
+    }
+    
+    private void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.ProgramaCompletoDTO;
+import com.stefanini.portal.capacitaciones.entity.Programa;
+import com.stefanini.portal.capacitaciones.repository.LeccionRepository;
+import com.stefanini.portal.capacitaciones.repository.UnidadRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Carga el árbol programa → unidades → lecciones (con material) de un conjunto de programas
+ * con un número fijo de consultas por lote, en lugar de una consulta por programa y por unidad.
+ * Unidades y lecciones se leen como proyecciones y se copian directo a los DTOs, sin pasar por
+ * entidades administradas.
+ */
+@Component
+@Transactional(readOnly = true)
+public class ProgramaArbolLoader {
+    
+    // Tamaño máximo de las listas IN enviadas a la base de datos
+    private static final int TAMANO_LOTE = 500;
+    
+    @Autowired
+    private UnidadRepository unidadRepository;
+    
+    @Autowired
+    private LeccionRepository leccionRepository;
+    
+    public List<ProgramaCompletoDTO> cargarArboles(List<Programa> programas) {
+        if (programas.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        // 1. Unidades de todos los programas, agrupadas por programa
+        List<Integer> programaIds = programas.stream()
+                .map(Programa::getId)
+                .collect(Collectors.toList());
+        Map<Integer, List<Object[]>> unidadesPorPrograma = cargarPorLotes(programaIds,
+                unidadRepository::findProyeccionByProgramaIdIn);
+        
+        // 2. Lecciones de todas las unidades, agrupadas por unidad
+        List<Integer> unidadIds = unidadesPorPrograma.values().stream()
+                .flatMap(List::stream)
+                .map(fila -> (Integer) fila[1])
+                .collect(Collectors.toList());
+        Map<Integer, List<Object[]>> leccionesPorUnidad = cargarPorLotes(unidadIds,
+                leccionRepository::findProyeccionByUnidadIdIn);
+        
+        // 3. Armar el grafo de DTOs en memoria
+        return programas.stream()
+                .map(programa -> convertirAProgramaCompletoDTO(programa,
+                        unidadesPorPrograma.getOrDefault(programa.getId(), Collections.emptyList()),
+                        leccionesPorUnidad))
+                .collect(Collectors.toList());
+    }
+    
+    public ProgramaCompletoDTO cargarArbol(Programa programa) {
+        return cargarArboles(List.of(programa)).get(0);
+    }
+    
+    // Ejecuta la consulta por lotes de ids y agrupa las filas por su primera columna (id del padre),
+    // conservando el orden de la consulta
+    private Map<Integer, List<Object[]>> cargarPorLotes(List<Integer> ids,
+                                                        Function<List<Integer>, List<Object[]>> consulta) {
+        Map<Integer, List<Object[]>> resultado = new HashMap<>();
+        for (int inicio = 0; inicio < ids.size(); inicio += TAMANO_LOTE) {
+            List<Integer> lote = ids.subList(inicio, Math.min(inicio + TAMANO_LOTE, ids.size()));
+            for (Object[] fila : consulta.apply(lote)) {
+                resultado.computeIfAbsent((Integer) fila[0], k -> new ArrayList<>()).add(fila);
+            }
+        }
+        return resultado;
+    }
+    
+    private ProgramaCompletoDTO convertirAProgramaCompletoDTO(Programa programa, List<Object[]> unidades,
+                                                              Map<Integer, List<Object[]>> leccionesPorUnidad) {
+        ProgramaCompletoDTO dto = new ProgramaCompletoDTO();
+        dto.setId(programa.getId());
+        dto.setTitulo(programa.getTitulo());
+        dto.setDescripcion(programa.getDescripcion());
+        dto.setAreaConocimiento(programa.getAreaConocimiento());
+        dto.setFechaCreacion(programa.getFechaCreacion());
+        dto.setUnidades(unidades.stream()
+                .map(unidad -> convertirAUnidadCompletaDTO(unidad,
+                        leccionesPorUnidad.getOrDefault((Integer) unidad[1], Collections.emptyList())))
+                .collect(Collectors.toList()));
+        return dto;
+    }
+    
+    // Fila de unidad: programaId, id, titulo, orden
+    private ProgramaCompletoDTO.UnidadCompletaDTO convertirAUnidadCompletaDTO(Object[] unidad, List<Object[]> lecciones) {
+        ProgramaCompletoDTO.UnidadCompletaDTO dto = new ProgramaCompletoDTO.UnidadCompletaDTO();
+        dto.setId((Integer) unidad[1]);
+        dto.setTitulo((String) unidad[2]);
+        dto.setOrden((Integer) unidad[3]);
+        dto.setLecciones(lecciones.stream()
+                .map(this::convertirALeccionCompletaDTO)
+                .collect(Collectors.toList()));
+        return dto;
+    }
+    
+    // Fila de lección: unidadId, id, titulo, orden, tipoMaterial, urlMaterial, materialId
+    private ProgramaCompletoDTO.LeccionCompletaDTO convertirALeccionCompletaDTO(Object[] leccion) {
+        ProgramaCompletoDTO.LeccionCompletaDTO dto = new ProgramaCompletoDTO.LeccionCompletaDTO();
+        dto.setId((Integer) leccion[1]);
+        dto.setTitulo((String) leccion[2]);
+        dto.setOrden((Integer) leccion[3]);
+        dto.setTipoMaterial((String) leccion[4]);
+        dto.setUrlMaterial((String) leccion[5]);
+        dto.setMaterialId((Integer) leccion[6]);
+        return dto;
+    }
+}
@@ -0,0 +1,224 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.ProgramaCompletoDTO;
+import com.stefanini.portal.capacitaciones.dto.VersionRecursoDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Caché en memoria de los árboles ProgramaCompletoDTO ya armados y de los ids devueltos por
+ * cada consulta de listado. Acotada por número de entradas (LRU) y por tiempo de vida.
+ * Las invalidaciones se aplican de inmediato y de nuevo al confirmar la transacción, y
+ * descartan cualquier carga concurrente iniciada antes de ellas.
+ * Las mismas invalidaciones fijan la versión del catálogo y la de cada árbol que usan los GET
+ * condicionales, así que responder 304 no consulta la base de datos.
+ */
+@Component
+public class ProgramaCompletoCache {
+    
+    @Value("${app.cache.catalogo.max-entries:1000}")
+    private int maxEntradas;
+    
+    @Value("${app.cache.catalogo.ttl-seconds:600}")
+    private long ttlSegundos;
+    
+    private final Map<Integer, Entrada<ProgramaCompletoDTO>> arboles = crearMapaLru();
+    private final Map<String, Entrada<List<Integer>>> consultas = crearMapaLru();
+    
+    // Se incrementa en cada invalidación; una carga iniciada con una generación anterior no se guarda
+    private final AtomicLong generacion = new AtomicLong();
+    
+    // Las versiones solo valen en esta instancia: el arranque forma parte del ETag para que otra
+    // instancia o un reinicio no reconozcan una versión con el mismo número
+    private final long arranque = System.currentTimeMillis();
+    
+    // Última invalidación de cualquier tipo (versión de los listados), la última que vació todos los
+    // árboles y la última de cada árbol invalidado desde entonces
+    private volatile Marca marcaCatalogo = new Marca(0, LocalDateTime.now());
+    private volatile Marca marcaArboles = marcaCatalogo;
+    private final Map<Integer, Marca> marcasPorArbol = new ConcurrentHashMap<>();
+    
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong expulsiones = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+    
+    public long generacionActual() {
+        return generacion.get();
+    }
+    
+    public VersionRecursoDTO versionCatalogo() {
+        return marcaCatalogo.version(arranque);
+    }
+    
+    public VersionRecursoDTO versionArbol(Integer programaId) {
+        return marcasPorArbol.getOrDefault(programaId, marcaArboles).version(arranque);
+    }
+    
+    public ProgramaCompletoDTO obtenerArbol(Integer programaId) {
+        return leer(arboles, programaId);
+    }
+    
+    public List<Integer> obtenerConsulta(String clave) {
+        return leer(consultas, clave);
+    }
+    
+    public void guardarArbol(ProgramaCompletoDTO programa, long generacionLectura) {
+        escribir(arboles, programa.getId(), programa, generacionLectura);
+    }
+    
+    public void guardarConsulta(String clave, List<Integer> programaIds, long generacionLectura) {
+        escribir(consultas, clave, List.copyOf(programaIds), generacionLectura);
+    }
+    
+    // Un programa nuevo solo puede cambiar el resultado de los listados
+    public void invalidarConsultas() {
+        invalidar(marca -> consultas.clear());
+    }
+    
+    // Cambios en título, descripción o área afectan al árbol y a los listados
+    public void invalidarPrograma(Integer programaId) {
+        invalidar(marca -> {
+            arboles.remove(programaId);
+            marcasPorArbol.put(programaId, marca);
+            consultas.clear();
+        });
+    }
+    
+    // Cambios en unidades o lecciones solo afectan al árbol de su programa
+    public void invalidarArbol(Integer programaId) {
+        invalidar(marca -> {
+            arboles.remove(programaId);
+            marcasPorArbol.put(programaId, marca);
+        });
+    }
+    
+    public void limpiar() {
+        invalidar(marca -> {
+            arboles.clear();
+            marcaArboles = marca;
+            marcasPorArbol.clear();
+            consultas.clear();
+        });
+    }
+    
+    public Map<String, Object> obtenerEstadisticas() {
+        long totalAciertos = aciertos.get();
+        long totalLecturas = totalAciertos + fallos.get();
+        
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("aciertos", totalAciertos);
+        estadisticas.put("fallos", fallos.get());
+        estadisticas.put("tasaAciertos", totalLecturas == 0 ? 0.0 : (double) totalAciertos / totalLecturas);
+        estadisticas.put("expulsiones", expulsiones.get());
+        estadisticas.put("invalidaciones", invalidaciones.get());
+        estadisticas.put("arbolesEnCache", arboles.size());
+        estadisticas.put("consultasEnCache", consultas.size());
+        estadisticas.put("maxEntradas", maxEntradas);
+        estadisticas.put("ttlSegundos", ttlSegundos);
+        return estadisticas;
+    }
+    
+    private <K, V> V leer(Map<K, Entrada<V>> mapa, K clave) {
+        Entrada<V> entrada = mapa.get(clave);
+        if (entrada == null || entrada.expirada()) {
+            if (entrada != null) {
+                mapa.remove(clave);
+                expulsiones.incrementAndGet();
+            }
+            fallos.incrementAndGet();
+            return null;
+        }
+        aciertos.incrementAndGet();
+        return entrada.valor;
+    }
+    
+    private <K, V> void escribir(Map<K, Entrada<V>> mapa, K clave, V valor, long generacionLectura) {
+        synchronized (mapa) {
+            if (generacion.get() == generacionLectura) {
+                mapa.put(clave, new Entrada<>(valor, System.nanoTime() + ttlSegundos * 1_000_000_000L));
+            }
+        }
+    }
+    
+    private void invalidar(Consumer<Marca> accion) {
+        aplicarInvalidacion(accion);
+        
+        // Repetir al confirmar para descartar lecturas que vieron datos previos al commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    aplicarInvalidacion(accion);
+                }
+            });
+        }
+    }
+    
+    private void aplicarInvalidacion(Consumer<Marca> accion) {
+        synchronized (arboles) {
+            synchronized (consultas) {
+                Marca marca = new Marca(generacion.incrementAndGet(), LocalDateTime.now());
+                accion.accept(marca);
+                marcaCatalogo = marca;
+            }
+        }
+        invalidaciones.incrementAndGet();
+    }
+    
+    private <K, V> Map<K, Entrada<V>> crearMapaLru() {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> mayor) {
+                if (size() > maxEntradas) {
+                    expulsiones.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+    
+    // Generación y momento de una invalidación
+    private static final class Marca {
+        private final long generacion;
+        private final LocalDateTime fecha;
+        
+        private Marca(long generacion, LocalDateTime fecha) {
+            this.generacion = generacion;
+            this.fecha = fecha;
+        }
+        
+        private VersionRecursoDTO version(long arranque) {
+            VersionRecursoDTO version = new VersionRecursoDTO();
+            version.setVersion(arranque + "." + generacion);
+            version.setUltimaModificacion(fecha);
+            return version;
+        }
+    }
+    
+    private static final class Entrada<V> {
+        private final V valor;
+        private final long expiraEn;
+        
+        private Entrada(V valor, long expiraEn) {
+            this.valor = valor;
+            this.expiraEn = expiraEn;
+        }
+        
+        private boolean expirada() {
+            return System.nanoTime() - expiraEn > 0;
+        }
+    }
+}
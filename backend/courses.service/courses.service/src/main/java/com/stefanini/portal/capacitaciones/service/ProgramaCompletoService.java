@@ -1,6 +1,8 @@
 package com.stefanini.portal.capacitaciones.service;
 
+import com.stefanini.portal.capacitaciones.dto.PaginaProgramasDTO;
 import com.stefanini.portal.capacitaciones.dto.ProgramaCompletoDTO;
+import com.stefanini.portal.capacitaciones.dto.VersionRecursoDTO;
 import com.stefanini.portal.capacitaciones.entity.Programa;
 import com.stefanini.portal.capacitaciones.entity.Unidad;
 import com.stefanini.portal.capacitaciones.entity.Leccion;
@@ -9,19 +11,42 @@ import com.stefanini.portal.capacitaciones.repository.ProgramaRepository;
 import com.stefanini.portal.capacitaciones.repository.UnidadRepository;
 import com.stefanini.portal.capacitaciones.repository.LeccionRepository;
 import com.stefanini.portal.capacitaciones.repository.MaterialRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class ProgramaCompletoService {
     
+    private static final int TAMANO_PAGINA_POR_DEFECTO = 20;
+    private static final int TAMANO_PAGINA_MAXIMO = 100;
+    private static final int TAMANO_LOTE_STREAMING = 100;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
     @Autowired
     private ProgramaRepository programaRepository;
     
@@ -34,139 +59,139 @@ public class ProgramaCompletoService {
     @Autowired
     private MaterialRepository materialRepository;
     
+    @Autowired
+    private ClasificacionesService clasificacionesService;
+    
+    @Autowired
+    private ProgramaArbolLoader programaArbolLoader;
+    
+    @Autowired
+    private ProgramaCompletoCache programaCompletoCache;
+    
+    @Autowired
+    private IndiceAutocompletado indiceAutocompletado;
+    
+    @Autowired
+    private ProgresoAgregadoService progresoAgregadoService;
+    
     @Transactional(rollbackFor = Exception.class)
     public ProgramaCompletoDTO crearProgramaCompleto(ProgramaCompletoDTO programaCompletoDTO) {
         try {
-            // Validaciones previas
-            validarProgramaCompletoDTO(programaCompletoDTO);
-            
-            // 1. Crear el programa
-            Programa programa = new Programa();
-            programa.setTitulo(programaCompletoDTO.getTitulo());
-            programa.setDescripcion(programaCompletoDTO.getDescripcion());
-            programa.setAreaConocimiento(programaCompletoDTO.getAreaConocimiento());
-            
-            Programa programaGuardado = programaRepository.save(programa);
+            Programa programaGuardado = persistirProgramaCompleto(programaCompletoDTO);
             
-            // 2. Crear las unidades y lecciones
-            if (programaCompletoDTO.getUnidades() != null && !programaCompletoDTO.getUnidades().isEmpty()) {
-                for (ProgramaCompletoDTO.UnidadCompletaDTO unidadDTO : programaCompletoDTO.getUnidades()) {
-                    // Validar unidad
-                    validarUnidadDTO(unidadDTO);
-                    
-                    Unidad unidad = new Unidad();
-                    unidad.setPrograma(programaGuardado);
-                    unidad.setTitulo(unidadDTO.getTitulo());
-                    unidad.setOrden(unidadDTO.getOrden() != null ? unidadDTO.getOrden() : 
-                            unidadRepository.getNextOrden(programaGuardado.getId()));
-                    
-                    Unidad unidadGuardada = unidadRepository.save(unidad);
-                    
-                    // 3. Crear las lecciones de cada unidad
-                    if (unidadDTO.getLecciones() != null && !unidadDTO.getLecciones().isEmpty()) {
-                        for (ProgramaCompletoDTO.LeccionCompletaDTO leccionDTO : unidadDTO.getLecciones()) {
-                            // Validar lección
-                            validarLeccionDTO(leccionDTO);
-                            
-                            Leccion leccion = new Leccion();
-                            leccion.setUnidad(unidadGuardada);
-                            leccion.setTitulo(leccionDTO.getTitulo());
-                            leccion.setOrden(leccionDTO.getOrden() != null ? leccionDTO.getOrden() : 
-                                    leccionRepository.getNextOrden(unidadGuardada.getId()));
-                            leccion.setTipoMaterial(leccionDTO.getTipoMaterial());
-                            leccion.setUrlMaterial(leccionDTO.getUrlMaterial());
-                            
-                            // Asociar material si existe
-                            if (leccionDTO.getMaterialId() != null) {
-                                Material material = materialRepository.findById(leccionDTO.getMaterialId()).orElse(null);
-                                leccion.setMaterial(material);
-                            }
-                            
-                            leccionRepository.save(leccion);
-                        }
-                    }
-                }
-            }
+            programaCompletoCache.invalidarConsultas();
             
-            // 4. Retornar el programa completo creado
-            return obtenerProgramaCompletoPorId(programaGuardado.getId())
-                    .orElseThrow(() -> new RuntimeException("Error al recuperar el programa creado"));
+            // Retornar el programa completo creado
+            return programaArbolLoader.cargarArbol(programaGuardado);
                     
         } catch (Exception e) {
             throw new RuntimeException("Error al crear programa completo: " + e.getMessage(), e);
         }
     }
     
-    @Transactional(readOnly = true)
+    // Valida y persiste el árbol sin recargarlo ni tocar la caché; lo usan la creación individual
+    // y la importación masiva, que invalida una sola vez por lote
+    @Transactional(rollbackFor = Exception.class)
+    public Programa persistirProgramaCompleto(ProgramaCompletoDTO programaCompletoDTO) {
+        // Validaciones previas de todo el árbol, antes de escribir nada
+        List<ProgramaCompletoDTO.UnidadCompletaDTO> unidadesDTO = validarArbol(programaCompletoDTO);
+        
+        // 1. Crear el programa
+        Programa programa = new Programa();
+        programa.setTitulo(programaCompletoDTO.getTitulo());
+        programa.setDescripcion(programaCompletoDTO.getDescripcion());
+        programa.setAreaConocimiento(programaCompletoDTO.getAreaConocimiento());
+        
+        Programa programaGuardado = programaRepository.save(programa);
+        
+        // 2. Armar unidades y lecciones en memoria: orden calculado aquí y materiales en una consulta
+        Map<Integer, Material> materiales = resolverMateriales(unidadesDTO);
+        List<Unidad> unidades = new ArrayList<>();
+        List<Leccion> lecciones = new ArrayList<>();
+        int maxOrdenUnidad = 0;
+        for (ProgramaCompletoDTO.UnidadCompletaDTO unidadDTO : unidadesDTO) {
+            Unidad unidad = new Unidad();
+            unidad.setPrograma(programaGuardado);
+            unidad.setTitulo(unidadDTO.getTitulo());
+            unidad.setOrden(siguienteOrden(unidadDTO.getOrden(), maxOrdenUnidad));
+            maxOrdenUnidad = Math.max(maxOrdenUnidad, unidad.getOrden());
+            unidades.add(unidad);
+            
+            int maxOrdenLeccion = 0;
+            for (ProgramaCompletoDTO.LeccionCompletaDTO leccionDTO : leccionesDe(unidadDTO)) {
+                Leccion leccion = new Leccion();
+                leccion.setUnidad(unidad);
+                leccion.setTitulo(leccionDTO.getTitulo());
+                leccion.setOrden(siguienteOrden(leccionDTO.getOrden(), maxOrdenLeccion));
+                maxOrdenLeccion = Math.max(maxOrdenLeccion, leccion.getOrden());
+                leccion.setTipoMaterial(leccionDTO.getTipoMaterial());
+                leccion.setUrlMaterial(leccionDTO.getUrlMaterial());
+                
+                // Asociar material si existe
+                if (leccionDTO.getMaterialId() != null) {
+                    leccion.setMaterial(materiales.get(leccionDTO.getMaterialId()));
+                }
+                lecciones.add(leccion);
+            }
+        }
+        
+        // 3. Persistir: ids por secuencia y los INSERT salen en lotes JDBC al hacer flush
+        unidadRepository.saveAll(unidades);
+        leccionRepository.saveAll(lecciones);
+        
+        indiceAutocompletado.reemplazarPrograma(programaGuardado, unidades, lecciones);
+        return programaGuardado;
+    }
+    
+    // Las lecturas del catálogo se resuelven primero contra la caché; sin transacción propia
+    // para que una lectura caliente no tome conexión del pool
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<ProgramaCompletoDTO> obtenerTodosLosProgramasCompletos() {
-        return programaRepository.findAllWithUnidades().stream()
-                .map(this::cargarProgramaCompleto)
-                .map(this::convertirAProgramaCompletoDTO)
-                .collect(Collectors.toList());
+        return listarConCache("todos", () -> programaRepository.findRecentPrograms());
     }
     
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<ProgramaCompletoDTO> obtenerProgramaCompletoPorId(Integer id) {
-        return programaRepository.findByIdWithUnidades(id)
-                .map(this::cargarProgramaCompleto)
-                .map(this::convertirAProgramaCompletoDTO);
+        ProgramaCompletoDTO enCache = programaCompletoCache.obtenerArbol(id);
+        if (enCache != null) {
+            return Optional.of(enCache);
+        }
+        
+        long generacion = programaCompletoCache.generacionActual();
+        return programaRepository.findById(id)
+                .map(programaArbolLoader::cargarArbol)
+                .map(arbol -> {
+                    programaCompletoCache.guardarArbol(arbol, generacion);
+                    return arbol;
+                });
     }
     
     @Transactional(rollbackFor = Exception.class)
     public Optional<ProgramaCompletoDTO> actualizarProgramaCompleto(Integer id, ProgramaCompletoDTO programaCompletoDTO) {
         try {
-            // Validaciones previas
-            validarProgramaCompletoDTO(programaCompletoDTO);
+            // Validaciones previas de todo el árbol, antes de escribir nada
+            List<ProgramaCompletoDTO.UnidadCompletaDTO> unidadesDTO = validarArbol(programaCompletoDTO);
             
             return programaRepository.findById(id)
                     .map(programa -> {
-                        // 1. Actualizar datos del programa
+                        // 1. Actualizar datos del programa (Hibernate solo emite el UPDATE si algo cambió)
                         programa.setTitulo(programaCompletoDTO.getTitulo());
                         programa.setDescripcion(programaCompletoDTO.getDescripcion());
                         programa.setAreaConocimiento(programaCompletoDTO.getAreaConocimiento());
                         
-                        // 2. Eliminar unidades y lecciones existentes (cascade delete)
-                        programa.getUnidades().clear();
-                        programaRepository.save(programa);
+                        // 2. Reconciliar unidades y lecciones contra lo existente
+                        reconciliarUnidades(programa, unidadesDTO);
                         
-                        // 3. Crear nuevas unidades y lecciones
-                        if (programaCompletoDTO.getUnidades() != null && !programaCompletoDTO.getUnidades().isEmpty()) {
-                            for (ProgramaCompletoDTO.UnidadCompletaDTO unidadDTO : programaCompletoDTO.getUnidades()) {
-                                // Validar unidad
-                                validarUnidadDTO(unidadDTO);
-                                
-                                Unidad unidad = new Unidad();
-                                unidad.setPrograma(programa);
-                                unidad.setTitulo(unidadDTO.getTitulo());
-                                unidad.setOrden(unidadDTO.getOrden() != null ? unidadDTO.getOrden() : 
-                                        unidadRepository.getNextOrden(programa.getId()));
-                                
-                                Unidad unidadGuardada = unidadRepository.save(unidad);
-                                
-                                // Crear lecciones de la unidad
-                                if (unidadDTO.getLecciones() != null && !unidadDTO.getLecciones().isEmpty()) {
-                                    for (ProgramaCompletoDTO.LeccionCompletaDTO leccionDTO : unidadDTO.getLecciones()) {
-                                        // Validar lección
-                                        validarLeccionDTO(leccionDTO);
-                                        
-                                        Leccion leccion = new Leccion();
-                                        leccion.setUnidad(unidadGuardada);
-                                        leccion.setTitulo(leccionDTO.getTitulo());
-                                        leccion.setOrden(leccionDTO.getOrden() != null ? leccionDTO.getOrden() : 
-                                                leccionRepository.getNextOrden(unidadGuardada.getId()));
-                                        leccion.setTipoMaterial(leccionDTO.getTipoMaterial());
-                                        leccion.setUrlMaterial(leccionDTO.getUrlMaterial());
-                                        
-                                        leccionRepository.save(leccion);
-                                    }
-                                }
-                            }
-                        }
-                        
-                        Programa programaActualizado = programaRepository.save(programa);
-                        return convertirAProgramaCompletoDTO(programaActualizado);
+                        programaCompletoCache.invalidarPrograma(id);
+                        ProgramaCompletoDTO arbol = programaArbolLoader.cargarArbol(programa);
+                        indiceAutocompletado.reemplazarPrograma(arbol);
+                        clasificacionesService.cambiarArea(id, programa.getAreaConocimiento());
+                        return arbol;
                     });
                     
+        } catch (OptimisticLockingFailureException e) {
+            // Otro usuario modificó el programa o alguna de sus lecciones: el controlador responde 409
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Error al actualizar programa completo: " + e.getMessage(), e);
         }
@@ -176,101 +201,328 @@ public class ProgramaCompletoService {
     public boolean eliminarProgramaCompleto(Integer id) {
         if (programaRepository.existsById(id)) {
             programaRepository.deleteById(id);
+            progresoAgregadoService.eliminarPrograma(id);
+            programaCompletoCache.invalidarPrograma(id);
+            indiceAutocompletado.eliminarPrograma(id);
             return true;
         }
         return false;
     }
     
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<ProgramaCompletoDTO> buscarProgramasCompletosPorTitulo(String titulo) {
-        return programaRepository.findByTituloContainingIgnoreCase(titulo).stream()
-                .map(this::cargarProgramaCompleto)
-                .map(this::convertirAProgramaCompletoDTO)
-                .collect(Collectors.toList());
+        return listarConCache("titulo:" + titulo.toLowerCase(),
+                () -> programaRepository.findByTituloContainingIgnoreCase(titulo));
     }
     
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<ProgramaCompletoDTO> buscarProgramasCompletosPorArea(String areaConocimiento) {
-        return programaRepository.findByAreaConocimiento(areaConocimiento).stream()
-                .map(this::cargarProgramaCompleto)
-                .map(this::convertirAProgramaCompletoDTO)
-                .collect(Collectors.toList());
+        return listarConCache("area:" + areaConocimiento,
+                () -> programaRepository.findByAreaConocimiento(areaConocimiento));
     }
     
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<ProgramaCompletoDTO> obtenerProgramasCompletosRecientes() {
-        return programaRepository.findRecentPrograms().stream()
-                .map(this::cargarProgramaCompleto)
-                .map(this::convertirAProgramaCompletoDTO)
-                .collect(Collectors.toList());
+        return listarConCache("recientes", () -> programaRepository.findRecentPrograms());
     }
     
-    // Método auxiliar para cargar programa completo con unidades y lecciones
-    private Programa cargarProgramaCompleto(Programa programa) {
-        // Cargar unidades y lecciones por separado para evitar MultipleBagFetchException
-        programa.setUnidades(programaRepository.findByIdWithUnidades(programa.getId())
-                .map(Programa::getUnidades)
-                .orElse(new ArrayList<>()));
+    // Página de programas (más recientes primero) paginada por cursor sobre (fechaCreacion, id)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public PaginaProgramasDTO obtenerPaginaProgramasCompletos(String cursor, Integer tamano, String areaConocimiento) {
+        int tamanoPagina = tamano != null ? tamano : TAMANO_PAGINA_POR_DEFECTO;
+        if (tamanoPagina < 1 || tamanoPagina > TAMANO_PAGINA_MAXIMO) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + TAMANO_PAGINA_MAXIMO);
+        }
+        PosicionCursor posicion = decodificarCursor(cursor);
         
-        programa.getUnidades().forEach(unidad -> {
-            unidad.setLecciones(unidadRepository.findByIdWithLecciones(unidad.getId())
-                    .map(Unidad::getLecciones)
-                    .orElse(new ArrayList<>()));
-        });
+        String clave = "pagina:" + (areaConocimiento != null ? areaConocimiento : "") + ":" +
+                (cursor != null ? cursor : "") + ":" + tamanoPagina;
+        List<ProgramaCompletoDTO> programas = listarConCache(clave,
+                () -> buscarPagina(areaConocimiento, posicion, tamanoPagina));
         
-        return programa;
+        // Una página llena indica que puede haber más; la última página puede llegar vacía
+        String siguienteCursor = programas.size() == tamanoPagina
+                ? codificarCursor(programas.get(programas.size() - 1))
+                : null;
+        return new PaginaProgramasDTO(programas, siguienteCursor, tamanoPagina);
+    }
+    
+    // Recorre todo el catálogo por lotes y entrega cada programa en cuanto se arma; no pasa por la
+    // caché para no desplazar los árboles más consultados
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public void transmitirProgramasCompletos(String areaConocimiento, Consumer<ProgramaCompletoDTO> consumidor) {
+        PosicionCursor posicion = null;
+        List<Programa> lote;
+        do {
+            lote = buscarPagina(areaConocimiento, posicion, TAMANO_LOTE_STREAMING);
+            if (lote.isEmpty()) {
+                break;
+            }
+            Programa ultimo = lote.get(lote.size() - 1);
+            posicion = new PosicionCursor(ultimo.getFechaCreacion(), ultimo.getId());
+            
+            programaArbolLoader.cargarArboles(lote).forEach(consumidor);
+            
+            // Soltar las entidades del lote para que la memoria no crezca con el catálogo
+            entityManager.clear();
+        } while (lote.size() == TAMANO_LOTE_STREAMING);
+    }
+    
+    // Versiones para GET condicionales: las fija la caché en cada invalidación, sin consultar la base
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public VersionRecursoDTO obtenerVersionPrograma(Integer id) {
+        return programaCompletoCache.versionArbol(id);
+    }
+    
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public VersionRecursoDTO obtenerVersionCatalogo() {
+        return programaCompletoCache.versionCatalogo();
     }
     
-    private ProgramaCompletoDTO convertirAProgramaCompletoDTO(Programa programa) {
-        ProgramaCompletoDTO dto = new ProgramaCompletoDTO();
-        dto.setId(programa.getId());
-        dto.setTitulo(programa.getTitulo());
-        dto.setDescripcion(programa.getDescripcion());
-        dto.setAreaConocimiento(programa.getAreaConocimiento());
-        dto.setFechaCreacion(programa.getFechaCreacion());
+    public Map<String, Object> obtenerEstadisticasCache() {
+        return programaCompletoCache.obtenerEstadisticas();
+    }
+    
+    // Resuelve una consulta de listado: ids desde la caché (o la consulta) y árboles desde la caché
+    // (o el loader por lotes, solo para los que falten)
+    private List<ProgramaCompletoDTO> listarConCache(String clave, Supplier<List<Programa>> consulta) {
+        long generacion = programaCompletoCache.generacionActual();
+        Map<Integer, Programa> programasCargados = new HashMap<>();
         
-        // Convertir unidades
-        if (programa.getUnidades() != null) {
-            List<ProgramaCompletoDTO.UnidadCompletaDTO> unidadesDTO = programa.getUnidades().stream()
-                    .map(this::convertirAUnidadCompletaDTO)
-                    .collect(Collectors.toList());
-            dto.setUnidades(unidadesDTO);
+        List<Integer> ids = programaCompletoCache.obtenerConsulta(clave);
+        if (ids == null) {
+            ids = new ArrayList<>();
+            for (Programa programa : consulta.get()) {
+                ids.add(programa.getId());
+                programasCargados.put(programa.getId(), programa);
+            }
+            programaCompletoCache.guardarConsulta(clave, ids, generacion);
+        }
+        
+        Map<Integer, ProgramaCompletoDTO> arboles = new HashMap<>();
+        List<Programa> programasFaltantes = new ArrayList<>();
+        List<Integer> idsSinCargar = new ArrayList<>();
+        for (Integer id : ids) {
+            ProgramaCompletoDTO arbol = programaCompletoCache.obtenerArbol(id);
+            if (arbol != null) {
+                arboles.put(id, arbol);
+            } else if (programasCargados.containsKey(id)) {
+                programasFaltantes.add(programasCargados.get(id));
+            } else {
+                idsSinCargar.add(id);
+            }
+        }
+        if (!idsSinCargar.isEmpty()) {
+            programasFaltantes.addAll(programaRepository.findAllById(idsSinCargar));
         }
         
-        return dto;
+        for (ProgramaCompletoDTO arbol : programaArbolLoader.cargarArboles(programasFaltantes)) {
+            programaCompletoCache.guardarArbol(arbol, generacion);
+            arboles.put(arbol.getId(), arbol);
+        }
+        
+        // Conservar el orden de la consulta; un programa eliminado entre medias simplemente no aparece
+        List<ProgramaCompletoDTO> resultado = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            ProgramaCompletoDTO arbol = arboles.get(id);
+            if (arbol != null) {
+                resultado.add(arbol);
+            }
+        }
+        return resultado;
     }
     
-    private ProgramaCompletoDTO.UnidadCompletaDTO convertirAUnidadCompletaDTO(Unidad unidad) {
-        ProgramaCompletoDTO.UnidadCompletaDTO dto = new ProgramaCompletoDTO.UnidadCompletaDTO();
-        dto.setId(unidad.getId());
-        dto.setTitulo(unidad.getTitulo());
-        dto.setOrden(unidad.getOrden());
+    // Empareja por id las unidades y lecciones recibidas con las existentes y emite solo los
+    // INSERT, UPDATE y DELETE necesarios; las lecciones conservadas mantienen su progreso
+    private void reconciliarUnidades(Programa programa, List<ProgramaCompletoDTO.UnidadCompletaDTO> unidadesDTO) {
+        Map<Integer, Unidad> unidadesExistentes = new HashMap<>();
+        unidadRepository.findByProgramaIdIn(List.of(programa.getId()))
+                .forEach(unidad -> unidadesExistentes.put(unidad.getId(), unidad));
+        Map<Integer, Leccion> leccionesExistentes = new HashMap<>();
+        if (!unidadesExistentes.isEmpty()) {
+            leccionRepository.findByUnidadIdInWithMaterial(unidadesExistentes.keySet())
+                    .forEach(leccion -> leccionesExistentes.put(leccion.getId(), leccion));
+        }
+        Map<Integer, Material> materiales = resolverMaterialesModificados(unidadesDTO, leccionesExistentes);
+        
+        Set<Integer> unidadesConservadas = new HashSet<>();
+        Set<Integer> leccionesConservadas = new HashSet<>();
+        List<Leccion> leccionesNuevas = new ArrayList<>();
+        int maxOrdenUnidad = 0;
+        
+        for (ProgramaCompletoDTO.UnidadCompletaDTO unidadDTO : unidadesDTO) {
+            Unidad unidad;
+            if (unidadDTO.getId() != null) {
+                unidad = unidadesExistentes.get(unidadDTO.getId());
+                if (unidad == null) {
+                    throw new IllegalArgumentException("La unidad " + unidadDTO.getId() + " no pertenece al programa");
+                }
+                unidadesConservadas.add(unidad.getId());
+            } else {
+                unidad = new Unidad();
+                unidad.setPrograma(programa);
+            }
+            
+            unidad.setTitulo(unidadDTO.getTitulo());
+            unidad.setOrden(siguienteOrden(unidadDTO.getOrden(), maxOrdenUnidad));
+            maxOrdenUnidad = Math.max(maxOrdenUnidad, unidad.getOrden());
+            if (unidad.getId() == null) {
+                unidad = unidadRepository.save(unidad);
+            }
+            
+            int maxOrdenLeccion = 0;
+            for (ProgramaCompletoDTO.LeccionCompletaDTO leccionDTO : leccionesDe(unidadDTO)) {
+                Leccion leccion;
+                if (leccionDTO.getId() != null) {
+                    leccion = leccionesExistentes.get(leccionDTO.getId());
+                    if (leccion == null) {
+                        throw new IllegalArgumentException("La lección " + leccionDTO.getId() + " no pertenece al programa");
+                    }
+                    leccionesConservadas.add(leccion.getId());
+                } else {
+                    leccion = new Leccion();
+                    leccionesNuevas.add(leccion);
+                }
+                
+                leccion.setUnidad(unidad);
+                leccion.setTitulo(leccionDTO.getTitulo());
+                leccion.setOrden(siguienteOrden(leccionDTO.getOrden(), maxOrdenLeccion));
+                maxOrdenLeccion = Math.max(maxOrdenLeccion, leccion.getOrden());
+                leccion.setTipoMaterial(leccionDTO.getTipoMaterial());
+                leccion.setUrlMaterial(leccionDTO.getUrlMaterial());
+                Integer materialActualId = leccion.getMaterial() != null ? leccion.getMaterial().getId() : null;
+                if (!Objects.equals(materialActualId, leccionDTO.getMaterialId())) {
+                    leccion.setMaterial(leccionDTO.getMaterialId() != null ? materiales.get(leccionDTO.getMaterialId()) : null);
+                }
+            }
+        }
+        leccionRepository.saveAll(leccionesNuevas);
+        if (!leccionesNuevas.isEmpty()) {
+            progresoAgregadoService.leccionesAgregadas(programa.getId());
+        }
         
-        // Convertir lecciones
-        if (unidad.getLecciones() != null) {
-            List<ProgramaCompletoDTO.LeccionCompletaDTO> leccionesDTO = unidad.getLecciones().stream()
-                    .map(this::convertirALeccionCompletaDTO)
-                    .collect(Collectors.toList());
-            dto.setLecciones(leccionesDTO);
+        // Aplicar inserciones y actualizaciones (p. ej. lecciones movidas de unidad) antes de borrar
+        entityManager.flush();
+        
+        List<Integer> leccionesEliminadas = leccionesExistentes.keySet().stream()
+                .filter(leccionId -> !leccionesConservadas.contains(leccionId))
+                .collect(Collectors.toList());
+        if (!leccionesEliminadas.isEmpty()) {
+            leccionRepository.deleteAllByIdInBatch(leccionesEliminadas);
+        }
+        List<Integer> unidadesEliminadas = unidadesExistentes.keySet().stream()
+                .filter(unidadId -> !unidadesConservadas.contains(unidadId))
+                .collect(Collectors.toList());
+        if (!unidadesEliminadas.isEmpty()) {
+            unidadRepository.deleteAllByIdInBatch(unidadesEliminadas);
         }
         
-        return dto;
+        // El progreso de las lecciones borradas desaparece en cascada
+        if (!leccionesEliminadas.isEmpty() || !unidadesEliminadas.isEmpty()) {
+            progresoAgregadoService.recalcularPrograma(programa.getId());
+        }
     }
     
-    private ProgramaCompletoDTO.LeccionCompletaDTO convertirALeccionCompletaDTO(Leccion leccion) {
-        ProgramaCompletoDTO.LeccionCompletaDTO dto = new ProgramaCompletoDTO.LeccionCompletaDTO();
-        dto.setId(leccion.getId());
-        dto.setTitulo(leccion.getTitulo());
-        dto.setOrden(leccion.getOrden());
-        dto.setTipoMaterial(leccion.getTipoMaterial());
-        dto.setUrlMaterial(leccion.getUrlMaterial());
-        
-        // Incluir materialId si existe
-        if (leccion.getMaterial() != null) {
-            dto.setMaterialId(leccion.getMaterial().getId());
+    // Carga en una sola consulta los materiales que cambian respecto de lo ya enlazado
+    private Map<Integer, Material> resolverMaterialesModificados(List<ProgramaCompletoDTO.UnidadCompletaDTO> unidadesDTO,
+                                                                Map<Integer, Leccion> leccionesExistentes) {
+        Set<Integer> materialIds = new HashSet<>();
+        for (ProgramaCompletoDTO.UnidadCompletaDTO unidadDTO : unidadesDTO) {
+            for (ProgramaCompletoDTO.LeccionCompletaDTO leccionDTO : leccionesDe(unidadDTO)) {
+                if (leccionDTO.getMaterialId() == null) {
+                    continue;
+                }
+                Leccion existente = leccionDTO.getId() != null ? leccionesExistentes.get(leccionDTO.getId()) : null;
+                if (existente == null || existente.getMaterial() == null
+                        || !leccionDTO.getMaterialId().equals(existente.getMaterial().getId())) {
+                    materialIds.add(leccionDTO.getMaterialId());
+                }
+            }
         }
+        return cargarMateriales(materialIds);
+    }
+    
+    // Carga en una sola consulta todos los materiales referenciados por el árbol
+    private Map<Integer, Material> resolverMateriales(List<ProgramaCompletoDTO.UnidadCompletaDTO> unidadesDTO) {
+        Set<Integer> materialIds = new HashSet<>();
+        for (ProgramaCompletoDTO.UnidadCompletaDTO unidadDTO : unidadesDTO) {
+            for (ProgramaCompletoDTO.LeccionCompletaDTO leccionDTO : leccionesDe(unidadDTO)) {
+                if (leccionDTO.getMaterialId() != null) {
+                    materialIds.add(leccionDTO.getMaterialId());
+                }
+            }
+        }
+        return cargarMateriales(materialIds);
+    }
+    
+    private Map<Integer, Material> cargarMateriales(Set<Integer> materialIds) {
+        Map<Integer, Material> materiales = new HashMap<>();
+        if (!materialIds.isEmpty()) {
+            materialRepository.findAllById(materialIds)
+                    .forEach(material -> materiales.put(material.getId(), material));
+        }
+        return materiales;
+    }
+    
+    // El orden ausente se asigna a continuación del mayor ya procesado, como hacía getNextOrden
+    private int siguienteOrden(Integer orden, int maxOrden) {
+        return orden != null ? orden : maxOrden + 1;
+    }
+    
+    private List<ProgramaCompletoDTO.LeccionCompletaDTO> leccionesDe(ProgramaCompletoDTO.UnidadCompletaDTO unidadDTO) {
+        return unidadDTO.getLecciones() != null ? unidadDTO.getLecciones() : new ArrayList<>();
+    }
+    
+    private List<Programa> buscarPagina(String areaConocimiento, PosicionCursor posicion, int tamano) {
+        Pageable limite = PageRequest.of(0, tamano);
+        if (areaConocimiento == null) {
+            return posicion == null
+                    ? programaRepository.findPrimeraPagina(limite)
+                    : programaRepository.findPaginaDespuesDe(posicion.fechaCreacion, posicion.id, limite);
+        }
+        return posicion == null
+                ? programaRepository.findPrimeraPaginaPorArea(areaConocimiento, limite)
+                : programaRepository.findPaginaPorAreaDespuesDe(areaConocimiento, posicion.fechaCreacion, posicion.id, limite);
+    }
+    
+    private String codificarCursor(ProgramaCompletoDTO programa) {
+        String valor = programa.getFechaCreacion() + "|" + programa.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private PosicionCursor decodificarCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separador = valor.lastIndexOf('|');
+            return new PosicionCursor(LocalDateTime.parse(valor.substring(0, separador)),
+                    Integer.valueOf(valor.substring(separador + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido");
+        }
+    }
+    
+    private static final class PosicionCursor {
+        private final LocalDateTime fechaCreacion;
+        private final Integer id;
         
-        return dto;
+        private PosicionCursor(LocalDateTime fechaCreacion, Integer id) {
+            this.fechaCreacion = fechaCreacion;
+            this.id = id;
+        }
+    }
+    
+    public List<ProgramaCompletoDTO.UnidadCompletaDTO> validarArbol(ProgramaCompletoDTO programaDTO) {
+        validarProgramaCompletoDTO(programaDTO);
+        List<ProgramaCompletoDTO.UnidadCompletaDTO> unidadesDTO = programaDTO.getUnidades() != null
+                ? programaDTO.getUnidades() : new ArrayList<>();
+        for (ProgramaCompletoDTO.UnidadCompletaDTO unidadDTO : unidadesDTO) {
+            validarUnidadDTO(unidadDTO);
+            leccionesDe(unidadDTO).forEach(this::validarLeccionDTO);
+        }
+        return unidadesDTO;
     }
     
     private void validarProgramaCompletoDTO(ProgramaCompletoDTO programaDTO) {
@@ -0,0 +1,350 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.ProgresoProgramaDTO;
+import com.stefanini.portal.capacitaciones.entity.ProgresoPrograma;
+import com.stefanini.portal.capacitaciones.repository.LeccionRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgramaRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgresoProgramaRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgresoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Mantiene la tabla progreso_programas: por cada (usuario, programa) los contadores de lecciones
+ * completadas, en progreso e inscritas, la suma de porcentajes y la última actualización.
+ * Cada escritura de progreso aplica solo la diferencia entre el estado anterior y el nuevo de la
+ * lección, de modo que los listados por programa y las estadísticas leen un registro por programa.
+ * Los borrados de lecciones (en cascada sobre progreso) recalculan el programa afectado.
+ * Un programa está completado cuando el usuario completó todas sus lecciones (fechaCompletado), no solo
+ * las que tiene empezadas; las lecciones nuevas lo dejan pendiente otra vez.
+ */
+@Service
+@Transactional
+public class ProgresoAgregadoService {
+    
+    @Autowired
+    private ProgresoProgramaRepository progresoProgramaRepository;
+    
+    @Autowired
+    private ProgresoRepository progresoRepository;
+    
+    @Autowired
+    private ProgramaRepository programaRepository;
+    
+    @Autowired
+    private LeccionRepository leccionRepository;
+    
+    @Autowired
+    private AnaliticaProgresoService analiticaProgresoService;
+    
+    @Autowired
+    private ClasificacionesService clasificacionesService;
+    
+    // Primera fila de progreso del usuario en una lección
+    public void registrarLeccionNueva(UUID usuarioId, Integer programaId, String estado, Double porcentaje,
+                                      LocalDateTime fecha) {
+        registrarCambios(List.of(CambioLeccion.nueva(usuarioId, programaId, estado, porcentaje, fecha)));
+    }
+    
+    // Cambio de estado o porcentaje de una lección que ya tenía progreso
+    public void registrarCambio(UUID usuarioId, Integer programaId, String estadoAnterior, Double porcentajeAnterior,
+                                String estado, Double porcentaje, LocalDateTime fecha) {
+        registrarCambios(List.of(CambioLeccion.existente(usuarioId, programaId, estadoAnterior, porcentajeAnterior,
+                estado, porcentaje, fecha)));
+    }
+    
+    // Suma las diferencias por (usuario, programa) y aplica una sola actualización por agregado, en
+    // orden de (usuario, programa) para que dos lotes que se solapan bloqueen las filas en el mismo orden
+    public void registrarCambios(List<CambioLeccion> cambios) {
+        Map<String, Diferencia> porAgregado = new LinkedHashMap<>();
+        for (CambioLeccion cambio : cambios) {
+            Diferencia diferencia = porAgregado.computeIfAbsent(cambio.usuarioId + ":" + cambio.programaId,
+                    clave -> new Diferencia(cambio.usuarioId, cambio.programaId));
+            diferencia.sumar(cambio);
+        }
+        List<Diferencia> ordenadas = new ArrayList<>(porAgregado.values());
+        ordenadas.sort(Comparator.comparing((Diferencia diferencia) -> diferencia.usuarioId.toString())
+                .thenComparing(diferencia -> diferencia.programaId));
+        for (Diferencia diferencia : ordenadas) {
+            aplicar(diferencia);
+        }
+    }
+    
+    // Rehace el agregado de un usuario en un programa desde progreso. El agregado se bloquea antes de
+    // leer progreso: una escritura concurrente o ya confirmó (y entra en la lectura) o espera al
+    // bloqueo y suma su diferencia sobre el valor recalculado
+    public void recalcularUsuarioPrograma(UUID usuarioId, Integer programaId) {
+        Optional<ProgresoPrograma> existente = progresoProgramaRepository.bloquear(usuarioId, programaId);
+        List<Object[]> filas = progresoRepository.findAgregadosByProgramaIdAndUsuarioId(programaId, usuarioId);
+        int completadas = 0;
+        if (existente.isPresent()) {
+            if (filas.isEmpty()) {
+                progresoProgramaRepository.delete(existente.get());
+            } else {
+                ProgresoPrograma agregado = existente.get();
+                ProgresoPrograma calculado = desdeFila(usuarioId, programaId, filas.get(0), leccionesDelPrograma(programaId));
+                agregado.setTotalLecciones(calculado.getTotalLecciones());
+                agregado.setLeccionesCompletadas(calculado.getLeccionesCompletadas());
+                agregado.setLeccionesEnProgreso(calculado.getLeccionesEnProgreso());
+                agregado.setLeccionesInscritas(calculado.getLeccionesInscritas());
+                agregado.setSumaPorcentaje(calculado.getSumaPorcentaje());
+                agregado.setFechaActualizacion(calculado.getFechaActualizacion());
+                agregado.setFechaInicio(calculado.getFechaInicio());
+                agregado.setFechaCompletado(calculado.getFechaCompletado());
+                completadas = agregado.getLeccionesCompletadas();
+            }
+        } else if (!filas.isEmpty()) {
+            ProgresoPrograma calculado = desdeFila(usuarioId, programaId, filas.get(0), leccionesDelPrograma(programaId));
+            if (progresoProgramaRepository.insertarSiNoExiste(calculado) == 0) {
+                // Otra transacción lo creó entre la lectura y la inserción: recalcular sobre su fila
+                recalcularUsuarioPrograma(usuarioId, programaId);
+                return;
+            }
+            completadas = calculado.getLeccionesCompletadas();
+        }
+        clasificacionesService.establecerLecciones(usuarioId, programaId, completadas);
+        analiticaProgresoService.marcarPrograma(programaId);
+    }
+    
+    @Transactional(readOnly = true)
+    public List<ProgresoProgramaDTO> obtenerProgresoProgramas(UUID usuarioId) {
+        List<ProgresoProgramaDTO> resultado = new ArrayList<>();
+        for (Object[] fila : progresoProgramaRepository.findResumenByUsuarioId(usuarioId)) {
+            int total = (Integer) fila[5];
+            int completadas = (Integer) fila[6];
+            int enProgreso = (Integer) fila[7];
+            int inscritas = (Integer) fila[8];
+            double progresoGeneral = (Double) fila[9] / total;
+            LocalDateTime fechaCreacion = (LocalDateTime) fila[4];
+            LocalDateTime fechaActualizacion = (LocalDateTime) fila[10];
+            boolean completado = fila[11] != null;
+            
+            resultado.add(new ProgresoProgramaDTO(
+                    ((Integer) fila[0]).longValue(),
+                    (String) fila[1],
+                    (String) fila[2],
+                    (String) fila[3],
+                    estadoPrograma(completado, total, completadas, enProgreso, inscritas, progresoGeneral),
+                    Math.round(progresoGeneral * 100.0) / 100.0, // Redondear a 2 decimales
+                    total,
+                    completadas,
+                    enProgreso,
+                    inscritas,
+                    fechaCreacion,
+                    fechaActualizacion != null ? fechaActualizacion : fechaCreacion
+            ));
+        }
+        return resultado;
+    }
+    
+    // Estado de cada programa del usuario calculado desde progreso con una consulta agrupada
+    @Transactional(readOnly = true)
+    public Map<Long, String> obtenerEstadosPorPrograma(UUID usuarioId) {
+        Map<Long, String> estados = new HashMap<>();
+        for (Object[] fila : progresoRepository.findContadoresPorProgramaByUsuarioId(usuarioId)) {
+            int total = ((Number) fila[1]).intValue();
+            int completadas = ((Number) fila[2]).intValue();
+            boolean completado = completadas > 0 && completadas == ((Number) fila[8]).intValue();
+            double progresoGeneral = ((Number) fila[5]).doubleValue() / total;
+            estados.put(((Integer) fila[0]).longValue(), estadoPrograma(completado, total, completadas,
+                    ((Number) fila[3]).intValue(), ((Number) fila[4]).intValue(), progresoGeneral));
+        }
+        return estados;
+    }
+    
+    // Rehace los agregados de un programa desde progreso (tras borrar lecciones con progreso)
+    public void recalcularPrograma(Integer programaId) {
+        progresoProgramaRepository.deleteByProgramaId(programaId);
+        List<ProgresoPrograma> agregados = new ArrayList<>();
+        Map<UUID, Integer> completadas = new HashMap<>();
+        int leccionesDelPrograma = leccionesDelPrograma(programaId);
+        for (Object[] fila : progresoRepository.findAgregadosByProgramaId(programaId)) {
+            ProgresoPrograma agregado = desdeFila((UUID) fila[0], programaId, fila, leccionesDelPrograma);
+            agregados.add(agregado);
+            completadas.put(agregado.getUsuarioId(), agregado.getLeccionesCompletadas());
+        }
+        progresoProgramaRepository.saveAll(agregados);
+        analiticaProgresoService.marcarPrograma(programaId);
+        clasificacionesService.reemplazarPrograma(programaId, completadas);
+    }
+    
+    // Se añadieron lecciones al programa: quien lo tenía completado deja de tenerlo
+    public void leccionesAgregadas(Integer programaId) {
+        if (progresoProgramaRepository.limpiarCompletadoByProgramaId(programaId) > 0) {
+            analiticaProgresoService.marcarPrograma(programaId);
+        }
+    }
+    
+    public void eliminarPrograma(Integer programaId) {
+        progresoProgramaRepository.deleteByProgramaId(programaId);
+        analiticaProgresoService.marcarPrograma(programaId);
+        clasificacionesService.eliminarPrograma(programaId);
+    }
+    
+    // Reconstrucción completa, programa por programa; devuelve el número de agregados generados
+    public long reconstruirTodo() {
+        progresoProgramaRepository.deleteAllInBatch();
+        for (Object[] programa : programaRepository.findResumenTitulos()) {
+            recalcularPrograma((Integer) programa[0]);
+        }
+        return progresoProgramaRepository.count();
+    }
+    
+    // Reglas del estado de un programa a partir de los contadores de sus lecciones; la usan tanto los
+    // agregados por programa como el detalle por lección. completado: todas las lecciones del programa
+    // completadas (ProgresoProgramaRepository.COMPLETADO)
+    static String estadoPrograma(boolean completado, int total, int completadas, int enProgreso, int inscritas,
+                                 double progresoGeneral) {
+        if (completado) {
+            return "completado";
+        } else if (enProgreso > 0 || (completadas > 0 && completadas < total)) {
+            return "en_progreso";
+        } else if (inscritas == total && progresoGeneral == 0) {
+            return "inscrito";
+        }
+        // Estado mixto, priorizar en_progreso
+        return "en_progreso";
+    }
+    
+    private void aplicar(Diferencia diferencia) {
+        int actualizadas = progresoProgramaRepository.acumular(diferencia.usuarioId, diferencia.programaId,
+                diferencia.total, diferencia.completadas, diferencia.enProgreso, diferencia.inscritas,
+                diferencia.porcentaje, diferencia.fecha);
+        if (actualizadas == 0) {
+            if (crearDesdeProgreso(diferencia.usuarioId, diferencia.programaId)) {
+                return;
+            }
+            // Otra transacción creó el agregado a la vez; su lectura de progreso no incluía esta
+            // escritura (aún sin confirmar), así que se suma la diferencia sobre su fila
+            progresoProgramaRepository.acumular(diferencia.usuarioId, diferencia.programaId,
+                    diferencia.total, diferencia.completadas, diferencia.enProgreso, diferencia.inscritas,
+                    diferencia.porcentaje, diferencia.fecha);
+        }
+        clasificacionesService.sumarLecciones(diferencia.usuarioId, diferencia.programaId, diferencia.completadas);
+    }
+    
+    // Sin agregado todavía (primer progreso en el programa o datos previos a la tabla): calcularlo
+    // desde progreso, que ya incluye la escritura en curso. Devuelve false si otra transacción lo
+    // creó primero
+    private boolean crearDesdeProgreso(UUID usuarioId, Integer programaId) {
+        List<Object[]> filas = progresoRepository.findAgregadosByProgramaIdAndUsuarioId(programaId, usuarioId);
+        int completadas = 0;
+        if (!filas.isEmpty()) {
+            ProgresoPrograma agregado = desdeFila(usuarioId, programaId, filas.get(0), leccionesDelPrograma(programaId));
+            if (progresoProgramaRepository.insertarSiNoExiste(agregado) == 0) {
+                return false;
+            }
+            completadas = agregado.getLeccionesCompletadas();
+        }
+        clasificacionesService.establecerLecciones(usuarioId, programaId, completadas);
+        return true;
+    }
+    
+    private int leccionesDelPrograma(Integer programaId) {
+        return leccionRepository.countByProgramaId(programaId).intValue();
+    }
+    
+    private ProgresoPrograma desdeFila(UUID usuarioId, Integer programaId, Object[] fila, int leccionesDelPrograma) {
+        ProgresoPrograma agregado = new ProgresoPrograma(usuarioId, programaId);
+        agregado.setTotalLecciones(((Long) fila[1]).intValue());
+        agregado.setLeccionesCompletadas(((Number) fila[2]).intValue());
+        agregado.setLeccionesEnProgreso(((Number) fila[3]).intValue());
+        agregado.setLeccionesInscritas(((Number) fila[4]).intValue());
+        agregado.setSumaPorcentaje(((Number) fila[5]).doubleValue());
+        agregado.setFechaActualizacion((LocalDateTime) fila[6]);
+        agregado.setFechaInicio((LocalDateTime) fila[7]);
+        if (agregado.getLeccionesCompletadas() > 0 && agregado.getLeccionesCompletadas() == leccionesDelPrograma) {
+            agregado.setFechaCompletado(agregado.getFechaActualizacion());
+        }
+        return agregado;
+    }
+    
+    // Mismas condiciones que las consultas agregadas: {completada, en progreso, inscrita}
+    private static int[] clasificar(String estado, Double porcentaje) {
+        double valor = valor(porcentaje);
+        int completada = "completado".equals(estado) && valor >= 100 ? 1 : 0;
+        int enProgreso = "en_progreso".equals(estado) || ("iniciado".equals(estado) && valor > 0) ? 1 : 0;
+        int inscrita = "inscrito".equals(estado) || ("iniciado".equals(estado) && valor == 0) ? 1 : 0;
+        return new int[] {completada, enProgreso, inscrita};
+    }
+    
+    private static double valor(Double porcentaje) {
+        return porcentaje != null ? porcentaje : 0.0;
+    }
+    
+    // Cambio de una lección: estado y porcentaje antes (si ya tenía progreso) y después
+    public static final class CambioLeccion {
+        private final UUID usuarioId;
+        private final Integer programaId;
+        private final boolean nueva;
+        private final String estadoAnterior;
+        private final Double porcentajeAnterior;
+        private final String estado;
+        private final Double porcentaje;
+        private final LocalDateTime fecha;
+        
+        private CambioLeccion(UUID usuarioId, Integer programaId, boolean nueva, String estadoAnterior,
+                              Double porcentajeAnterior, String estado, Double porcentaje, LocalDateTime fecha) {
+            this.usuarioId = usuarioId;
+            this.programaId = programaId;
+            this.nueva = nueva;
+            this.estadoAnterior = estadoAnterior;
+            this.porcentajeAnterior = porcentajeAnterior;
+            this.estado = estado;
+            this.porcentaje = porcentaje;
+            this.fecha = fecha;
+        }
+        
+        public static CambioLeccion nueva(UUID usuarioId, Integer programaId, String estado, Double porcentaje,
+                                          LocalDateTime fecha) {
+            return new CambioLeccion(usuarioId, programaId, true, null, null, estado, porcentaje, fecha);
+        }
+        
+        public static CambioLeccion existente(UUID usuarioId, Integer programaId, String estadoAnterior,
+                                              Double porcentajeAnterior, String estado, Double porcentaje,
+                                              LocalDateTime fecha) {
+            return new CambioLeccion(usuarioId, programaId, false, estadoAnterior, porcentajeAnterior,
+                    estado, porcentaje, fecha);
+        }
+    }
+    
+    private static final class Diferencia {
+        private final UUID usuarioId;
+        private final Integer programaId;
+        private int total;
+        private int completadas;
+        private int enProgreso;
+        private int inscritas;
+        private double porcentaje;
+        private LocalDateTime fecha;
+        
+        private Diferencia(UUID usuarioId, Integer programaId) {
+            this.usuarioId = usuarioId;
+            this.programaId = programaId;
+        }
+        
+        private void sumar(CambioLeccion cambio) {
+            int[] nuevo = clasificar(cambio.estado, cambio.porcentaje);
+            int[] anterior = cambio.nueva ? new int[3] : clasificar(cambio.estadoAnterior, cambio.porcentajeAnterior);
+            total += cambio.nueva ? 1 : 0;
+            completadas += nuevo[0] - anterior[0];
+            enProgreso += nuevo[1] - anterior[1];
+            inscritas += nuevo[2] - anterior[2];
+            porcentaje += valor(cambio.porcentaje) - (cambio.nueva ? 0.0 : valor(cambio.porcentajeAnterior));
+            if (fecha == null || cambio.fecha.isAfter(fecha)) {
+                fecha = cambio.fecha;
+            }
+        }
+    }
+}
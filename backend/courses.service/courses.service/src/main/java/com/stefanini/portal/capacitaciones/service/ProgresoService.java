@@ -5,21 +5,31 @@ import com.stefanini.portal.capacitaciones.dto.ProgresoProgramaDTO;
 import com.stefanini.portal.capacitaciones.dto.UserStatsDTO;
 import com.stefanini.portal.capacitaciones.entity.Leccion;
 import com.stefanini.portal.capacitaciones.entity.Progreso;
+import com.stefanini.portal.capacitaciones.entity.ProgresoEvento;
 import com.stefanini.portal.capacitaciones.repository.InsigniaOtorgadaRepository;
 import com.stefanini.portal.capacitaciones.repository.LeccionRepository;
 import com.stefanini.portal.capacitaciones.repository.ProgresoRepository;
+import com.stefanini.portal.capacitaciones.repository.TiempoEstudioRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class ProgresoService {
     
+    // Tope de filas por sentencia (4 parámetros por fila, lejos del límite del driver)
+    private static final int MAX_LOTE_PROGRESO = 1000;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
     @Autowired
     private ProgresoRepository progresoRepository;
     
@@ -29,95 +39,39 @@ public class ProgresoService {
     @Autowired
     private InsigniaOtorgadaRepository insigniaOtorgadaRepository;
     
+    @Autowired
+    private ProgresoAgregadoService progresoAgregadoService;
+    
+    @Autowired
+    private TiempoEstudioRepository tiempoEstudioRepository;
+    
+    @Autowired
+    private DiarioProgresoService diarioProgresoService;
+    
+    @Autowired
+    private NotificadorProgreso notificadorProgreso;
+    
+    @Autowired
+    private ReglasInsigniasService reglasInsigniasService;
+    
     // Obtener progreso por usuario (detalle por lección) con validaciones de estado
+    @Transactional(readOnly = true)
     public List<ProgresoDTO> getProgresoByUsuarioId(UUID usuarioId) {
-        List<Progreso> progresos = progresoRepository.findByUsuarioId(usuarioId);
+        List<ProgresoDTO> progresos = progresoRepository.findDTOByUsuarioId(usuarioId);
         
-        // Aplicar validaciones de estado por programa
-        List<ProgresoDTO> progresosConValidacion = aplicarValidacionesEstado(progresos);
+        // Aplicar a cada lección el estado de su programa, calculado en la base de datos
+        Map<Long, String> estadosPorPrograma = progresoAgregadoService.obtenerEstadosPorPrograma(usuarioId);
+        for (ProgresoDTO progreso : progresos) {
+            progreso.setEstado(estadosPorPrograma.get(progreso.getProgramaId()));
+        }
         
-        return progresosConValidacion;
+        return progresos;
     }
     
-    // Obtener progreso por usuario agrupado por programas
+    // Obtener progreso por usuario agrupado por programas (desde los agregados por programa)
+    @Transactional(readOnly = true)
     public List<ProgresoProgramaDTO> getProgresoProgramasByUsuarioId(UUID usuarioId) {
-        List<Progreso> progresos = progresoRepository.findByUsuarioId(usuarioId);
-        
-        // Agrupar por programa
-        Map<Long, List<Progreso>> progresosPorPrograma = progresos.stream()
-                .filter(p -> p.getLeccion() != null && 
-                           p.getLeccion().getUnidad() != null && 
-                           p.getLeccion().getUnidad().getPrograma() != null)
-                .collect(Collectors.groupingBy(p -> Long.valueOf(p.getLeccion().getUnidad().getPrograma().getId())));
-        
-        List<ProgresoProgramaDTO> resultado = new ArrayList<>();
-        
-        for (Map.Entry<Long, List<Progreso>> entry : progresosPorPrograma.entrySet()) {
-            Long programaId = entry.getKey();
-            List<Progreso> progresosDelPrograma = entry.getValue();
-            
-            // Obtener información del programa (tomamos de la primera lección)
-            var programa = progresosDelPrograma.get(0).getLeccion().getUnidad().getPrograma();
-            
-            // Calcular estadísticas
-            int totalLecciones = progresosDelPrograma.size();
-            int leccionesCompletadas = (int) progresosDelPrograma.stream()
-                    .filter(p -> "completado".equals(p.getEstado()) && p.getPorcentaje() >= 100)
-                    .count();
-            int leccionesEnProgreso = (int) progresosDelPrograma.stream()
-                    .filter(p -> "en_progreso".equals(p.getEstado()) || 
-                                ("iniciado".equals(p.getEstado()) && p.getPorcentaje() > 0))
-                    .count();
-            int leccionesInscritas = (int) progresosDelPrograma.stream()
-                    .filter(p -> "inscrito".equals(p.getEstado()) || 
-                                ("iniciado".equals(p.getEstado()) && p.getPorcentaje() == 0))
-                    .count();
-            
-            // Calcular progreso general (promedio de porcentajes)
-            double progresoGeneral = progresosDelPrograma.stream()
-                    .mapToDouble(p -> p.getPorcentaje() != null ? p.getPorcentaje() : 0.0)
-                    .average()
-                    .orElse(0.0);
-            
-            // Determinar estado del programa
-            String estadoPrograma;
-            if (leccionesCompletadas == totalLecciones && progresoGeneral >= 100) {
-                estadoPrograma = "completado";
-            } else if (leccionesEnProgreso > 0 || (leccionesCompletadas > 0 && leccionesCompletadas < totalLecciones)) {
-                estadoPrograma = "en_progreso";
-            } else if (leccionesInscritas == totalLecciones && progresoGeneral == 0) {
-                estadoPrograma = "inscrito";
-            } else {
-                // Estado mixto, priorizar en_progreso
-                estadoPrograma = "en_progreso";
-            }
-            
-            // Obtener fecha de última actualización
-            var fechaUltimaActualizacion = progresosDelPrograma.stream()
-                    .map(Progreso::getFechaActualizacion)
-                    .filter(Objects::nonNull)
-                    .max(LocalDateTime::compareTo)
-                    .orElse(programa.getFechaCreacion());
-            
-            ProgresoProgramaDTO dto = new ProgresoProgramaDTO(
-                    programaId,
-                    programa.getTitulo(),
-                    programa.getDescripcion(),
-                    programa.getAreaConocimiento(),
-                    estadoPrograma,
-                    Math.round(progresoGeneral * 100.0) / 100.0, // Redondear a 2 decimales
-                    totalLecciones,
-                    leccionesCompletadas,
-                    leccionesEnProgreso,
-                    leccionesInscritas,
-                    programa.getFechaCreacion(),
-                    fechaUltimaActualizacion
-            );
-            
-            resultado.add(dto);
-        }
-        
-        return resultado;
+        return progresoAgregadoService.obtenerProgresoProgramas(usuarioId);
     }
     
     // Actualizar o crear progreso
@@ -130,21 +84,156 @@ public class ProgresoService {
         Leccion leccion = leccionOpt.get();
         Optional<Progreso> progresoOpt = progresoRepository.findByUsuarioIdAndLeccionId(usuarioId, leccionId.longValue());
         
+        Integer programaId = leccion.getUnidad().getPrograma().getId();
+        LocalDateTime ahora = LocalDateTime.now();
+        
         Progreso progreso;
+        boolean yaCompletada = false;
         if (progresoOpt.isPresent()) {
             progreso = progresoOpt.get();
+            String estadoAnterior = progreso.getEstado();
+            Double porcentajeAnterior = progreso.getPorcentaje();
+            yaCompletada = "completado".equals(estadoAnterior);
             progreso.setPorcentaje(porcentaje);
             progreso.setEstado(porcentaje >= 100 ? "completado" : "en_progreso");
+            progreso.setFechaActualizacion(ahora);
+            marcarCompletada(progreso, ahora);
+            progreso = progresoRepository.save(progreso);
+            progresoAgregadoService.registrarCambio(usuarioId, programaId, estadoAnterior, porcentajeAnterior,
+                    progreso.getEstado(), progreso.getPorcentaje(), ahora);
         } else {
             progreso = new Progreso(usuarioId, leccion, 
                     porcentaje >= 100 ? "completado" : "en_progreso", porcentaje);
+            progreso.setFechaActualizacion(ahora);
+            marcarCompletada(progreso, ahora);
+            progreso = progresoRepository.save(progreso);
+            progresoAgregadoService.registrarLeccionNueva(usuarioId, programaId,
+                    progreso.getEstado(), progreso.getPorcentaje(), ahora);
+        }
+        diarioProgresoService.registrar(List.of(new ProgresoEvento(usuarioId, leccionId,
+                progreso.getEstado(), progreso.getPorcentaje(), ahora)));
+        notificadorProgreso.publicarProgreso(usuarioId, List.of(programaId.longValue()));
+        if (!yaCompletada && "completado".equals(progreso.getEstado())) {
+            reglasInsigniasService.registrarCompletadas(usuarioId, List.of(programaId));
         }
         
-        progreso = progresoRepository.save(progreso);
         return convertToDTO(progreso);
     }
     
+    // Aplica muchas actualizaciones (usuario, lección, porcentaje) con un solo INSERT ... ON CONFLICT
+    // sobre la restricción única (usuario_id, leccion_id); el porcentaje guardado nunca disminuye
+    public List<ProgresoDTO> actualizarProgresoLote(List<ProgresoDTO> actualizaciones) {
+        if (actualizaciones.size() > MAX_LOTE_PROGRESO) {
+            throw new IllegalArgumentException("El lote no puede superar " + MAX_LOTE_PROGRESO + " actualizaciones");
+        }
+        
+        // Una entrada por (usuario, lección): la de mayor porcentaje
+        Map<String, ProgresoDTO> entradas = new LinkedHashMap<>();
+        for (ProgresoDTO actualizacion : actualizaciones) {
+            if (actualizacion.getUsuarioId() == null || actualizacion.getLeccionId() == null) {
+                throw new IllegalArgumentException("Cada actualización requiere usuario_id y leccion_id");
+            }
+            if (actualizacion.getPorcentaje() == null || actualizacion.getPorcentaje() < 0 || actualizacion.getPorcentaje() > 100) {
+                throw new IllegalArgumentException("El porcentaje debe estar entre 0 y 100");
+            }
+            entradas.merge(actualizacion.getUsuarioId() + ":" + actualizacion.getLeccionId(), actualizacion,
+                    (actual, otra) -> otra.getPorcentaje() > actual.getPorcentaje() ? otra : actual);
+        }
+        if (entradas.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Set<UUID> usuarioIds = new HashSet<>();
+        Set<Integer> leccionIds = new HashSet<>();
+        for (ProgresoDTO entrada : entradas.values()) {
+            usuarioIds.add(entrada.getUsuarioId());
+            leccionIds.add(entrada.getLeccionId().intValue());
+        }
+        
+        // Lección, unidad y programa de cada lección en una consulta
+        Map<Integer, Object[]> contextos = new HashMap<>();
+        for (Object[] fila : leccionRepository.findContextoByIdIn(leccionIds)) {
+            contextos.put((Integer) fila[0], fila);
+        }
+        for (Integer leccionId : leccionIds) {
+            if (!contextos.containsKey(leccionId)) {
+                throw new IllegalArgumentException("Lección no encontrada: " + leccionId);
+            }
+        }
+        
+        // Estado previo para los agregados por programa
+        Map<String, Object[]> anteriores = new HashMap<>();
+        for (Object[] fila : progresoRepository.bloquearByUsuarioIdInAndLeccionIdIn(usuarioIds, leccionIds)) {
+            anteriores.put(fila[0] + ":" + fila[1], fila);
+        }
+        
+        LocalDateTime ahora = LocalDateTime.now();
+        List<ProgresoDTO> resultado = new ArrayList<>();
+        List<ProgresoAgregadoService.CambioLeccion> cambios = new ArrayList<>();
+        List<ProgresoEvento> eventos = new ArrayList<>();
+        // Ordenados como el bloqueo previo: las filas nuevas también se insertan en el mismo orden en
+        // todos los lotes. El texto de un uuid se ordena igual que el uuid en PostgreSQL
+        List<ProgresoDTO> ordenadas = new ArrayList<>(entradas.values());
+        ordenadas.sort(Comparator.comparing((ProgresoDTO entrada) -> entrada.getUsuarioId().toString())
+                .thenComparing(ProgresoDTO::getLeccionId));
+        
+        Map<String, ProgresoDTO> procesadas = new HashMap<>();
+        Set<String> agregadosARecalcular = new TreeSet<>();
+        Map<UUID, Set<Integer>> completadasPorUsuario = new HashMap<>();
+        for (Object[] fila : upsertProgreso(ordenadas, ahora)) {
+            UUID usuarioId = (UUID) fila[1];
+            Integer leccionId = ((Number) fila[2]).intValue();
+            String estado = (String) fila[3];
+            Double porcentaje = ((Number) fila[4]).doubleValue();
+            boolean insertada = (Boolean) fila[5];
+            Object[] contexto = contextos.get(leccionId);
+            Integer programaId = (Integer) contexto[4];
+            
+            Object[] anterior = anteriores.get(usuarioId + ":" + leccionId);
+            if ("completado".equals(estado) && (anterior == null || !"completado".equals(anterior[2]))) {
+                completadasPorUsuario.computeIfAbsent(usuarioId, clave -> new HashSet<>()).add(programaId);
+            }
+            if (insertada) {
+                cambios.add(ProgresoAgregadoService.CambioLeccion.nueva(usuarioId, programaId, estado, porcentaje, ahora));
+            } else if (anterior != null) {
+                cambios.add(ProgresoAgregadoService.CambioLeccion.existente(usuarioId, programaId,
+                        (String) anterior[2], anterior[3] != null ? ((Number) anterior[3]).doubleValue() : null,
+                        estado, porcentaje, ahora));
+            } else {
+                // Otra transacción insertó la fila entre el bloqueo y el upsert: no se conoce su estado previo
+                agregadosARecalcular.add(usuarioId + ":" + programaId);
+            }
+            
+            ProgresoDTO dto = new ProgresoDTO(((Number) fila[0]).longValue(), usuarioId, leccionId, estado, porcentaje,
+                    ahora, (String) contexto[1], (Integer) contexto[2], (String) contexto[3], programaId,
+                    (String) contexto[5]);
+            procesadas.put(usuarioId + ":" + leccionId, dto);
+            eventos.add(new ProgresoEvento(usuarioId, leccionId, estado, porcentaje, ahora));
+        }
+        
+        // La respuesta conserva el orden de la petición
+        for (String clave : entradas.keySet()) {
+            resultado.add(procesadas.get(clave));
+        }
+        
+        diarioProgresoService.registrar(eventos);
+        progresoAgregadoService.registrarCambios(cambios);
+        for (String clave : agregadosARecalcular) {
+            String[] partes = clave.split(":");
+            progresoAgregadoService.recalcularUsuarioPrograma(UUID.fromString(partes[0]), Integer.valueOf(partes[1]));
+        }
+        
+        Map<UUID, Set<Long>> programasPorUsuario = new HashMap<>();
+        for (ProgresoDTO dto : resultado) {
+            programasPorUsuario.computeIfAbsent(dto.getUsuarioId(), clave -> new HashSet<>()).add(dto.getProgramaId());
+        }
+        programasPorUsuario.forEach(notificadorProgreso::publicarProgreso);
+        completadasPorUsuario.forEach(reglasInsigniasService::registrarCompletadas);
+        return resultado;
+    }
+    
     // Obtener estadísticas del usuario con validaciones por programa
+    @Transactional(readOnly = true)
     public UserStatsDTO getEstadisticasUsuario(UUID usuarioId) {
         // Obtener progreso agrupado por programas para calcular correctamente
         List<ProgresoProgramaDTO> progresosPorPrograma = getProgresoProgramasByUsuarioId(usuarioId);
@@ -170,6 +259,9 @@ public class ProgresoService {
         // Obtener total de insignias del usuario
         Long totalInsignias = insigniaOtorgadaRepository.countByUsuarioId(usuarioId);
         
+        // Minutos de estudio a partir de los totales diarios ya persistidos
+        Long segundosEstudio = tiempoEstudioRepository.sumSegundosByUsuarioId(usuarioId);
+        
         // Calcular lecciones completadas y en progreso (para compatibilidad con el DTO)
         int leccionesCompletadas = progresosPorPrograma.stream()
                 .mapToInt(ProgresoProgramaDTO::getLeccionesCompletadas)
@@ -183,13 +275,56 @@ public class ProgresoService {
                 cursosEnProgreso + cursosInscritos, // cursos iniciados = en progreso + inscritos
                 cursosCompletados,
                 progresoPromedio,
-                0, // tiempoTotalEstudio - por implementar
+                (int) (segundosEstudio / 60),
                 totalInsignias.intValue(),
                 leccionesCompletadas,
                 leccionesEnProgreso
         );
     }
     
+    // La fecha de completado se fija la primera vez y no cambia aunque la lección se reescriba
+    private static void marcarCompletada(Progreso progreso, LocalDateTime fecha) {
+        if ("completado".equals(progreso.getEstado()) && progreso.getFechaCompletado() == null) {
+            progreso.setFechaCompletado(fecha);
+        }
+    }
+    
+    // INSERT ... ON CONFLICT de varias filas en una sentencia; xmax = 0 distingue las filas insertadas
+    // Filas: id, usuario_id, leccion_id, estado, porcentaje, insertada
+    private List<Object[]> upsertProgreso(List<ProgresoDTO> entradas, LocalDateTime fecha) {
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO capacitaciones.progreso AS p (usuario_id, leccion_id, estado, porcentaje, fecha_actualizacion, " +
+                "fecha_completado) VALUES ");
+        for (int i = 0; i < entradas.size(); i++) {
+            sql.append(i == 0 ? "" : ", ")
+               .append("(:u").append(i).append(", :l").append(i).append(", :e").append(i)
+               .append(", :p").append(i).append(", :fecha, CASE WHEN :e").append(i)
+               .append(" = 'completado' THEN CAST(:fecha AS timestamp) END)");
+        }
+        sql.append(" ON CONFLICT (usuario_id, leccion_id) DO UPDATE SET ")
+           .append("porcentaje = GREATEST(COALESCE(p.porcentaje, 0), EXCLUDED.porcentaje), ")
+           .append("estado = CASE WHEN GREATEST(COALESCE(p.porcentaje, 0), EXCLUDED.porcentaje) >= 100 ")
+           .append("THEN 'completado' ELSE 'en_progreso' END, ")
+           .append("fecha_actualizacion = EXCLUDED.fecha_actualizacion, ")
+           .append("fecha_completado = COALESCE(p.fecha_completado, CASE WHEN ")
+           .append("GREATEST(COALESCE(p.porcentaje, 0), EXCLUDED.porcentaje) >= 100 THEN EXCLUDED.fecha_actualizacion END) ")
+           .append("RETURNING p.id, p.usuario_id, p.leccion_id, p.estado, p.porcentaje, (p.xmax = 0)");
+        
+        Query consulta = entityManager.createNativeQuery(sql.toString());
+        for (int i = 0; i < entradas.size(); i++) {
+            ProgresoDTO entrada = entradas.get(i);
+            consulta.setParameter("u" + i, entrada.getUsuarioId());
+            consulta.setParameter("l" + i, entrada.getLeccionId().intValue());
+            consulta.setParameter("e" + i, entrada.getPorcentaje() >= 100 ? "completado" : "en_progreso");
+            consulta.setParameter("p" + i, entrada.getPorcentaje());
+        }
+        consulta.setParameter("fecha", fecha);
+        
+        @SuppressWarnings("unchecked")
+        List<Object[]> filas = consulta.getResultList();
+        return filas;
+    }
+    
     // Convertir entidad a DTO
     private ProgresoDTO convertToDTO(Progreso progreso) {
         ProgresoDTO dto = new ProgresoDTO(
@@ -208,6 +343,9 @@ public class ProgresoService {
             // Verificar que la unidad y programa existen
             if (progreso.getLeccion().getUnidad() != null && 
                 progreso.getLeccion().getUnidad().getPrograma() != null) {
+                dto.setUnidadId(progreso.getLeccion().getUnidad().getId().longValue());
+                dto.setTituloUnidad(progreso.getLeccion().getUnidad().getTitulo());
+                dto.setProgramaId(progreso.getLeccion().getUnidad().getPrograma().getId().longValue());
                 dto.setTituloPrograma(progreso.getLeccion().getUnidad().getPrograma().getTitulo());
             } else {
                 dto.setTituloPrograma("Programa no disponible");
@@ -219,64 +357,4 @@ public class ProgresoService {
         
         return dto;
     }
-    
-    // Método para aplicar validaciones de estado por programa
-    private List<ProgresoDTO> aplicarValidacionesEstado(List<Progreso> progresos) {
-        // Agrupar por programa
-        Map<Long, List<Progreso>> progresosPorPrograma = progresos.stream()
-                .filter(p -> p.getLeccion() != null && 
-                           p.getLeccion().getUnidad() != null && 
-                           p.getLeccion().getUnidad().getPrograma() != null)
-                .collect(Collectors.groupingBy(p -> Long.valueOf(p.getLeccion().getUnidad().getPrograma().getId())));
-        
-        List<ProgresoDTO> resultado = new ArrayList<>();
-        
-        for (Map.Entry<Long, List<Progreso>> entry : progresosPorPrograma.entrySet()) {
-            List<Progreso> progresosDelPrograma = entry.getValue();
-            
-            // Calcular estadísticas del programa
-            int totalLecciones = progresosDelPrograma.size();
-            int leccionesCompletadas = (int) progresosDelPrograma.stream()
-                    .filter(p -> "completado".equals(p.getEstado()) && p.getPorcentaje() >= 100)
-                    .count();
-            int leccionesEnProgreso = (int) progresosDelPrograma.stream()
-                    .filter(p -> "en_progreso".equals(p.getEstado()) || 
-                                ("iniciado".equals(p.getEstado()) && p.getPorcentaje() != null && p.getPorcentaje() > 0))
-                    .count();
-            int leccionesInscritas = (int) progresosDelPrograma.stream()
-                    .filter(p -> "inscrito".equals(p.getEstado()) || 
-                                ("iniciado".equals(p.getEstado()) && (p.getPorcentaje() == null || p.getPorcentaje() == 0.0)))
-                    .count();
-            
-            // Determinar estado del programa según las validaciones
-            String estadoPrograma;
-            if (leccionesCompletadas == totalLecciones) {
-                // Todas completadas al 100%
-                estadoPrograma = "completado";
-            } else if (leccionesInscritas == totalLecciones && 
-                      progresosDelPrograma.stream().allMatch(p -> p.getPorcentaje() == null || p.getPorcentaje() == 0.0)) {
-                // Todas inscritas con porcentaje 0
-                estadoPrograma = "inscrito";
-            } else if (leccionesEnProgreso > 0 || (leccionesCompletadas > 0 && leccionesCompletadas < totalLecciones)) {
-                // Algunas en progreso o mixto
-                estadoPrograma = "en_progreso";
-            } else {
-                // Estado mixto, priorizar en_progreso
-                estadoPrograma = "en_progreso";
-            }
-            
-            // Aplicar el estado calculado a todos los progresos del programa
-            for (Progreso progreso : progresosDelPrograma) {
-                // Convertir a DTO sin modificar la entidad original
-                ProgresoDTO dto = convertToDTO(progreso);
-                
-                // Aplicar el estado validado al DTO
-                dto.setEstado(estadoPrograma);
-                
-                resultado.add(dto);
-            }
-        }
-        
-        return resultado;
-    }
 }
@@ -0,0 +1,353 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.InsigniaOtorgadaDTO;
+import com.stefanini.portal.capacitaciones.dto.ReglaInsigniaDTO;
+import com.stefanini.portal.capacitaciones.entity.ReglaInsignia;
+import com.stefanini.portal.capacitaciones.repository.InsigniaRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgramaRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgresoProgramaRepository;
+import com.stefanini.portal.capacitaciones.repository.ProgresoRepository;
+import com.stefanini.portal.capacitaciones.repository.ReglaInsigniaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Motor de reglas de otorgamiento automático de insignias. Cada lección completada deja al usuario
+ * y sus programas en una cola en memoria al confirmar la transacción; una tarea periódica la vacía
+ * por lotes, fuera de la petición que escribió el progreso. Las reglas activas se indexan por el
+ * programa o el área que observan, así cada usuario solo evalúa las reglas de los programas que
+ * acaba de avanzar (más las semanales, que observan cualquier lección). Las condiciones de todo el
+ * lote se resuelven con una consulta por tipo de regla y las insignias ganadas se otorgan juntas,
+ * descartando las que el usuario ya tenía.
+ */
+@Service
+public class ReglasInsigniasService {
+    
+    private static final int TAMANO_LOTE = 500;
+    private static final int DIAS_SEMANA = 7;
+    
+    @Autowired
+    private ReglaInsigniaRepository reglaInsigniaRepository;
+    
+    @Autowired
+    private InsigniaRepository insigniaRepository;
+    
+    @Autowired
+    private ProgramaRepository programaRepository;
+    
+    @Autowired
+    private ProgresoProgramaRepository progresoProgramaRepository;
+    
+    @Autowired
+    private ProgresoRepository progresoRepository;
+    
+    @Autowired
+    private InsigniaService insigniaService;
+    
+    // Nulo hasta la primera evaluación y tras cada cambio de reglas
+    private volatile Indice indice;
+    
+    // Cambia con cada alta o baja de reglas: un índice leído antes del cambio no se publica
+    private final AtomicLong generacion = new AtomicLong();
+    
+    // Usuario → programas con lecciones completadas desde la última evaluación
+    private final Map<UUID, Set<Integer>> pendientes = new ConcurrentHashMap<>();
+    
+    private final AtomicLong evaluados = new AtomicLong();
+    private final AtomicLong otorgadas = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+    
+    @Transactional(readOnly = true)
+    public List<ReglaInsigniaDTO> listarReglas() {
+        return reglaInsigniaRepository.findAllDTO();
+    }
+    
+    @Transactional
+    public ReglaInsigniaDTO crearRegla(ReglaInsigniaDTO reglaDTO) {
+        validar(reglaDTO);
+        ReglaInsignia regla = new ReglaInsignia(reglaDTO.getInsigniaId(), reglaDTO.getTipo(),
+                reglaDTO.getProgramaId(), reglaDTO.getAreaConocimiento(), reglaDTO.getCantidad());
+        if (reglaDTO.getActiva() != null) {
+            regla.setActiva(reglaDTO.getActiva());
+        }
+        regla = reglaInsigniaRepository.save(regla);
+        alConfirmar(this::invalidarIndice);
+        return convertToDTO(regla);
+    }
+    
+    @Transactional
+    public boolean eliminarRegla(Long id) {
+        if (!reglaInsigniaRepository.existsById(id)) {
+            return false;
+        }
+        reglaInsigniaRepository.deleteById(id);
+        alConfirmar(this::invalidarIndice);
+        return true;
+    }
+    
+    // Lecciones completadas por el usuario en la transacción en curso, con el programa de cada una
+    public void registrarCompletadas(UUID usuarioId, Collection<Integer> programaIds) {
+        if (programaIds.isEmpty() || obtenerIndice().vacio()) {
+            return;
+        }
+        Set<Integer> programas = Set.copyOf(programaIds);
+        alConfirmar(() -> pendientes.compute(usuarioId, (clave, actuales) -> {
+            Set<Integer> conjunto = actuales != null ? actuales : new HashSet<>();
+            conjunto.addAll(programas);
+            return conjunto;
+        }));
+    }
+    
+    @Scheduled(fixedDelayString = "${app.insignias.reglas.evaluation-interval-ms:2000}")
+    public void evaluarPeriodicamente() {
+        evaluarPendientes();
+    }
+    
+    // Evalúa a todos los usuarios en cola; devuelve cuántas insignias se otorgaron
+    public synchronized int evaluarPendientes() {
+        if (pendientes.isEmpty()) {
+            return 0;
+        }
+        
+        // Retirar usuario a usuario: lo que llegue durante la evaluación queda para la siguiente
+        int otorgadasAhora = 0;
+        Map<UUID, Set<Integer>> lote = new HashMap<>();
+        for (UUID usuarioId : pendientes.keySet()) {
+            Set<Integer> programas = pendientes.remove(usuarioId);
+            if (programas != null) {
+                lote.put(usuarioId, programas);
+            }
+            if (lote.size() == TAMANO_LOTE) {
+                otorgadasAhora += evaluarLote(lote);
+                lote = new HashMap<>();
+            }
+        }
+        if (!lote.isEmpty()) {
+            otorgadasAhora += evaluarLote(lote);
+        }
+        return otorgadasAhora;
+    }
+    
+    public Map<String, Object> obtenerEstadisticas() {
+        Indice actual = obtenerIndice();
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("reglas_activas", actual.total);
+        estadisticas.put("usuarios_pendientes", pendientes.size());
+        estadisticas.put("usuarios_evaluados", evaluados.get());
+        estadisticas.put("insignias_otorgadas", otorgadas.get());
+        estadisticas.put("errores", errores.get());
+        return estadisticas;
+    }
+    
+    private int evaluarLote(Map<UUID, Set<Integer>> lote) {
+        try {
+            Map<UUID, Set<Long>> ganadas = evaluar(lote);
+            List<InsigniaOtorgadaDTO> nuevas = insigniaService.otorgarInsigniasLote(ganadas);
+            evaluados.addAndGet(lote.size());
+            otorgadas.addAndGet(nuevas.size());
+            return nuevas.size();
+        } catch (RuntimeException e) {
+            // Error de la base de datos: el lote vuelve a la cola para la siguiente evaluación
+            errores.incrementAndGet();
+            lote.forEach((usuarioId, programas) -> pendientes.merge(usuarioId, programas, (actuales, otros) -> {
+                actuales.addAll(otros);
+                return actuales;
+            }));
+            return 0;
+        }
+    }
+    
+    // Insignias cuyas reglas cumple cada usuario del lote
+    private Map<UUID, Set<Long>> evaluar(Map<UUID, Set<Integer>> lote) {
+        Indice actual = obtenerIndice();
+        Map<UUID, Set<Long>> ganadas = new HashMap<>();
+        
+        // Reglas de programa completado: solo los programas que el usuario acaba de avanzar
+        Set<Integer> programasObservados = new HashSet<>();
+        Set<UUID> usuariosPrograma = new HashSet<>();
+        lote.forEach((usuarioId, programas) -> programas.forEach(programaId -> {
+            if (actual.porPrograma.containsKey(programaId)) {
+                programasObservados.add(programaId);
+                usuariosPrograma.add(usuarioId);
+            }
+        }));
+        if (!programasObservados.isEmpty()) {
+            for (Object[] fila : progresoProgramaRepository.findCompletadosByUsuarioIdInAndProgramaIdIn(
+                    usuariosPrograma, programasObservados)) {
+                UUID usuarioId = (UUID) fila[0];
+                Integer programaId = (Integer) fila[1];
+                if (lote.get(usuarioId).contains(programaId)) {
+                    for (ReglaInsignia regla : actual.porPrograma.get(programaId)) {
+                        ganadas.computeIfAbsent(usuarioId, clave -> new HashSet<>()).add(regla.getInsigniaId());
+                    }
+                }
+            }
+        }
+        
+        // Reglas por área: las áreas de los programas avanzados que tengan reglas
+        if (!actual.porArea.isEmpty()) {
+            Set<Integer> programas = new HashSet<>();
+            lote.values().forEach(programas::addAll);
+            Map<Integer, String> areaPorPrograma = new HashMap<>();
+            for (Object[] fila : programaRepository.findAreasByIdIn(programas)) {
+                if (fila[1] != null && actual.porArea.containsKey(fila[1])) {
+                    areaPorPrograma.put((Integer) fila[0], (String) fila[1]);
+                }
+            }
+            Map<UUID, Set<String>> areasPorUsuario = new HashMap<>();
+            lote.forEach((usuarioId, programasUsuario) -> programasUsuario.forEach(programaId -> {
+                String area = areaPorPrograma.get(programaId);
+                if (area != null) {
+                    areasPorUsuario.computeIfAbsent(usuarioId, clave -> new HashSet<>()).add(area);
+                }
+            }));
+            if (!areasPorUsuario.isEmpty()) {
+                for (Object[] fila : progresoProgramaRepository.findCompletadosPorArea(areasPorUsuario.keySet(),
+                        new HashSet<>(areaPorPrograma.values()))) {
+                    UUID usuarioId = (UUID) fila[0];
+                    String area = (String) fila[1];
+                    long completados = ((Number) fila[2]).longValue();
+                    if (!areasPorUsuario.get(usuarioId).contains(area)) {
+                        continue;
+                    }
+                    for (ReglaInsignia regla : actual.porArea.get(area)) {
+                        if (completados >= regla.getCantidad()) {
+                            ganadas.computeIfAbsent(usuarioId, clave -> new HashSet<>()).add(regla.getInsigniaId());
+                        }
+                    }
+                }
+            }
+        }
+        
+        // Reglas semanales: observan cualquier lección completada
+        if (!actual.semanales.isEmpty()) {
+            LocalDateTime desde = LocalDateTime.now().minusDays(DIAS_SEMANA);
+            for (Object[] fila : progresoRepository.findLeccionesCompletadasDesde(lote.keySet(), desde)) {
+                UUID usuarioId = (UUID) fila[0];
+                long completadas = ((Number) fila[1]).longValue();
+                for (ReglaInsignia regla : actual.semanales) {
+                    if (completadas >= regla.getCantidad()) {
+                        ganadas.computeIfAbsent(usuarioId, clave -> new HashSet<>()).add(regla.getInsigniaId());
+                    }
+                }
+            }
+        }
+        return ganadas;
+    }
+    
+    private Indice obtenerIndice() {
+        Indice actual = indice;
+        if (actual == null) {
+            long leida = generacion.get();
+            actual = new Indice(reglaInsigniaRepository.findActivas());
+            if (generacion.get() == leida) {
+                indice = actual;
+            }
+        }
+        return actual;
+    }
+    
+    private void invalidarIndice() {
+        generacion.incrementAndGet();
+        indice = null;
+    }
+    
+    private void validar(ReglaInsigniaDTO regla) {
+        if (regla.getInsigniaId() == null || !insigniaRepository.existsById(regla.getInsigniaId())) {
+            throw new IllegalArgumentException("Insignia no encontrada");
+        }
+        if (regla.getTipo() == null) {
+            throw new IllegalArgumentException("El tipo de regla es obligatorio");
+        }
+        switch (regla.getTipo()) {
+            case ReglaInsignia.PROGRAMA_COMPLETADO:
+                if (regla.getProgramaId() == null || !programaRepository.existsById(regla.getProgramaId())) {
+                    throw new IllegalArgumentException("Programa no encontrado");
+                }
+                break;
+            case ReglaInsignia.PROGRAMAS_AREA:
+                if (regla.getAreaConocimiento() == null || regla.getAreaConocimiento().isBlank()) {
+                    throw new IllegalArgumentException("La regla por área requiere area_conocimiento");
+                }
+                validarCantidad(regla.getCantidad());
+                break;
+            case ReglaInsignia.LECCIONES_SEMANA:
+                validarCantidad(regla.getCantidad());
+                break;
+            default:
+                throw new IllegalArgumentException("Tipo de regla no soportado: " + regla.getTipo());
+        }
+    }
+    
+    private static void validarCantidad(Integer cantidad) {
+        if (cantidad == null || cantidad < 1) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor que cero");
+        }
+    }
+    
+    private ReglaInsigniaDTO convertToDTO(ReglaInsignia regla) {
+        return new ReglaInsigniaDTO(regla.getId(), regla.getInsigniaId(), regla.getTipo(), regla.getProgramaId(),
+                regla.getAreaConocimiento(), regla.getCantidad(), regla.getActiva());
+    }
+    
+    private void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+    
+    // Reglas activas agrupadas por lo que observan
+    private static final class Indice {
+        private final Map<Integer, List<ReglaInsignia>> porPrograma = new HashMap<>();
+        private final Map<String, List<ReglaInsignia>> porArea = new HashMap<>();
+        private final List<ReglaInsignia> semanales = new ArrayList<>();
+        private final int total;
+        
+        private Indice(List<ReglaInsignia> reglas) {
+            for (ReglaInsignia regla : reglas) {
+                switch (regla.getTipo()) {
+                    case ReglaInsignia.PROGRAMA_COMPLETADO:
+                        porPrograma.computeIfAbsent(regla.getProgramaId(), clave -> new ArrayList<>()).add(regla);
+                        break;
+                    case ReglaInsignia.PROGRAMAS_AREA:
+                        porArea.computeIfAbsent(regla.getAreaConocimiento(), clave -> new ArrayList<>()).add(regla);
+                        break;
+                    case ReglaInsignia.LECCIONES_SEMANA:
+                        semanales.add(regla);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            total = reglas.size();
+        }
+        
+        private boolean vacio() {
+            return total == 0;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.entity.TiempoEstudio;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sesiones de estudio abiertas, una por usuario, alimentadas por los eventos de inicio, latido y
+ * fin que envía el reproductor. Los latidos extienden el tramo en curso; una pausa mayor que el
+ * tiempo de inactividad cierra el tramo en el último latido, y un evento de otra lección lo cierra
+ * en ese momento. Así dos pestañas abiertas no cuentan el mismo tiempo dos veces. Los tramos
+ * cerrados se reparten por día y se acumulan en memoria hasta el vaciado periódico, que suma los
+ * totales a tiempo_estudio.
+ */
+@Component
+public class SesionesEstudio {
+    
+    // Tiempo sin latidos a partir del cual la sesión se da por abandonada
+    @Value("${app.estudio.idle-timeout-seconds:120}")
+    private long inactividadSegundos;
+    
+    @Autowired
+    private TiempoEstudioService tiempoEstudioService;
+    
+    private final ZoneId zona = ZoneId.systemDefault();
+    
+    // Sesión abierta de cada usuario; se accede siempre con el monitor del propio mapa
+    private final Map<UUID, Sesion> sesiones = new HashMap<>();
+    
+    // "usuario:lección:día" → milisegundos de tramos cerrados sin persistir
+    private Map<String, Pendiente> pendientes = new HashMap<>();
+    
+    private final AtomicLong eventos = new AtomicLong();
+    private final AtomicLong segundosEscritos = new AtomicLong();
+    private final AtomicLong vaciados = new AtomicLong();
+    
+    // Inicio y latido se tratan igual: un latido sin sesión abierta la abre
+    public void registrarActividad(UUID usuarioId, Integer leccionId) {
+        registrarActividad(usuarioId, leccionId, Instant.now());
+    }
+    
+    public void detener(UUID usuarioId, Integer leccionId) {
+        detener(usuarioId, leccionId, Instant.now());
+    }
+    
+    void registrarActividad(UUID usuarioId, Integer leccionId, Instant ahora) {
+        validar(usuarioId, leccionId);
+        eventos.incrementAndGet();
+        synchronized (sesiones) {
+            Sesion sesion = sesiones.get(usuarioId);
+            if (sesion != null && inactiva(sesion, ahora)) {
+                cerrarTramo(usuarioId, sesion, sesion.ultimoLatido);
+                sesion = null;
+            } else if (sesion != null && !sesion.leccionId.equals(leccionId)) {
+                // Cambio de lección: el tiempo hasta ahora es de la anterior
+                cerrarTramo(usuarioId, sesion, ahora);
+                sesion = null;
+            }
+            if (sesion == null) {
+                sesiones.put(usuarioId, new Sesion(leccionId, ahora));
+            } else {
+                sesion.ultimoLatido = ahora;
+            }
+        }
+    }
+    
+    void detener(UUID usuarioId, Integer leccionId, Instant ahora) {
+        validar(usuarioId, leccionId);
+        eventos.incrementAndGet();
+        synchronized (sesiones) {
+            Sesion sesion = sesiones.get(usuarioId);
+            // El fin de una lección que ya no es la activa no afecta a la sesión en curso
+            if (sesion != null && sesion.leccionId.equals(leccionId)) {
+                cerrarTramo(usuarioId, sesion, inactiva(sesion, ahora) ? sesion.ultimoLatido : ahora);
+                sesiones.remove(usuarioId);
+            }
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${app.estudio.flush-interval-ms:30000}")
+    public void vaciarPeriodicamente() {
+        vaciar(Instant.now());
+    }
+    
+    // Al detener la aplicación las sesiones abiertas se cierran en su último latido
+    @PreDestroy
+    public void vaciarAlDetener() {
+        synchronized (sesiones) {
+            for (Map.Entry<UUID, Sesion> entrada : sesiones.entrySet()) {
+                cerrarTramo(entrada.getKey(), entrada.getValue(), entrada.getValue().ultimoLatido);
+            }
+            sesiones.clear();
+        }
+        vaciar(Instant.now());
+    }
+    
+    // Cierra las sesiones inactivas, consolida hasta el último latido las abiertas y persiste los
+    // totales; devuelve los segundos escritos
+    synchronized long vaciar(Instant ahora) {
+        Map<String, Pendiente> lote;
+        synchronized (sesiones) {
+            Iterator<Map.Entry<UUID, Sesion>> iterador = sesiones.entrySet().iterator();
+            while (iterador.hasNext()) {
+                Map.Entry<UUID, Sesion> entrada = iterador.next();
+                Sesion sesion = entrada.getValue();
+                // Tras cerrar el tramo la sesión sigue abierta desde su último latido
+                cerrarTramo(entrada.getKey(), sesion, sesion.ultimoLatido);
+                if (inactiva(sesion, ahora)) {
+                    iterador.remove();
+                }
+            }
+            lote = pendientes;
+            pendientes = new HashMap<>();
+        }
+        
+        List<TiempoEstudio> totales = new ArrayList<>();
+        List<Pendiente> incluidos = new ArrayList<>();
+        for (Pendiente pendiente : lote.values()) {
+            long segundos = Math.round(pendiente.milisegundos / 1000.0);
+            if (segundos > 0) {
+                totales.add(new TiempoEstudio(pendiente.usuarioId, pendiente.leccionId, pendiente.fecha, segundos));
+                incluidos.add(pendiente);
+            }
+        }
+        
+        long escritos = 0;
+        for (int inicio = 0; inicio < totales.size(); inicio += TiempoEstudioService.MAX_LOTE) {
+            int fin = Math.min(inicio + TiempoEstudioService.MAX_LOTE, totales.size());
+            try {
+                tiempoEstudioService.acumular(totales.subList(inicio, fin));
+                for (TiempoEstudio total : totales.subList(inicio, fin)) {
+                    escritos += total.getSegundos();
+                }
+            } catch (RuntimeException e) {
+                // Error de la base de datos: conservarlos para el próximo vaciado
+                synchronized (sesiones) {
+                    incluidos.subList(inicio, fin).forEach(p -> sumar(p.usuarioId, p.leccionId, p.fecha, p.milisegundos));
+                }
+            }
+        }
+        segundosEscritos.addAndGet(escritos);
+        vaciados.incrementAndGet();
+        return escritos;
+    }
+    
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        synchronized (sesiones) {
+            estadisticas.put("sesiones_abiertas", sesiones.size());
+            estadisticas.put("totales_pendientes", pendientes.size());
+        }
+        estadisticas.put("eventos", eventos.get());
+        estadisticas.put("segundos_escritos", segundosEscritos.get());
+        estadisticas.put("vaciados", vaciados.get());
+        return estadisticas;
+    }
+    
+    private void validar(UUID usuarioId, Integer leccionId) {
+        if (usuarioId == null || leccionId == null) {
+            throw new IllegalArgumentException("El evento de estudio requiere usuario_id y leccion_id");
+        }
+    }
+    
+    private boolean inactiva(Sesion sesion, Instant ahora) {
+        return Duration.between(sesion.ultimoLatido, ahora).getSeconds() > inactividadSegundos;
+    }
+    
+    // Reparte el tramo [inicioTramo, fin) entre los días que abarca
+    private void cerrarTramo(UUID usuarioId, Sesion sesion, Instant fin) {
+        Instant desde = sesion.inicioTramo;
+        while (desde.isBefore(fin)) {
+            LocalDate dia = LocalDate.ofInstant(desde, zona);
+            Instant finDia = dia.plusDays(1).atStartOfDay(zona).toInstant();
+            Instant hasta = fin.isBefore(finDia) ? fin : finDia;
+            sumar(usuarioId, sesion.leccionId, dia, Duration.between(desde, hasta).toMillis());
+            desde = hasta;
+        }
+        sesion.inicioTramo = fin;
+    }
+    
+    private void sumar(UUID usuarioId, Integer leccionId, LocalDate fecha, long milisegundos) {
+        pendientes.computeIfAbsent(usuarioId + ":" + leccionId + ":" + fecha,
+                clave -> new Pendiente(usuarioId, leccionId, fecha)).milisegundos += milisegundos;
+    }
+    
+    private static final class Sesion {
+        private final Integer leccionId;
+        private Instant inicioTramo;
+        private Instant ultimoLatido;
+        
+        private Sesion(Integer leccionId, Instant inicio) {
+            this.leccionId = leccionId;
+            this.inicioTramo = inicio;
+            this.ultimoLatido = inicio;
+        }
+    }
+    
+    private static final class Pendiente {
+        private final UUID usuarioId;
+        private final Integer leccionId;
+        private final LocalDate fecha;
+        private long milisegundos;
+        
+        private Pendiente(UUID usuarioId, Integer leccionId, LocalDate fecha) {
+            this.usuarioId = usuarioId;
+            this.leccionId = leccionId;
+            this.fecha = fecha;
+        }
+    }
+}
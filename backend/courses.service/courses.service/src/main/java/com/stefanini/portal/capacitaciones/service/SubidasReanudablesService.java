@@ -0,0 +1,425 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.dto.SubidaArchivoDTO;
+import com.stefanini.portal.capacitaciones.entity.Material;
+import com.stefanini.portal.capacitaciones.entity.SubidaArchivo;
+import com.stefanini.portal.capacitaciones.repository.SubidaArchivoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Subidas reanudables de materiales grandes. Se abre una sesión con el nombre y el tamaño total;
+ * los fragmentos llegan con su desplazamiento, en cualquier orden y en paralelo, y se escriben con
+ * escrituras posicionales sobre un archivo temporal. El SHA-256 se calcula de forma incremental
+ * sobre el prefijo contiguo a medida que crece, así que finalizar no relee el archivo completo; la
+ * finalización lo mueve al directorio de subidas y crea el Material en una sola transacción.
+ * El prefijo confirmado se guarda en subidas_archivos para reanudar tras un reinicio; lo recibido
+ * fuera de orden por encima de él solo vive en memoria y, tras un reinicio, se vuelve a pedir.
+ */
+@Service
+public class SubidasReanudablesService {
+    
+    // Subdirectorio de uploadDir con los temporales: mismo sistema de archivos, el movimiento final es atómico
+    private static final String DIRECTORIO_TEMPORALES = ".subidas";
+    
+    private static final int TAMANO_BUFFER = 64 * 1024;
+    
+    @Value("${app.file.upload-dir:uploads}")
+    private String uploadDir;
+    
+    @Value("${app.file.resumable.max-size:10737418240}")
+    private long tamañoMaximo;
+    
+    @Value("${app.file.resumable.max-chunk-size:67108864}")
+    private long tamañoMaximoFragmento;
+    
+    // Las subidas sin actividad durante este tiempo se descartan junto con su temporal
+    @Value("${app.file.resumable.expiry-hours:24}")
+    private long horasExpiracion;
+    
+    @Autowired
+    private SubidaArchivoRepository subidaArchivoRepository;
+    
+    @Autowired
+    private FileStorageService fileStorageService;
+    
+    // Subidas abiertas con actividad desde el arranque; las demás se cargan al primer acceso
+    private final Map<UUID, Estado> estados = new ConcurrentHashMap<>();
+    
+    @Transactional(rollbackFor = Exception.class)
+    public SubidaArchivoDTO crearSubida(String nombreOriginal, Long tamañoBytes, String descripcion, String sha256)
+            throws IOException {
+        if (tamañoBytes == null || tamañoBytes <= 0) {
+            throw new IllegalArgumentException("El tamaño del archivo debe ser mayor que cero");
+        }
+        fileStorageService.validarNombreYTamaño(nombreOriginal, tamañoBytes, tamañoMaximo);
+        if (sha256 != null && !sha256.matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("El sha256 debe tener 64 caracteres hexadecimales");
+        }
+        
+        SubidaArchivo subida = new SubidaArchivo(nombreOriginal, descripcion, tamañoBytes,
+                sha256 != null ? sha256.toLowerCase() : null);
+        Files.createDirectories(rutaTemporal(subida.getId()).getParent());
+        Files.createFile(rutaTemporal(subida.getId()));
+        subida = subidaArchivoRepository.save(subida);
+        
+        Estado estado = new Estado(subida, 0);
+        estados.put(subida.getId(), estado);
+        return convertToDTO(subida, estado);
+    }
+    
+    // Escribe un fragmento en su posición. Sin transacción: el cuerpo puede tardar en llegar y solo
+    // se toca la base de datos para avanzar el prefijo confirmado
+    public SubidaArchivoDTO escribirFragmento(UUID id, long desplazamiento, long longitud, InputStream cuerpo)
+            throws IOException {
+        Estado estado = estados.get(id);
+        if (estado == null) {
+            estado = cargarEstado(buscarAbierta(id));
+        }
+        if (longitud <= 0 || longitud > tamañoMaximoFragmento) {
+            throw new IllegalArgumentException("El fragmento debe tener entre 1 y " + tamañoMaximoFragmento + " bytes");
+        }
+        if (desplazamiento < 0 || desplazamiento + longitud > estado.tamaño) {
+            throw new IllegalArgumentException("El fragmento excede el tamaño declarado (" + estado.tamaño + " bytes)");
+        }
+        
+        Path rutaTemporal = rutaTemporal(id);
+        estado.iniciarEscritura();
+        try {
+            long escritos = 0;
+            try (FileChannel canal = FileChannel.open(rutaTemporal, StandardOpenOption.WRITE);
+                 ReadableByteChannel origen = Channels.newChannel(cuerpo)) {
+                ByteBuffer buffer = ByteBuffer.allocate(TAMANO_BUFFER);
+                while (escritos < longitud) {
+                    buffer.limit((int) Math.min(buffer.capacity(), longitud - escritos));
+                    if (origen.read(buffer) < 0) {
+                        break;
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        escritos += canal.write(buffer, desplazamiento + escritos);
+                    }
+                    buffer.clear();
+                }
+            }
+            if (escritos < longitud) {
+                throw new IllegalArgumentException("El fragmento llegó incompleto: " + escritos + " de " + longitud + " bytes");
+            }
+            
+            long anterior = estado.prefijo();
+            long confirmados = estado.registrar(desplazamiento, desplazamiento + longitud);
+            if (confirmados > anterior) {
+                estado.avanzarHash(rutaTemporal, false);
+                subidaArchivoRepository.confirmarBytes(id, confirmados, LocalDateTime.now());
+            }
+        } finally {
+            estado.terminarEscritura();
+        }
+        return new SubidaArchivoDTO(id, estado.nombreOriginal, estado.tamaño, estado.prefijo(), estado.rangos(), null);
+    }
+    
+    @Transactional(readOnly = true)
+    public Optional<SubidaArchivoDTO> obtenerSubida(UUID id) {
+        return subidaArchivoRepository.findById(id).map(subida -> {
+            if (subida.getMaterialId() != null) {
+                return convertToDTO(subida, null);
+            }
+            return convertToDTO(subida, cargarEstado(subida));
+        });
+    }
+    
+    // Comprueba que llegaron todos los bytes y el hash, y crea el Material. Repetirla sobre una subida
+    // ya finalizada devuelve el mismo Material
+    @Transactional(rollbackFor = Exception.class)
+    public Material finalizarSubida(UUID id) throws IOException {
+        SubidaArchivo subida = subidaArchivoRepository.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("Subida no encontrada"));
+        if (subida.getMaterialId() != null) {
+            return fileStorageService.obtenerMaterialPorId(subida.getMaterialId())
+                    .orElseThrow(() -> new NoSuchElementException("Material no encontrado"));
+        }
+        
+        // Cerrada hasta que la transacción termine: si no confirma se puede volver a intentar
+        Estado estado = cargarEstado(subida);
+        estado.cerrar();
+        alTerminar(estado, () -> estados.remove(id));
+        
+        Path rutaTemporal = rutaTemporal(id);
+        try (FileChannel canal = FileChannel.open(rutaTemporal, StandardOpenOption.WRITE)) {
+            canal.force(true);
+        }
+        String hash = estado.avanzarHash(rutaTemporal, true);
+        if (subida.getSha256() != null && !subida.getSha256().equals(hash)) {
+            throw new IllegalArgumentException("El SHA-256 del archivo recibido (" + hash +
+                    ") no coincide con el declarado; cancele la subida y vuelva a enviarla");
+        }
+        
+        Material material = fileStorageService.registrarArchivo(rutaTemporal, subida.getNombreOriginal(),
+                subida.getDescripcion(), hash);
+        subida.setMaterialId(material.getId());
+        subida.setBytesConfirmados(subida.getTamañoBytes());
+        subida.setFechaActualizacion(LocalDateTime.now());
+        subidaArchivoRepository.save(subida);
+        return material;
+    }
+    
+    // Descarta una subida abierta y su temporal; devuelve false si no existe
+    @Transactional(rollbackFor = Exception.class)
+    public boolean cancelarSubida(UUID id) {
+        Optional<SubidaArchivo> subida = subidaArchivoRepository.findById(id);
+        if (subida.isEmpty()) {
+            return false;
+        }
+        if (subida.get().getMaterialId() != null) {
+            throw new IllegalStateException("La subida ya fue finalizada");
+        }
+        
+        Estado estado = cargarEstado(subida.get());
+        estado.cerrar();
+        alTerminar(estado, () -> {
+            estados.remove(id);
+            try {
+                Files.deleteIfExists(rutaTemporal(id));
+            } catch (IOException e) {
+                // El temporal queda huérfano en el directorio de subidas; la sesión ya no existe
+            }
+        });
+        subidaArchivoRepository.delete(subida.get());
+        return true;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.file.resumable.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void descartarInactivas() {
+        LocalDateTime limite = LocalDateTime.now().minusHours(horasExpiracion);
+        for (SubidaArchivo subida : subidaArchivoRepository.findInactivasDesde(limite)) {
+            // Los fragmentos fuera de orden no actualizan la fecha en la base de datos
+            Estado estado = estados.get(subida.getId());
+            if (estado != null && estado.ultimaActividad.isAfter(limite)) {
+                continue;
+            }
+            if (subida.getMaterialId() == null) {
+                try {
+                    Files.deleteIfExists(rutaTemporal(subida.getId()));
+                } catch (IOException e) {
+                    continue;
+                }
+            }
+            estados.remove(subida.getId());
+            subidaArchivoRepository.delete(subida);
+        }
+    }
+    
+    private SubidaArchivo buscarAbierta(UUID id) {
+        SubidaArchivo subida = subidaArchivoRepository.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("Subida no encontrada"));
+        if (subida.getMaterialId() != null) {
+            throw new IllegalStateException("La subida ya fue finalizada");
+        }
+        return subida;
+    }
+    
+    // Tras un reinicio se parte del prefijo confirmado, sin pasar de lo que realmente hay en disco;
+    // el hash se recalcula sobre ese prefijo en el siguiente avance
+    private Estado cargarEstado(SubidaArchivo subida) {
+        return estados.computeIfAbsent(subida.getId(), id -> {
+            try {
+                Path rutaTemporal = rutaTemporal(id);
+                if (!Files.exists(rutaTemporal)) {
+                    Files.createDirectories(rutaTemporal.getParent());
+                    Files.createFile(rutaTemporal);
+                }
+                return new Estado(subida, Math.min(subida.getBytesConfirmados(), Files.size(rutaTemporal)));
+            } catch (IOException e) {
+                throw new RuntimeException("Error al abrir la subida: " + e.getMessage(), e);
+            }
+        });
+    }
+    
+    private Path rutaTemporal(UUID id) {
+        return Paths.get(uploadDir).resolve(DIRECTORIO_TEMPORALES).resolve(id + ".part");
+    }
+    
+    // La subida cerrada se reabre si la transacción no confirma
+    private void alTerminar(Estado estado, Runnable alConfirmar) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int resultado) {
+                if (resultado == STATUS_COMMITTED) {
+                    alConfirmar.run();
+                } else {
+                    estado.reabrir();
+                }
+            }
+        });
+    }
+    
+    private SubidaArchivoDTO convertToDTO(SubidaArchivo subida, Estado estado) {
+        return new SubidaArchivoDTO(
+                subida.getId(),
+                subida.getNombreOriginal(),
+                subida.getTamañoBytes(),
+                estado != null ? estado.prefijo() : subida.getBytesConfirmados(),
+                estado != null ? estado.rangos() : List.of(new long[]{0, subida.getTamañoBytes()}),
+                subida.getMaterialId()
+        );
+    }
+    
+    // Rangos recibidos y hash incremental de una subida abierta
+    private static final class Estado {
+        
+        private final String nombreOriginal;
+        private final long tamaño;
+        
+        // inicio → fin (exclusivo) de lo recibido, sin solapes ni rangos contiguos; protegido por this
+        private final TreeMap<Long, Long> recibidos = new TreeMap<>();
+        private int escriturasEnCurso;
+        private boolean cerrada;
+        
+        // Un solo hilo avanza el hash; los demás siguen escribiendo sin esperarlo
+        private final ReentrantLock bloqueoHash = new ReentrantLock();
+        private final MessageDigest digest;
+        private volatile long hashHasta;
+        
+        private volatile LocalDateTime ultimaActividad = LocalDateTime.now();
+        
+        Estado(SubidaArchivo subida, long confirmados) {
+            this.nombreOriginal = subida.getNombreOriginal();
+            this.tamaño = subida.getTamañoBytes();
+            if (confirmados > 0) {
+                recibidos.put(0L, confirmados);
+            }
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        synchronized void iniciarEscritura() {
+            if (cerrada) {
+                throw new IllegalStateException("La subida se está finalizando o fue cancelada");
+            }
+            escriturasEnCurso++;
+            ultimaActividad = LocalDateTime.now();
+        }
+        
+        synchronized void terminarEscritura() {
+            escriturasEnCurso--;
+        }
+        
+        synchronized void cerrar() {
+            if (cerrada) {
+                throw new IllegalStateException("La subida se está finalizando o fue cancelada");
+            }
+            if (escriturasEnCurso > 0) {
+                throw new IllegalStateException("Hay fragmentos en curso");
+            }
+            cerrada = true;
+        }
+        
+        synchronized void reabrir() {
+            cerrada = false;
+        }
+        
+        // Añade [inicio, fin) fusionándolo con los vecinos; devuelve el prefijo contiguo resultante
+        synchronized long registrar(long inicio, long fin) {
+            Map.Entry<Long, Long> anterior = recibidos.floorEntry(inicio);
+            if (anterior != null && anterior.getValue() >= inicio) {
+                inicio = anterior.getKey();
+                fin = Math.max(fin, anterior.getValue());
+            }
+            Map.Entry<Long, Long> siguiente = recibidos.ceilingEntry(inicio);
+            while (siguiente != null && siguiente.getKey() <= fin) {
+                fin = Math.max(fin, siguiente.getValue());
+                recibidos.remove(siguiente.getKey());
+                siguiente = recibidos.ceilingEntry(inicio);
+            }
+            recibidos.put(inicio, fin);
+            return prefijo();
+        }
+        
+        synchronized long prefijo() {
+            return recibidos.getOrDefault(0L, 0L);
+        }
+        
+        synchronized List<long[]> rangos() {
+            List<long[]> rangos = new ArrayList<>();
+            recibidos.forEach((inicio, fin) -> rangos.add(new long[]{inicio, fin}));
+            return rangos;
+        }
+        
+        // Lleva el hash hasta el prefijo contiguo leyendo solo los bytes nuevos. Sin completo, si otro
+        // hilo ya lo está avanzando se le deja (vuelve a mirar el prefijo antes de soltar); con completo
+        // espera y exige el archivo entero, y devuelve el SHA-256 en hexadecimal
+        String avanzarHash(Path rutaTemporal, boolean completo) throws IOException {
+            do {
+                if (completo) {
+                    bloqueoHash.lock();
+                } else if (!bloqueoHash.tryLock()) {
+                    return null;
+                }
+                try {
+                    long hasta = prefijo();
+                    if (hashHasta < hasta) {
+                        try (FileChannel canal = FileChannel.open(rutaTemporal, StandardOpenOption.READ)) {
+                            ByteBuffer buffer = ByteBuffer.allocate(TAMANO_BUFFER);
+                            while (hashHasta < hasta) {
+                                buffer.limit((int) Math.min(buffer.capacity(), hasta - hashHasta));
+                                int leidos = canal.read(buffer, hashHasta);
+                                if (leidos < 0) {
+                                    throw new IOException("El archivo temporal es más corto de lo recibido");
+                                }
+                                buffer.flip();
+                                digest.update(buffer);
+                                buffer.clear();
+                                hashHasta += leidos;
+                            }
+                        }
+                    }
+                    if (completo) {
+                        if (hashHasta < tamaño) {
+                            throw new IllegalStateException("Faltan bytes por recibir: " + hashHasta + " de " + tamaño);
+                        }
+                        // clone conserva el digest por si la transacción no confirma y se reintenta
+                        return HexFormat.of().formatHex(((MessageDigest) digest.clone()).digest());
+                    }
+                } catch (CloneNotSupportedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    bloqueoHash.unlock();
+                }
+            } while (hashHasta < prefijo());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.stefanini.portal.capacitaciones.service;
+
+import com.stefanini.portal.capacitaciones.entity.TiempoEstudio;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Persistencia de los totales diarios de estudio. Cada vaciado de las sesiones suma sus segundos
+ * a la fila (usuario, lección, día) con un único INSERT ... ON CONFLICT por lote.
+ */
+@Service
+@Transactional
+public class TiempoEstudioService {
+    
+    // 4 parámetros por fila, muy por debajo del límite de parámetros de PostgreSQL
+    public static final int MAX_LOTE = 1000;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    // Suma los segundos de cada total a su fila; las lecciones ya borradas se descartan
+    public void acumular(List<TiempoEstudio> totales) {
+        if (totales.isEmpty()) {
+            return;
+        }
+        if (totales.size() > MAX_LOTE) {
+            throw new IllegalArgumentException("El lote no puede superar " + MAX_LOTE + " totales");
+        }
+        
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO capacitaciones.tiempo_estudio AS t (usuario_id, leccion_id, fecha, segundos) " +
+                "SELECT v.usuario_id, v.leccion_id, v.fecha, v.segundos FROM (VALUES ");
+        for (int i = 0; i < totales.size(); i++) {
+            sql.append(i == 0 ? "" : ", ")
+               .append("(CAST(:u").append(i).append(" AS uuid), CAST(:l").append(i).append(" AS int4), ")
+               .append("CAST(:f").append(i).append(" AS date), CAST(:s").append(i).append(" AS int8))");
+        }
+        sql.append(") AS v (usuario_id, leccion_id, fecha, segundos) ")
+           .append("WHERE EXISTS (SELECT 1 FROM capacitaciones.lecciones l WHERE l.id = v.leccion_id) ")
+           .append("ON CONFLICT (usuario_id, leccion_id, fecha) DO UPDATE SET segundos = t.segundos + EXCLUDED.segundos");
+        
+        Query consulta = entityManager.createNativeQuery(sql.toString());
+        for (int i = 0; i < totales.size(); i++) {
+            TiempoEstudio total = totales.get(i);
+            consulta.setParameter("u" + i, total.getUsuarioId());
+            consulta.setParameter("l" + i, total.getLeccionId());
+            consulta.setParameter("f" + i, total.getFecha());
+            consulta.setParameter("s" + i, total.getSegundos());
+        }
+        consulta.executeUpdate();
+    }
+}
@@ -0,0 +1,107 @@
+package com.stefanini.portal.capacitaciones;
+
+import com.stefanini.portal.capacitaciones.dto.LeccionDTO;
+import com.stefanini.portal.capacitaciones.dto.ProgramaCompletoDTO;
+import com.stefanini.portal.capacitaciones.entity.Programa;
+import com.stefanini.portal.capacitaciones.repository.LeccionRepository;
+import com.stefanini.portal.capacitaciones.service.ProgramaCompletoService;
+import com.stefanini.portal.capacitaciones.service.ProgresoService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * El número de sentencias de los endpoints de progreso no debe depender de cuántas lecciones
+ * tenga el usuario: se compara un usuario con una lección contra otro con muchas.
+ * Los datos de prueba se crean en una transacción que se revierte al terminar.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ProgresoConsultasTests {
+
+	private static final int PROGRAMAS = 3;
+	private static final int LECCIONES_POR_PROGRAMA = 20;
+
+	@Autowired
+	private ProgresoService progresoService;
+
+	@Autowired
+	private ProgramaCompletoService programaCompletoService;
+
+	@Autowired
+	private LeccionRepository leccionRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Test
+	void consultasNoCrecenConLasLecciones() {
+		TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+		transaccion.executeWithoutResult(estado -> {
+			UUID usuarioConUnaLeccion = UUID.randomUUID();
+			UUID usuarioConMuchasLecciones = UUID.randomUUID();
+			for (int p = 1; p <= PROGRAMAS; p++) {
+				Programa programa = crearPrograma(p);
+				int l = 0;
+				for (LeccionDTO leccion : leccionRepository.findDTOByProgramaId(programa.getId())) {
+					Integer leccionId = leccion.getId();
+					progresoService.actualizarProgreso(usuarioConMuchasLecciones, leccionId, l++ % 2 == 0 ? 100.0 : 40.0);
+					if (p == 1 && l == 1) {
+						progresoService.actualizarProgreso(usuarioConUnaLeccion, leccionId, 40.0);
+					}
+				}
+			}
+			entityManager.flush();
+			entityManager.clear();
+
+			assertEquals(PROGRAMAS * LECCIONES_POR_PROGRAMA,
+					progresoService.getProgresoByUsuarioId(usuarioConMuchasLecciones).size());
+			assertEquals(PROGRAMAS, progresoService.getProgresoProgramasByUsuarioId(usuarioConMuchasLecciones).size());
+
+			assertEquals(contarSentencias(() -> progresoService.getProgresoByUsuarioId(usuarioConUnaLeccion)),
+					contarSentencias(() -> progresoService.getProgresoByUsuarioId(usuarioConMuchasLecciones)));
+			assertEquals(contarSentencias(() -> progresoService.getProgresoProgramasByUsuarioId(usuarioConUnaLeccion)),
+					contarSentencias(() -> progresoService.getProgresoProgramasByUsuarioId(usuarioConMuchasLecciones)));
+			assertEquals(contarSentencias(() -> progresoService.getEstadisticasUsuario(usuarioConUnaLeccion)),
+					contarSentencias(() -> progresoService.getEstadisticasUsuario(usuarioConMuchasLecciones)));
+
+			estado.setRollbackOnly();
+		});
+	}
+
+	// Sentencias preparadas por la lectura, partiendo de un contexto de persistencia vacío
+	private long contarSentencias(Runnable lectura) {
+		Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		entityManager.clear();
+		estadisticas.clear();
+		lectura.run();
+		return estadisticas.getPrepareStatementCount();
+	}
+
+	private Programa crearPrograma(int numero) {
+		ProgramaCompletoDTO programa = new ProgramaCompletoDTO("Progreso " + numero, "Programa de prueba", "Pruebas");
+		ProgramaCompletoDTO.UnidadCompletaDTO unidad = new ProgramaCompletoDTO.UnidadCompletaDTO("Unidad 1", 1);
+		for (int l = 1; l <= LECCIONES_POR_PROGRAMA; l++) {
+			unidad.getLecciones().add(new ProgramaCompletoDTO.LeccionCompletaDTO(
+					"Lección " + l, l, "link", "https://example.com/" + numero + "/" + l));
+		}
+		programa.getUnidades().add(unidad);
+		return programaCompletoService.persistirProgramaCompleto(programa);
+	}
+}
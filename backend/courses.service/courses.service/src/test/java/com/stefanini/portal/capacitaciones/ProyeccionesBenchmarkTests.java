@@ -0,0 +1,275 @@
+package com.stefanini.portal.capacitaciones;
+
+import com.stefanini.portal.capacitaciones.dto.InsigniaDTO;
+import com.stefanini.portal.capacitaciones.dto.InsigniaOtorgadaDTO;
+import com.stefanini.portal.capacitaciones.dto.LeccionDTO;
+import com.stefanini.portal.capacitaciones.dto.ProgramaCompletoDTO;
+import com.stefanini.portal.capacitaciones.entity.Insignia;
+import com.stefanini.portal.capacitaciones.entity.InsigniaOtorgada;
+import com.stefanini.portal.capacitaciones.entity.Leccion;
+import com.stefanini.portal.capacitaciones.entity.Programa;
+import com.stefanini.portal.capacitaciones.entity.Unidad;
+import com.stefanini.portal.capacitaciones.repository.InsigniaOtorgadaRepository;
+import com.stefanini.portal.capacitaciones.repository.InsigniaRepository;
+import com.stefanini.portal.capacitaciones.repository.LeccionRepository;
+import com.stefanini.portal.capacitaciones.repository.UnidadRepository;
+import com.stefanini.portal.capacitaciones.service.CatalogoInsignias;
+import com.stefanini.portal.capacitaciones.service.InsigniaService;
+import com.stefanini.portal.capacitaciones.service.ProgramaArbolLoader;
+import com.stefanini.portal.capacitaciones.service.ProgramaCompletoService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compara la lectura con entidades administradas + copia manual contra las proyecciones a DTO:
+ * bytes asignados por operación (hilo actual) y latencia media / p99.
+ * Los datos de prueba se crean en una transacción que se revierte al terminar.
+ *
+ * mvn test -DskipTests=false -Dbenchmark=true -Dtest=ProyeccionesBenchmarkTests
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ProyeccionesBenchmarkTests {
+
+	private static final int PROGRAMAS = 100;
+	private static final int UNIDADES_POR_PROGRAMA = 5;
+	private static final int LECCIONES_POR_UNIDAD = 10;
+	private static final int INSIGNIAS = 50;
+	private static final int CALENTAMIENTO = 50;
+	private static final int ITERACIONES = 200;
+
+	@Autowired
+	private ProgramaCompletoService programaCompletoService;
+
+	@Autowired
+	private ProgramaArbolLoader programaArbolLoader;
+
+	@Autowired
+	private UnidadRepository unidadRepository;
+
+	@Autowired
+	private LeccionRepository leccionRepository;
+
+	@Autowired
+	private InsigniaRepository insigniaRepository;
+
+	@Autowired
+	private InsigniaOtorgadaRepository insigniaOtorgadaRepository;
+
+	@Autowired
+	private InsigniaService insigniaService;
+
+	@Autowired
+	private CatalogoInsignias catalogoInsignias;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Test
+	void compararEntidadesContraProyecciones(TestReporter reporte) {
+		TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+		try {
+			medirEnTransaccion(transaccion, reporte);
+		} finally {
+			// El catálogo en memoria pudo cargar las insignias de la transacción revertida
+			catalogoInsignias.invalidar();
+		}
+	}
+
+	private void medirEnTransaccion(TransactionTemplate transaccion, TestReporter reporte) {
+		transaccion.executeWithoutResult(estado -> {
+			List<Programa> programas = crearCatalogo();
+			Integer unidadId = unidadRepository.findByProgramaIdOrderByOrden(programas.get(0).getId()).get(0).getId();
+			UUID usuarioId = otorgarInsignias();
+			entityManager.flush();
+			entityManager.clear();
+
+			// Mismo contenido por ambos caminos antes de medir
+			assertEquals(leccionesConEntidades(unidadId).size(), leccionRepository.findDTOByUnidadId(unidadId).size());
+			List<ProgramaCompletoDTO> arbolesEntidades = arbolesConEntidades(programas);
+			List<ProgramaCompletoDTO> arbolesProyeccion = programaArbolLoader.cargarArboles(programas);
+			assertEquals(arbolesEntidades.size(), arbolesProyeccion.size());
+			assertEquals(contarUnidades(arbolesEntidades), contarUnidades(arbolesProyeccion));
+			assertEquals(contarLecciones(arbolesEntidades), contarLecciones(arbolesProyeccion));
+			assertEquals(insigniasConEntidades(usuarioId).size(), insigniaService.getInsigniasByUsuarioId(usuarioId).size());
+
+			medir(reporte, "lecciones por unidad: entidades", () -> leccionesConEntidades(unidadId));
+			medir(reporte, "lecciones por unidad: proyección", () -> leccionRepository.findDTOByUnidadId(unidadId));
+			medir(reporte, "árboles de programa: entidades", () -> arbolesConEntidades(programas));
+			medir(reporte, "árboles de programa: proyección", () -> programaArbolLoader.cargarArboles(programas));
+			medir(reporte, "insignias de usuario: entidades", () -> insigniasConEntidades(usuarioId));
+			medir(reporte, "insignias de usuario: proyección + catálogo", () -> insigniaService.getInsigniasByUsuarioId(usuarioId));
+
+			estado.setRollbackOnly();
+		});
+	}
+
+	// Cada iteración empieza con el contexto de persistencia vacío, como una petición nueva. El resultado
+	// se publica como entrada del reporte de JUnit (queda en los reportes de surefire)
+	private void medir(TestReporter reporte, String caso, Supplier<Object> lectura) {
+		for (int i = 0; i < CALENTAMIENTO; i++) {
+			lectura.get();
+			entityManager.clear();
+		}
+
+		com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long[] latencias = new long[ITERACIONES];
+		long bytesTotales = 0;
+		for (int i = 0; i < ITERACIONES; i++) {
+			long bytesAntes = hilos.getCurrentThreadAllocatedBytes();
+			long inicio = System.nanoTime();
+			lectura.get();
+			latencias[i] = System.nanoTime() - inicio;
+			bytesTotales += hilos.getCurrentThreadAllocatedBytes() - bytesAntes;
+			entityManager.clear();
+		}
+
+		Arrays.sort(latencias);
+		double mediaMicros = Arrays.stream(latencias).average().orElse(0) / 1000.0;
+		double p99Micros = latencias[(int) Math.ceil(ITERACIONES * 0.99) - 1] / 1000.0;
+		reporte.publishEntry(caso, String.format("bytes/op=%d media=%.1f µs p99=%.1f µs",
+				bytesTotales / ITERACIONES, mediaMicros, p99Micros));
+	}
+
+	// Camino anterior: entidades administradas y copia campo a campo
+	private List<LeccionDTO> leccionesConEntidades(Integer unidadId) {
+		return leccionRepository.findByUnidadIdOrderByOrden(unidadId).stream()
+				.map(leccion -> {
+					LeccionDTO dto = new LeccionDTO();
+					dto.setId(leccion.getId());
+					dto.setUnidadId(leccion.getUnidad().getId());
+					dto.setTitulo(leccion.getTitulo());
+					dto.setOrden(leccion.getOrden());
+					dto.setTipoMaterial(leccion.getTipoMaterial());
+					dto.setUrlMaterial(leccion.getUrlMaterial());
+					return dto;
+				})
+				.collect(Collectors.toList());
+	}
+
+	// Árbol completo como lo armaba ProgramaArbolLoader con entidades: unidades y lecciones (con material)
+	// por lotes, agrupadas por su padre y copiadas a los DTOs
+	private List<ProgramaCompletoDTO> arbolesConEntidades(List<Programa> programas) {
+		List<Integer> programaIds = programas.stream().map(Programa::getId).collect(Collectors.toList());
+		Map<Integer, List<Unidad>> unidadesPorPrograma = new HashMap<>();
+		for (Unidad unidad : unidadRepository.findByProgramaIdIn(programaIds)) {
+			unidadesPorPrograma.computeIfAbsent(unidad.getPrograma().getId(), clave -> new ArrayList<>()).add(unidad);
+		}
+		List<Integer> unidadIds = unidadesPorPrograma.values().stream()
+				.flatMap(List::stream)
+				.map(Unidad::getId)
+				.collect(Collectors.toList());
+		Map<Integer, List<Leccion>> leccionesPorUnidad = new HashMap<>();
+		for (Leccion leccion : leccionRepository.findByUnidadIdInWithMaterial(unidadIds)) {
+			leccionesPorUnidad.computeIfAbsent(leccion.getUnidad().getId(), clave -> new ArrayList<>()).add(leccion);
+		}
+
+		List<ProgramaCompletoDTO> arboles = new ArrayList<>();
+		for (Programa programa : programas) {
+			ProgramaCompletoDTO dto = new ProgramaCompletoDTO();
+			dto.setId(programa.getId());
+			dto.setTitulo(programa.getTitulo());
+			dto.setDescripcion(programa.getDescripcion());
+			dto.setAreaConocimiento(programa.getAreaConocimiento());
+			dto.setFechaCreacion(programa.getFechaCreacion());
+			List<ProgramaCompletoDTO.UnidadCompletaDTO> unidades = new ArrayList<>();
+			for (Unidad unidad : unidadesPorPrograma.getOrDefault(programa.getId(), Collections.emptyList())) {
+				ProgramaCompletoDTO.UnidadCompletaDTO unidadDTO = new ProgramaCompletoDTO.UnidadCompletaDTO();
+				unidadDTO.setId(unidad.getId());
+				unidadDTO.setTitulo(unidad.getTitulo());
+				unidadDTO.setOrden(unidad.getOrden());
+				List<ProgramaCompletoDTO.LeccionCompletaDTO> lecciones = new ArrayList<>();
+				for (Leccion leccion : leccionesPorUnidad.getOrDefault(unidad.getId(), Collections.emptyList())) {
+					ProgramaCompletoDTO.LeccionCompletaDTO leccionDTO = new ProgramaCompletoDTO.LeccionCompletaDTO();
+					leccionDTO.setId(leccion.getId());
+					leccionDTO.setTitulo(leccion.getTitulo());
+					leccionDTO.setOrden(leccion.getOrden());
+					leccionDTO.setTipoMaterial(leccion.getTipoMaterial());
+					leccionDTO.setUrlMaterial(leccion.getUrlMaterial());
+					if (leccion.getMaterial() != null) {
+						leccionDTO.setMaterialId(leccion.getMaterial().getId());
+					}
+					lecciones.add(leccionDTO);
+				}
+				unidadDTO.setLecciones(lecciones);
+				unidades.add(unidadDTO);
+			}
+			dto.setUnidades(unidades);
+			arboles.add(dto);
+		}
+		return arboles;
+	}
+
+	private List<InsigniaOtorgadaDTO> insigniasConEntidades(UUID usuarioId) {
+		return insigniaOtorgadaRepository.findByUsuarioId(usuarioId).stream()
+				.map(otorgada -> {
+					InsigniaOtorgadaDTO dto = new InsigniaOtorgadaDTO(otorgada.getId(), otorgada.getUsuarioId(),
+							otorgada.getInsignia().getId(), otorgada.getFechaOtorgada());
+					Insignia insignia = otorgada.getInsignia();
+					dto.setInsignia(new InsigniaDTO(insignia.getId(), insignia.getNombre(),
+							insignia.getDescripcion(), insignia.getUrlImagen()));
+					return dto;
+				})
+				.collect(Collectors.toList());
+	}
+
+	private int contarUnidades(List<ProgramaCompletoDTO> arboles) {
+		return arboles.stream().mapToInt(programa -> programa.getUnidades().size()).sum();
+	}
+
+	private int contarLecciones(List<ProgramaCompletoDTO> arboles) {
+		return arboles.stream()
+				.flatMap(programa -> programa.getUnidades().stream())
+				.mapToInt(unidad -> unidad.getLecciones().size())
+				.sum();
+	}
+
+	private List<Programa> crearCatalogo() {
+		List<Programa> programas = new ArrayList<>();
+		for (int p = 1; p <= PROGRAMAS; p++) {
+			ProgramaCompletoDTO programa = new ProgramaCompletoDTO("Benchmark " + p, "Programa de prueba " + p, "Benchmark");
+			for (int u = 1; u <= UNIDADES_POR_PROGRAMA; u++) {
+				ProgramaCompletoDTO.UnidadCompletaDTO unidad = new ProgramaCompletoDTO.UnidadCompletaDTO("Unidad " + u, u);
+				for (int l = 1; l <= LECCIONES_POR_UNIDAD; l++) {
+					unidad.getLecciones().add(new ProgramaCompletoDTO.LeccionCompletaDTO(
+							"Lección " + u + "." + l, l, "link", "https://example.com/" + p + "/" + u + "/" + l));
+				}
+				programa.getUnidades().add(unidad);
+			}
+			programas.add(programaCompletoService.persistirProgramaCompleto(programa));
+		}
+		return programas;
+	}
+
+	private UUID otorgarInsignias() {
+		UUID usuarioId = UUID.randomUUID();
+		for (int i = 1; i <= INSIGNIAS; i++) {
+			Insignia insignia = insigniaRepository.save(new Insignia("Insignia " + i, "Insignia de prueba", null));
+			insigniaOtorgadaRepository.save(new InsigniaOtorgada(usuarioId, insignia));
+		}
+		return usuarioId;
+	}
+}
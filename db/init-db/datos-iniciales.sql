@@ -47,6 +47,9 @@ VALUES
 (3, '550e8400-e29b-41d4-a716-446655440000'::uuid, 2, '2025-09-20 23:51:23.433'),
 (4, 'd1234567-89ab-4cde-9012-3456789abcde'::uuid, 2, '2025-09-21 05:13:53.257');
 
+-- Los ids explícitos no avanzan la secuencia: los otorgamientos por cohorte la usan para cada fila
+SELECT setval('capacitaciones.insignias_otorgadas_id_seq', (SELECT MAX(id) FROM capacitaciones.insignias_otorgadas));
+
 -- ============================
 -- CAPACITACIONES: Materiales
 -- ============================
@@ -69,19 +72,19 @@ VALUES
 -- ============================
 -- CAPACITACIONES: Progreso
 -- ============================
-INSERT INTO capacitaciones.progreso (id, usuario_id, leccion_id, estado, porcentaje, fecha_actualizacion)
+INSERT INTO capacitaciones.progreso (id, usuario_id, leccion_id, estado, porcentaje, fecha_actualizacion, fecha_completado)
 VALUES
-(1, 'd1234567-89ab-4cde-9012-3456789abcde'::uuid, 1, 'completado', 21.3, '2025-09-21 04:06:28.101'),
-(2, 'd1234567-89ab-4cde-9012-3456789abcde'::uuid, 2, 'en_progreso', 12.0, '2025-09-21 04:06:28.101'),
-(3, 'd1234567-89ab-4cde-9012-3456789abcde'::uuid, 3, 'inscrito', 0.0, '2025-09-21 04:06:28.101');
+(1, 'd1234567-89ab-4cde-9012-3456789abcde'::uuid, 1, 'completado', 21.3, '2025-09-21 04:06:28.101', '2025-09-21 04:06:28.101'),
+(2, 'd1234567-89ab-4cde-9012-3456789abcde'::uuid, 2, 'en_progreso', 12.0, '2025-09-21 04:06:28.101', NULL),
+(3, 'd1234567-89ab-4cde-9012-3456789abcde'::uuid, 3, 'inscrito', 0.0, '2025-09-21 04:06:28.101', NULL);
 
 -- ============================
 -- CAPACITACIONES: Unidades 
 -- ============================
 INSERT INTO capacitaciones.unidades (id, programa_id, titulo, orden)
 VALUES
-(nextval('capacitaciones.unidades_id_seq'::regclass), 1, 'Unidad Frontend', 1),
-(nextval('capacitaciones.unidades_id_seq'::regclass), 1, 'Unidad Backend', 2);
+(1, 1, 'Unidad Frontend', 1),
+(2, 1, 'Unidad Backend', 2);
 
 -- ======================================================
 -- CAPACITACIONES: Lecciones
@@ -106,3 +109,42 @@ VALUES
 (50, 26, 'Visualización con Matplotlib', 2, 'pdf', 'https://example.com/matplotlib-guide.pdf', NULL),
 (51, 27, 'Introducción a Spark', 1, 'video', 'https://www.youtube.com/watch?v=spark-intro', NULL),
 (52, 28, 'sdmas', 1, 'video', 'https://ejemplo.com/videos/java-intro.mp4', NULL);
+
+-- Ids explícitos: las secuencias deben quedar por encima. unidades y lecciones incrementan de 50 en 50
+-- (allocationSize de Hibernate), así que el siguiente bloque empieza justo después del máximo sembrado
+SELECT setval('capacitaciones.programas_id_seq', (SELECT MAX(id) FROM capacitaciones.programas));
+SELECT setval('capacitaciones.unidades_id_seq', (SELECT MAX(id) FROM capacitaciones.unidades));
+SELECT setval('capacitaciones.lecciones_id_seq', (SELECT MAX(id) FROM capacitaciones.lecciones));
+
+-- ======================================================
+-- CAPACITACIONES: Agregados de progreso por programa
+-- ======================================================
+INSERT INTO capacitaciones.progreso_programas (usuario_id, programa_id, total_lecciones, lecciones_completadas,
+    lecciones_en_progreso, lecciones_inscritas, suma_porcentaje, fecha_actualizacion, fecha_inicio, fecha_completado)
+SELECT p.usuario_id, u.programa_id, COUNT(*),
+    COUNT(*) FILTER (WHERE p.estado = 'completado' AND p.porcentaje >= 100),
+    COUNT(*) FILTER (WHERE p.estado = 'en_progreso' OR (p.estado = 'iniciado' AND p.porcentaje > 0)),
+    COUNT(*) FILTER (WHERE p.estado = 'inscrito' OR (p.estado = 'iniciado' AND COALESCE(p.porcentaje, 0) = 0)),
+    SUM(COALESCE(p.porcentaje, 0)), MAX(p.fecha_actualizacion), MIN(p.fecha_actualizacion),
+    -- Completado: todas las lecciones del programa, no solo las que el usuario empezó
+    CASE WHEN COUNT(*) FILTER (WHERE p.estado = 'completado' AND p.porcentaje >= 100) =
+        (SELECT COUNT(*) FROM capacitaciones.lecciones lp JOIN capacitaciones.unidades up ON up.id = lp.unidad_id
+         WHERE up.programa_id = u.programa_id)
+        THEN MAX(p.fecha_actualizacion) END
+FROM capacitaciones.progreso p
+JOIN capacitaciones.lecciones l ON l.id = p.leccion_id
+JOIN capacitaciones.unidades u ON u.id = l.unidad_id
+GROUP BY p.usuario_id, u.programa_id;
+
+-- ======================================================
+-- CAPACITACIONES: Diario de eventos de progreso
+-- ======================================================
+-- Un evento por fila de progreso existente, para que la reproducción parta del estado inicial
+INSERT INTO capacitaciones.progreso_eventos (usuario_id, leccion_id, estado, porcentaje, fecha)
+SELECT p.usuario_id, p.leccion_id, p.estado, p.porcentaje, COALESCE(p.fecha_actualizacion, now())
+FROM capacitaciones.progreso p
+WHERE p.leccion_id IS NOT NULL
+ORDER BY p.id;
+
+INSERT INTO capacitaciones.progreso_compactacion (id, ultimo_evento_id, fecha_compactacion)
+SELECT 1, COALESCE(MAX(id), 0), now() FROM capacitaciones.progreso_eventos;
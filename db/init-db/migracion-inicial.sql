@@ -69,23 +69,49 @@ CREATE INDEX idx_sesiones_usuario ON autenticacion.sesiones_usuarios(usuario_id)
 -- SCHEMA: CAPACITACIONES
 -- ============================
 
+-- Búsqueda de texto completo: raíces en español e insensible a acentos
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+CREATE TEXT SEARCH CONFIGURATION capacitaciones.espanol (COPY = pg_catalog.spanish);
+ALTER TEXT SEARCH CONFIGURATION capacitaciones.espanol
+    ALTER MAPPING FOR hword, hword_part, word WITH unaccent, spanish_stem;
+
 CREATE TABLE capacitaciones.programas (
     id serial PRIMARY KEY,
     titulo varchar(255) NOT NULL,
     descripcion text NULL,
     area_conocimiento varchar(100) NULL,
-    fecha_creacion timestamp DEFAULT now() NULL
+    fecha_creacion timestamp DEFAULT now() NULL,
+    version bigint NOT NULL DEFAULT 0,
+    fecha_actualizacion timestamp DEFAULT now() NULL
 );
 
+CREATE INDEX idx_programas_fecha_creacion_id ON capacitaciones.programas(fecha_creacion DESC, id DESC);
+CREATE INDEX idx_programas_area_fecha_creacion_id ON capacitaciones.programas(area_conocimiento, fecha_creacion DESC, id DESC);
+CREATE INDEX idx_programas_busqueda ON capacitaciones.programas USING GIN ((
+    setweight(to_tsvector('capacitaciones.espanol'::regconfig, coalesce(titulo, '')), 'A')
+    || setweight(to_tsvector('capacitaciones.espanol'::regconfig, coalesce(area_conocimiento, '')), 'B')
+    || setweight(to_tsvector('capacitaciones.espanol'::regconfig, coalesce(descripcion, '')), 'C')
+));
+
 CREATE TABLE capacitaciones.unidades (
     id serial PRIMARY KEY,
     programa_id int4 NULL,
     titulo varchar(255) NOT NULL,
     orden int4 NULL,
+    version bigint NOT NULL DEFAULT 0,
+    fecha_actualizacion timestamp DEFAULT now() NULL,
     CONSTRAINT unidades_programa_id_fkey FOREIGN KEY (programa_id)
         REFERENCES capacitaciones.programas(id) ON DELETE CASCADE
 );
 
+CREATE INDEX idx_unidades_programa_id ON capacitaciones.unidades(programa_id);
+CREATE INDEX idx_unidades_busqueda ON capacitaciones.unidades
+    USING GIN (to_tsvector('capacitaciones.espanol'::regconfig, titulo));
+
+-- Incremento alineado con allocationSize de Hibernate para asignar ids por bloques
+ALTER SEQUENCE capacitaciones.unidades_id_seq INCREMENT BY 50;
+
 CREATE TABLE capacitaciones.materiales (
     id serial PRIMARY KEY,
     activo bool NOT NULL,
@@ -120,6 +146,24 @@ CREATE INDEX idx_materiales_migration_status ON capacitaciones.materiales(migrat
 CREATE INDEX idx_materiales_s3_key ON capacitaciones.materiales(s3_key);
 CREATE INDEX idx_materiales_s3_uploaded ON capacitaciones.materiales(s3_uploaded);
 
+-- Subidas reanudables en curso: bytes_confirmados es el prefijo contiguo ya escrito en el temporal
+CREATE TABLE capacitaciones.subidas_archivos (
+    id uuid PRIMARY KEY,
+    nombre_original varchar(255) NOT NULL,
+    descripcion text NULL,
+    tamaño_bytes bigint NOT NULL,
+    sha256 varchar(64) NULL,
+    bytes_confirmados bigint DEFAULT 0 NOT NULL,
+    material_id int4 NULL,
+    fecha_creacion timestamp(6) NOT NULL,
+    fecha_actualizacion timestamp(6) NOT NULL,
+    CONSTRAINT subidas_archivos_material_id_fkey FOREIGN KEY (material_id)
+        REFERENCES capacitaciones.materiales(id) ON DELETE SET NULL
+);
+
+-- Limpieza periódica de las sesiones inactivas
+CREATE INDEX idx_subidas_archivos_fecha_actualizacion ON capacitaciones.subidas_archivos(fecha_actualizacion);
+
 CREATE TABLE capacitaciones.lecciones (
     id serial PRIMARY KEY,
     unidad_id int4 NULL,
@@ -128,12 +172,20 @@ CREATE TABLE capacitaciones.lecciones (
     tipo_material varchar(50) NULL,
     url_material text NULL,
     material_id int4 NULL UNIQUE,
+    version bigint NOT NULL DEFAULT 0,
+    fecha_actualizacion timestamp DEFAULT now() NULL,
     CONSTRAINT lecciones_unidad_id_fkey FOREIGN KEY (unidad_id)
         REFERENCES capacitaciones.unidades(id) ON DELETE CASCADE,
     CONSTRAINT lecciones_material_id_fkey FOREIGN KEY (material_id)
         REFERENCES capacitaciones.materiales(id)
 );
 
+CREATE INDEX idx_lecciones_unidad_id ON capacitaciones.lecciones(unidad_id);
+CREATE INDEX idx_lecciones_busqueda ON capacitaciones.lecciones
+    USING GIN (to_tsvector('capacitaciones.espanol'::regconfig, titulo));
+
+ALTER SEQUENCE capacitaciones.lecciones_id_seq INCREMENT BY 50;
+
 CREATE TABLE capacitaciones.progreso (
     id bigserial PRIMARY KEY,
     usuario_id uuid NOT NULL,
@@ -141,11 +193,69 @@ CREATE TABLE capacitaciones.progreso (
     estado varchar(20) DEFAULT 'iniciado'::character varying NULL,
     porcentaje float8 DEFAULT 0 NULL,
     fecha_actualizacion timestamp DEFAULT now() NULL,
+    -- Primera vez que la lección quedó completada; las escrituras posteriores no la cambian
+    fecha_completado timestamp NULL,
     CONSTRAINT progreso_usuario_id_leccion_id_key UNIQUE (usuario_id, leccion_id),
     CONSTRAINT progreso_leccion_id_fkey FOREIGN KEY (leccion_id)
         REFERENCES capacitaciones.lecciones(id) ON DELETE CASCADE
 );
 
+-- Agregados por usuario y programa, mantenidos en cada escritura de progreso
+CREATE TABLE capacitaciones.progreso_programas (
+    id bigserial PRIMARY KEY,
+    usuario_id uuid NOT NULL,
+    programa_id int4 NOT NULL,
+    total_lecciones int4 DEFAULT 0 NOT NULL,
+    lecciones_completadas int4 DEFAULT 0 NOT NULL,
+    lecciones_en_progreso int4 DEFAULT 0 NOT NULL,
+    lecciones_inscritas int4 DEFAULT 0 NOT NULL,
+    suma_porcentaje float8 DEFAULT 0 NOT NULL,
+    fecha_actualizacion timestamp NULL,
+    fecha_inicio timestamp NULL,
+    fecha_completado timestamp NULL,
+    CONSTRAINT progreso_programas_usuario_id_programa_id_key UNIQUE (usuario_id, programa_id),
+    CONSTRAINT progreso_programas_programa_id_fkey FOREIGN KEY (programa_id)
+        REFERENCES capacitaciones.programas(id) ON DELETE CASCADE
+);
+
+-- Analítica por programa y refresco incremental de los indicadores
+CREATE INDEX idx_progreso_programas_programa_id ON capacitaciones.progreso_programas(programa_id);
+CREATE INDEX idx_progreso_programas_fecha_actualizacion ON capacitaciones.progreso_programas(fecha_actualizacion);
+
+-- Diario de solo inserción con el estado resultante de cada escritura de progreso
+CREATE TABLE capacitaciones.progreso_eventos (
+    id bigserial PRIMARY KEY,
+    usuario_id uuid NOT NULL,
+    leccion_id int4 NOT NULL,
+    estado varchar(20) NULL,
+    porcentaje float8 NULL,
+    fecha timestamp NOT NULL,
+    CONSTRAINT progreso_eventos_leccion_id_fkey FOREIGN KEY (leccion_id)
+        REFERENCES capacitaciones.lecciones(id) ON DELETE CASCADE
+);
+
+-- Historial por lección y compactación (último evento de cada usuario y lección)
+CREATE INDEX idx_progreso_eventos_usuario_leccion_id ON capacitaciones.progreso_eventos(usuario_id, leccion_id, id);
+
+-- Último evento ya plegado sobre progreso (una sola fila)
+CREATE TABLE capacitaciones.progreso_compactacion (
+    id int4 PRIMARY KEY,
+    ultimo_evento_id int8 DEFAULT 0 NOT NULL,
+    fecha_compactacion timestamp NULL
+);
+
+-- Segundos de estudio por usuario, lección y día (sesiones fusionadas en memoria por el servicio)
+CREATE TABLE capacitaciones.tiempo_estudio (
+    id bigserial PRIMARY KEY,
+    usuario_id uuid NOT NULL,
+    leccion_id int4 NOT NULL,
+    fecha date NOT NULL,
+    segundos int8 DEFAULT 0 NOT NULL,
+    CONSTRAINT tiempo_estudio_usuario_id_leccion_id_fecha_key UNIQUE (usuario_id, leccion_id, fecha),
+    CONSTRAINT tiempo_estudio_leccion_id_fkey FOREIGN KEY (leccion_id)
+        REFERENCES capacitaciones.lecciones(id) ON DELETE CASCADE
+);
+
 CREATE TABLE capacitaciones.insignias (
     id bigserial PRIMARY KEY,
     nombre varchar(255) NULL,
@@ -158,6 +268,26 @@ CREATE TABLE capacitaciones.insignias_otorgadas (
     usuario_id uuid NOT NULL,
     insignia_id bigint NULL,
     fecha_otorgada timestamp DEFAULT now() NULL,
+    CONSTRAINT insignias_otorgadas_usuario_id_insignia_id_key UNIQUE (usuario_id, insignia_id),
     CONSTRAINT insignias_otorgadas_insignia_id_fkey FOREIGN KEY (insignia_id)
         REFERENCES capacitaciones.insignias(id) ON DELETE CASCADE
 );
+
+-- Las insignias de un usuario se leen por el índice de la restricción única, que empieza por
+-- usuario_id; un índice aparte sobre (usuario_id) sería redundante
+
+-- Reglas de otorgamiento automático (programa_completado, programas_area, lecciones_semana)
+CREATE TABLE capacitaciones.reglas_insignias (
+    id bigserial PRIMARY KEY,
+    insignia_id bigint NOT NULL,
+    tipo varchar(30) NOT NULL,
+    programa_id int4 NULL,
+    area_conocimiento varchar(100) NULL,
+    cantidad int4 NULL,
+    activa bool DEFAULT true NOT NULL,
+    fecha_creacion timestamp DEFAULT now() NULL,
+    CONSTRAINT reglas_insignias_insignia_id_fkey FOREIGN KEY (insignia_id)
+        REFERENCES capacitaciones.insignias(id) ON DELETE CASCADE,
+    CONSTRAINT reglas_insignias_programa_id_fkey FOREIGN KEY (programa_id)
+        REFERENCES capacitaciones.programas(id) ON DELETE CASCADE
+);
@@ -107,6 +107,7 @@ export class ProgramaCompletoFormComponent implements OnInit {
 
   addUnidad(unidad?: UnidadDTO): void {
     const unidadForm = this.fb.group({
+      id: [unidad?.id || null],
       titulo: [unidad?.titulo || '', [Validators.required, Validators.minLength(3), Validators.maxLength(200)]],
       descripcion: [unidad?.descripcion || '', [Validators.maxLength(500)]],
       orden: [unidad?.orden || this.unidadesArray.length + 1, [Validators.required, Validators.min(1)]],
@@ -136,6 +137,7 @@ export class ProgramaCompletoFormComponent implements OnInit {
 
   addLeccion(leccionesArray: FormArray, leccion?: LeccionDTO): void {
     const leccionForm = this.fb.group({
+      id: [leccion?.id || null],
       titulo: [leccion?.titulo || '', [Validators.required, Validators.minLength(3), Validators.maxLength(200)]],
       descripcion: [leccion?.descripcion || '', [Validators.maxLength(500)]],
       orden: [leccion?.orden || leccionesArray.length + 1, [Validators.required, Validators.min(1)]],